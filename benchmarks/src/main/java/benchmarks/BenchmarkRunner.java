@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH options (e.g. a regular expression
+ * with the benchmarks to run, or -p size=10,5000 to change the sizes of the mazes), and
+ * unless other profilers or result files are given:
+ *
+ *     - adds the GC profiler, which reports the allocation rate, the bytes allocated per
+ *       operation (gc.alloc.rate.norm) and the number and time of the collections.
+ *     - writes the results to jmh-result.json, so that runs of different releases can
+ *       be compared.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (options.getProfilers().isEmpty())
+			builder.addProfiler(GCProfiler.class);
+		if (!options.getResultFormat().hasValue())
+			builder.resultFormat(ResultFormatType.JSON);
+		if (!options.getResult().hasValue())
+			builder.result("jmh-result.json");
+		new Runner(builder.build()).run();
+	}
+
+	/**
+	 * Discards the output of the benchmarked code (the algorithms print their utilities
+	 * and policies), so that the benchmarks do not measure the console. JMH does not use
+	 * the standard output of the forked JVMs to collect the results.
+	 */
+	static void discardOutput(){
+		System.setOut(new PrintStream(new OutputStream(){
+			@Override
+			public void write(int b){}
+			@Override
+			public void write(byte[] b, int off, int len){}
+		}));
+	}
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learning.Action;
+import learning.State;
+import learning.StateActionTransModel;
+import problems.maze.MazeProblemMDP;
+import utils.RandomSource;
+import utils.Utils;
+
+/**
+ * Operations of the transition model of the maze on single state-action pairs: the
+ * expected utility used by the backups of the hash modes, and the sampling of the next
+ * state used by the simulations. Each call takes the next pair of a fixed sample of
+ * pairs, so that the benchmarks do not always hit the same cells.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ModelBenchmark {
+
+	/* Number of state-action pairs of the sample. Must be a power of two. */
+	private static final int SAMPLE_SIZE = 1024;
+
+	/* Size of the side of the maze. */
+	@Param({"10", "100", "1000", "3000"})
+	public int size;
+
+	private MazeProblemMDP problem;
+	private State[] states = new State[SAMPLE_SIZE];
+	private Action[] actions = new Action[SAMPLE_SIZE];
+	private StateActionTransModel[] models = new StateActionTransModel[SAMPLE_SIZE];
+	private RandomSource random;
+	private int next;
+
+	/* 
+	 * Utilities of the successors of the pairs in the sample (the only ones read), so that
+	 * the largest mazes do not need a map with all their states.
+	 */
+	private HashMap<State, Double> utilities = new HashMap<State, Double>();
+
+	@Setup
+	public void setup(){
+		Utils.setSeed(1);
+		random = Utils.random();
+		problem = new MazeProblemMDP(size, 1);
+		for (int pair=0;pair<SAMPLE_SIZE;pair++){
+			State state;
+			do {
+				state = problem.getRandomState();
+			} while (problem.isFinal(state));
+			ArrayList<Action> possibleActions = problem.getPossibleActions(state);
+			states[pair] = state;
+			actions[pair] = possibleActions.get(random.nextInt(possibleActions.size()));
+			models[pair] = problem.getTransitionModel(state, actions[pair]);
+			for (State successor: models[pair].getReachableStates())
+				utilities.put(successor, random.nextDouble());
+		}
+	}
+
+	@Benchmark
+	public double getExpectedUtility(){
+		int pair = next++ & (SAMPLE_SIZE-1);
+		return problem.getExpectedUtility(states[pair], actions[pair], utilities, 0.9);
+	}
+
+	@Benchmark
+	public State genNextState(){
+		return models[next++ & (SAMPLE_SIZE-1)].genNextState(random);
+	}
+}
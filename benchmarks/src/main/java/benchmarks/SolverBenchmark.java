@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import algorithms.mdp.PolicyIteration;
+import algorithms.mdp.ValueIteration;
+import algorithms.qlearning.QLearning;
+import learning.LearningProblem;
+import learning.Policy;
+import problems.maze.MazeProblemMDP;
+import problems.maze.MazeProblemMF;
+import utils.Utils;
+
+/**
+ * Complete runs of the algorithms on mazes, and the evaluation of the policies by
+ * simulation in Solver. The modes of value and policy iteration are the names accepted
+ * by their setParams (e.g. -p viMode=hash,compiled,topological). The largest mazes take
+ * seconds per operation; larger ones can be given with -p size=... (and -jvmArgs -Xmx...).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SolverBenchmark {
+
+	/* Discount factor of the problems. */
+	private static final double GAMMA = 0.95;
+
+	/* Size of the side of the maze. */
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	/* Mode of ValueIteration. */
+	@Param({"compiled"})
+	public String viMode;
+
+	/* Mode of PolicyIteration. */
+	@Param({"compiled"})
+	public String piMode;
+
+	private MazeProblemMDP mdpProblem;
+	private MazeProblemMF mfProblem;
+
+	/* Policy evaluated by evalPolicy (the one found by value iteration). */
+	private Policy policy;
+
+	/* Solver.evalPolicy(LearningProblem, Policy, double). Solver is in the default package, so it can not be imported. */
+	private Method evalPolicy;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkRunner.discardOutput();
+		Utils.setSeed(1);
+		mdpProblem = new MazeProblemMDP(size, 1);
+		mdpProblem.setGamma(GAMMA);
+		mfProblem = new MazeProblemMF(size, 1);
+		mfProblem.setGamma(GAMMA);
+		policy = valueIteration();
+		evalPolicy = Class.forName("Solver").getMethod("evalPolicy", LearningProblem.class, Policy.class, double.class);
+	}
+
+	@Benchmark
+	public Policy valueIteration(){
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(new String[]{"0.01", viMode});
+		return algorithm.learnPolicy(mdpProblem);
+	}
+
+	@Benchmark
+	public Policy policyIteration(){
+		PolicyIteration algorithm = new PolicyIteration();
+		algorithm.setParams(new String[]{"0.01", piMode});
+		return algorithm.learnPolicy(mdpProblem);
+	}
+
+	@Benchmark
+	public Policy qLearning(){
+		QLearning algorithm = new QLearning();
+		return algorithm.learnPolicy(mfProblem);
+	}
+
+	@Benchmark
+	public double evalPolicy() throws Exception {
+		return (Double) evalPolicy.invoke(null, mdpProblem, policy, GAMMA);
+	}
+}
@@ -1,6 +1,14 @@
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import learning.*;
+import utils.RandomSource;
+import utils.SplittableRandomSource;
+import utils.Utils;
 import visualization.*;
 
 /** Utility class. Solves a search problem with a learning algorithm and shows the results. */
@@ -12,6 +20,12 @@ public class Solver {
 	/* Number of evaluations required to evaluate a policy. */
 	public static int numEvaluations = 10000;
 	
+	/* Number of threads used to evaluate a policy. */
+	public static int numWorkers = Runtime.getRuntime().availableProcessors();
+	
+	/* Number of executions simulated at once by each worker in problems with batches (see BatchEnvironment). 0 disables the batches. */
+	public static int batchAgents = 256;
+	
 	/** 
 	 * Applies the policy to the problem and returns the utility.
 	 */
@@ -28,6 +42,9 @@ public class Solver {
 		// While the currentState is not final moves.
 		while (!problem.isFinal(currentState) && step<maxSteps){
 			nextAction = policy.getAction(currentState);
+			// The execution ends in states the policy does not cover (e.g. not visited by a budgeted learning).
+			if (nextAction==null)
+				break;
 			newState = problem.applyAction(currentState, nextAction);
 			// System.out.println(currentState +" "+nextAction+"-->\t"+newState);
 			powGamma = powGamma * gamma;
@@ -41,16 +58,127 @@ public class Solver {
 		return utility;
 	}
 	
+	/** 
+	 * Applies the policy to the problem numExecutions times from the initial state, as
+	 * applyPolicy, moving up to batchAgents executions at once with the BatchEnvironment
+	 * of the problem. Returns the sum of the utilities.
+	 */
+	public static double applyPolicyBatch(LearningProblem problem, Policy policy, double gamma, int numExecutions, RandomSource random){
+		IndexedProblem indexed = (IndexedProblem) problem;
+		BatchEnvironment environment = (BatchEnvironment) problem;
+		State initialState = problem.initialState();
+		int start = indexed.stateIndex(initialState);
+		double startReward = problem.getReward(initialState);
+		if (problem.isFinal(initialState) || maxSteps<=0)
+			return numExecutions*startReward;
+		
+		// Ordinal of the action of the policy in each state (-1 if there is none).
+		int[] policyActions = new int[indexed.numStates()];
+		for (int stateIdx=0;stateIdx<policyActions.length;stateIdx++){
+			Action action = policy.getAction(indexed.stateAt(stateIdx));
+			policyActions[stateIdx] = action!=null ? indexed.actionIndex(action) : -1;
+		}
+		
+		// Executions in progress: state, utility, power of gamma and steps of each one.
+		int active = Math.min(batchAgents, numExecutions);
+		int[] states = new int[active], actions = new int[active], nextStates = new int[active], steps = new int[active];
+		double[] utilities = new double[active], powGammas = new double[active], rewards = new double[active];
+		boolean[] done = new boolean[active];
+		Arrays.fill(states, start);
+		Arrays.fill(utilities, startReward);
+		Arrays.fill(powGammas, 1.0);
+		int started = active;
+		double sumUtility = 0;
+		while (true){
+			// Finished executions (also the ones in a state without action in the policy, as 
+			// in applyPolicy) are replaced by a new one or by the last one.
+			for (int execution=0;execution<active;execution++){
+				if (!done[execution] && steps[execution]<maxSteps && policyActions[states[execution]]>=0)
+					continue;
+				sumUtility += utilities[execution];
+				if (started<numExecutions){
+					started++;
+					states[execution] = start;
+					utilities[execution] = startReward;
+					powGammas[execution] = 1.0;
+					steps[execution] = 0;
+					done[execution] = false;
+				}
+				else{
+					active--;
+					states[execution] = states[active];
+					utilities[execution] = utilities[active];
+					powGammas[execution] = powGammas[active];
+					steps[execution] = steps[active];
+					done[execution] = done[active];
+				}
+				execution--;
+			}
+			if (active==0)
+				break;
+			for (int execution=0;execution<active;execution++)
+				actions[execution] = policyActions[states[execution]];
+			environment.step(active, states, actions, nextStates, rewards, done, start, random);
+			for (int execution=0;execution<active;execution++){
+				powGammas[execution] *= gamma;
+				utilities[execution] += powGammas[execution]*rewards[execution];
+				steps[execution]++;
+			}
+		}
+		return sumUtility;
+	}
+	
 	/** 
 	 * Applies the policy to the problem and returns the utility.
 	 */
 	public static double evalPolicy(LearningProblem problem, Policy policy, double gamma){
-		double averageUtility = 0;
-		for (int it=0;it<numEvaluations;it++){
-			State initialState = problem.initialState();
-			averageUtility += applyPolicy(problem,initialState, policy, gamma);
+		return evalPolicy(problem, policy, gamma, numWorkers, Utils.random().nextLong());
+	}
+	
+	/** 
+	 * Applies the policy to the problem numEvaluations times, splitting the executions
+	 * among several workers, and returns the average utility. Each worker has its own
+	 * random source, split from a source with the seed given, and the sums of the workers
+	 * are added in order, so the result is the same for a given seed and number of workers.
+	 * 
+	 * The problem must allow applying actions from several threads at the same time. If
+	 * it has its own random source, which can not be shared, only one worker is used.
+	 */
+	public static double evalPolicy(final LearningProblem problem, final Policy policy, final double gamma, int workers, long seed){
+		if (problem.hasRandomSource())
+			workers = 1;
+		RandomSource master = new SplittableRandomSource(seed);
+		ForkJoinPool pool = new ForkJoinPool(workers);
+		ArrayList<ForkJoinTask<Double>> tasks = new ArrayList<ForkJoinTask<Double>>();
+		for (int worker=0;worker<workers;worker++){
+			// Executions and random source of the worker.
+			final int numExecutions = (int) ((long) numEvaluations*(worker+1)/workers - (long) numEvaluations*worker/workers);
+			final RandomSource random = master.split();
+			tasks.add(pool.submit(new Callable<Double>(){
+				public Double call(){
+					Utils.setRandom(random);
+					try{
+						if (batchAgents>0 && problem instanceof BatchEnvironment && problem instanceof IndexedProblem)
+							return applyPolicyBatch(problem, policy, gamma, numExecutions, random);
+						double sumUtility = 0;
+						for (int it=0;it<numExecutions;it++){
+							State initialState = problem.initialState();
+							sumUtility += applyPolicy(problem, initialState, policy, gamma);
+						}
+						return sumUtility;
+					}
+					finally{
+						Utils.setRandom(null);
+					}
+				}
+			}));
 		}
-		return averageUtility/numEvaluations;
+		// Adds the results in order.
+		double sumUtility = 0;
+		for (ForkJoinTask<Double> task: tasks)
+			sumUtility += task.join();
+		pool.shutdown();
+		return sumUtility/numEvaluations;
 	}
 	
 	public static void main(String[] args){
@@ -77,8 +205,31 @@ public class Solver {
 		String[] algorithmParams = Arrays.copyOfRange(args, sep+2, args.length);
 		LearningAlgorithm algorithm = LearningAlgorithm.generateAlgorithm(algorithmName, algorithmParams);
 
+		// Reports the progress of the learning if requested (-Dprogress=file.csv or -Dprogress=jfr).
+		String progress = System.getProperty("progress");
+		CsvLearningListener progressFile = null;
+		if ("jfr".equals(progress))
+			algorithm.setListener(new JfrLearningListener());
+		else if (progress!=null){
+			try{
+				progressFile = new CsvLearningListener(progress);
+				algorithm.setListener(progressFile);
+			}
+			catch (IOException e){
+				System.out.println("The file "+progress+" can't be created. The progress will not be reported.");
+			}
+		}
+
 		// Learns the policy
 		Policy policy = algorithm.learnPolicy(problem);
+		if (progressFile!=null){
+			try{
+				progressFile.close();
+			}
+			catch (IOException e){
+				System.out.println("The file "+progress+" can't be written.");
+			}
+		}
 		System.out.println("Policy:\n"+policy);
 		System.out.println("Policy size: "+policy.size());
 		
@@ -3,7 +3,6 @@ package algorithms;
 import java.util.ArrayList;
 import java.util.Collection;
 
-import utils.Utils;
 import learning.Action;
 import learning.LearningAlgorithm;
 import learning.State;
@@ -24,7 +23,7 @@ public class RandomAlgorithm extends LearningAlgorithm{
 //			// Extracts the possible actions that can be applied to the state.
 //			ArrayList<Action> possibleActions = problem.getPossibleActions(state);
 //			// Randomly selects the index of one of such actions
-//			int selActionIdx = Utils.random.nextInt(possibleActions.size());
+//			int selActionIdx = random().nextInt(possibleActions.size());
 //			// Assigns the corresponding action to the state.
 //			solution.setAction(state, possibleActions.get(selActionIdx));
 //		}
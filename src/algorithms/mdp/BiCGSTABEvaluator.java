@@ -0,0 +1,125 @@
+package algorithms.mdp;
+
+import java.util.Arrays;
+
+/**
+ * Biconjugate gradient stabilized method (BiCGSTAB) with Jacobi preconditioning. The
+ * matrix I - γP<π> is not symmetric, so conjugate gradient can not be used. Each
+ * iteration carries out two products by the matrix (two sweeps), but the number of
+ * iterations depends much less on γ than fixed-point iteration, which needs about
+ * log(tolerance)/log(γ) sweeps.
+ *
+ * The preconditioner divides by the diagonal, 1 - γT(s,π(s),s). If the method breaks
+ * down (the shadow residual becomes orthogonal, or almost orthogonal, to the residual or
+ * to v), it restarts from the current utilities. If the residual stops being finite, the
+ * evaluation stops.
+ */
+public class BiCGSTABEvaluator extends PolicyEvaluator {
+
+    /* Relative size of a dot product under which the vectors are taken as orthogonal. */
+    private static final double BREAKDOWN = 1e-12;
+
+    /* Work vectors, reused between evaluations. */
+    private double[] invDiagonal, r, rHat, p, v, y, s, z, t;
+
+    @Override
+    protected double solve(double[] x, int maxIterations){
+        int n = model.numStates;
+        if (r == null || r.length != n){
+            invDiagonal = new double[n];
+            r = new double[n];
+            rHat = new double[n];
+            p = new double[n];
+            v = new double[n];
+            y = new double[n];
+            s = new double[n];
+            z = new double[n];
+            t = new double[n];
+        }
+        for (int state = 0; state < n; state++)
+            invDiagonal[state] = 1.0/diagonal(state);
+
+        // r = b - Ax
+        multiply(x, r);
+        for (int state = 0; state < n; state++)
+            r[state] = rhs(state) - r[state];
+        double norm = maxNorm(r);
+        if (norm <= tolerance)
+            return norm;
+        restart();
+
+        double rho = 1, alpha = 1, omega = 1;
+        while (iterations < maxIterations)
+        {
+            iterations++;
+            double rhoNew = dot(rHat, r);
+            if (omega == 0 || Math.abs(rhoNew) <= BREAKDOWN*Math.sqrt(dot(rHat, rHat)*dot(r, r))){
+                restart();
+                rho = alpha = omega = 1;
+                rhoNew = dot(rHat, r);
+            }
+            // p = r + β(p - ωv)
+            double beta = (rhoNew/rho)*(alpha/omega);
+            for (int state = 0; state < n; state++)
+                p[state] = r[state] + beta*(p[state] - omega*v[state]);
+            // y = M^-1 p, v = Ay
+            for (int state = 0; state < n; state++)
+                y[state] = invDiagonal[state]*p[state];
+            multiply(y, v);
+            double rHatV = dot(rHat, v);
+            if (Math.abs(rHatV) <= BREAKDOWN*Math.sqrt(dot(rHat, rHat)*dot(v, v))){
+                omega = 0;
+                continue;
+            }
+            alpha = rhoNew/rHatV;
+            // s = r - αv
+            for (int state = 0; state < n; state++)
+                s[state] = r[state] - alpha*v[state];
+            if (maxNorm(s) <= tolerance){
+                for (int state = 0; state < n; state++)
+                    x[state] += alpha*y[state];
+                break;
+            }
+            // z = M^-1 s, t = Az
+            for (int state = 0; state < n; state++)
+                z[state] = invDiagonal[state]*s[state];
+            multiply(z, t);
+            double tt = dot(t, t);
+            omega = tt == 0 ? 0 : dot(t, s)/tt;
+            if (Double.isNaN(omega) || Double.isInfinite(omega))
+                omega = 0;
+            // x = x + αy + ωz, r = s - ωt
+            for (int state = 0; state < n; state++){
+                x[state] += alpha*y[state] + omega*z[state];
+                r[state] = s[state] - omega*t[state];
+            }
+            norm = maxNorm(r);
+            if (norm <= tolerance || Double.isNaN(norm) || Double.isInfinite(norm))
+                break;
+            rho = rhoNew;
+        }
+        // The recurrences accumulate rounding errors, so the residual is recalculated.
+        return residual(x);
+    }
+
+    /** Starts a new Krylov sequence from the current residual. */
+    private void restart(){
+        System.arraycopy(r, 0, rHat, 0, r.length);
+        Arrays.fill(p, 0);
+        Arrays.fill(v, 0);
+    }
+
+    private static double dot(double[] a, double[] b){
+        double sum = 0;
+        for (int i = 0; i < a.length; i++)
+            sum += a[i]*b[i];
+        return sum;
+    }
+
+    private static double maxNorm(double[] a){
+        double max = 0;
+        for (int i = 0; i < a.length; i++)
+            max = Math.max(max, Math.abs(a[i]));
+        return max;
+    }
+}
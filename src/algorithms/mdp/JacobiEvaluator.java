@@ -0,0 +1,46 @@
+package algorithms.mdp;
+
+/**
+ * Fixed-point iteration, U'(s) <- R(s) + γ * SUM[s'] T(s,π(s),s')U(s'), with all the
+ * states updated from the utilities of the previous sweep. This is the evaluation
+ * originally used by PolicyIteration. Each iteration is one sweep, and the change of a
+ * sweep is the residual of the utilities it starts from.
+ */
+public class JacobiEvaluator extends PolicyEvaluator {
+
+    @Override
+    protected double solve(double[] utilities, int maxIterations){
+        double delta;
+        double[] current = utilities;
+        double[] next = utilities.clone();
+
+        do
+        {
+            delta = 0.0;
+            model.updateSetSums(current, setSums);
+            for (int state = 0; state < model.numStates; state++)
+            {
+                // U'(s) <- R(s) + γ * SUM[s'] T(s,π(s),s')U(s')
+                if (isFixed(state))
+                    next[state] = model.reward[state];
+                else
+                    next[state] = model.expectedUtility(state, policyRows[state], current, setSums, gamma);
+                double operation = Math.abs(next[state] - current[state]);
+                if (operation > delta)
+                    delta = operation;
+            }
+            // U <- U'
+            double[] swap = current;
+            current = next;
+            next = swap;
+            iterations++;
+            backups += model.numStates;
+        }
+        while(delta > tolerance && iterations < maxIterations);
+
+        // The result must end up in the array received.
+        if (current != utilities)
+            System.arraycopy(current, 0, utilities, 0, utilities.length);
+        return delta;
+    }
+}
@@ -0,0 +1,445 @@
+package algorithms.mdp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import learning.*;
+
+/**
+ * Implements labeled real-time dynamic programming (LRTDP, Bonet and Geffner) for
+ * goal-directed Markov Decision Processes.
+ *
+ * Instead of sweeping over all the states, the algorithm runs trials from the initial
+ * state, following the greedy policy and sampling the successors, and backs up the
+ * states it visits. At the end of each trial, the visited states are checked in reverse
+ * order: a state is labeled as solved when the residuals of all the states reachable
+ * from it with the greedy policy are below epsilon. The algorithm finishes when the
+ * initial state is solved. Therefore, it does not need getAllStates(), and only the
+ * states relevant for the initial state are expanded.
+ *
+ * The initial utility of unexplored states must be admissible: an upper bound of their
+ * real utility, which the caller must provide for each problem (see setInitialUtility).
+ * Otherwise, the greedy policy may never try the actions leading to the best states, and
+ * the policy found is not optimal. The default value (100) is only a bound for problems
+ * whose rewards are at most 100 and whose transition rewards are not positive, as the
+ * maze. Final states take their reward.
+ *
+ * Each trial is reported to the listener as a sweep, with the largest change of a backup
+ * in the trial and the number of states labeled as solved.
+ *
+ * States are expanded when they are first backed up. Their transition models are stored
+ * in growable arrays of primitive types (as in CompiledMDP, but built incrementally), so
+ * the problem is called only once per pair state-action. Uniform transition models are
+ * stored expanded.
+ */
+public class LRTDP extends LearningAlgorithm {
+
+	/** Max residual of the solved states. */
+	private double epsilon = 0.01;
+
+	/** Initial utility of the non final states (must be an upper bound, see setInitialUtility). */
+	private double initialUtility = 100;
+
+	/** Max number of steps of each trial (avoids endless trials in loops). */
+	private int maxDepth = 10000;
+
+	/* Identifier of each state. Indexed problems use their own indices instead. */
+	private HashMap<State, Integer> ids;
+	private IndexedProblem indexed;
+	private int[] idOfIndex;
+
+	/* Information of each state, by identifier. */
+	private int numStates;
+	private State[] states;
+	private double[] utilities;
+	private boolean[] isFinal, solved;
+	private double[] reward;
+
+	/* Rows of each state, from stateRows[s] to stateRows[s]+numRows[s]-1 (-1 if not expanded). */
+	private int[] stateRows, numRows;
+
+	/* Action, expected transition reward and entries (rowStart[r] to rowEnd[r]-1) of each row. */
+	private int numRowsTotal;
+	private Action[] rowAction;
+	private double[] rowReward;
+	private int[] rowStart, rowEnd;
+
+	/* Successor and probability of each entry. */
+	private int numEntries;
+	private int[] successors;
+	private double[] probs;
+
+	/* Stacks and marks used by the trials and checkSolved (open and closed hold each state once at most). */
+	private int[] trialStack, open, closed, marks;
+	private int mark;
+
+	/* Statistics of the last execution. */
+	private long backups;
+	private int trials;
+
+	/* Largest change of a backup and number of states labeled in the current trial. */
+	private double trialResidual;
+	private int trialLabeled;
+
+	/**
+	 * Learns the policy (notice that this method is protected, and called from the
+	 * public method learnPolicy(LearningProblem problem, double gamma) in LearningAlgorithm.
+	 */
+	@Override
+	protected void learnPolicy() {
+            if (!(problem instanceof MDPLearningProblem)) {
+                System.out.println("The algorithm LRTDP can not be applied to this problem (model is not visible).");
+                System.exit(0);
+            }
+            initStore();
+            backups = 0;
+            trials = 0;
+
+            int start = idOf(problem.initialState());
+            while (!solved[start]) {
+                long trialStart = backups;
+                trialResidual = 0;
+                trialLabeled = 0;
+                trial(start);
+                trials++;
+                sweepFinished(trialResidual, backups - trialStart, trialLabeled);
+            }
+
+            // The policy is greedy for all the expanded states.
+            for (int state = 0; state < numStates; state++)
+                if (!isFinal[state] && stateRows[state] >= 0) {
+                    int row = bestRow(state);
+                    solution.setAction(states[state], row >= 0 ? rowAction[row] : null);
+                }
+	}
+
+	/**
+	 * Runs a trial from the state, following the greedy policy until reaching a solved
+	 * state, and then tries to label the visited states in reverse order.
+	 */
+	private void trial(int state) {
+            int depth = 0;
+            while (!solved[state] && depth < maxDepth) {
+                trialStack[depth++] = state;
+                if (isFinal[state])
+                    break;
+                int row = update(state);
+                if (row < 0)
+                    break;
+                state = sampleSuccessor(row);
+            }
+            while (depth > 0)
+                if (!checkSolved(trialStack[--depth]))
+                    break;
+	}
+
+	/**
+	 * Labels the state and the states reachable from it with the greedy policy as solved
+	 * if all their residuals are below epsilon. Otherwise, backs them up. Returns whether
+	 * they were labeled.
+	 */
+	private boolean checkSolved(int state) {
+            if (solved[state])
+                return true;
+            boolean converged = true;
+            int numOpen = 0, numClosed = 0;
+            newMark();
+            open[numOpen++] = state;
+            marks[state] = mark;
+            while (numOpen > 0) {
+                state = open[--numOpen];
+                closed[numClosed++] = state;
+                if (isFinal[state])
+                    continue;
+                int row = bestRow(state);
+                if (residual(state, row) > epsilon) {
+                    converged = false;
+                    continue;
+                }
+                if (row < 0)
+                    continue;
+                // Expands the successors of the greedy action.
+                for (int entry = rowStart[row]; entry < rowEnd[row]; entry++) {
+                    int next = successors[entry];
+                    if (!solved[next] && marks[next] != mark) {
+                        marks[next] = mark;
+                        open[numOpen++] = next;
+                    }
+                }
+            }
+            if (converged) {
+                for (int pos = 0; pos < numClosed; pos++)
+                    solved[closed[pos]] = true;
+                trialLabeled += numClosed;
+            } else
+                while (numClosed > 0)
+                    update(closed[--numClosed]);
+            return converged;
+	}
+
+	/** Backs up a state (expanding it if needed). Returns the greedy row. */
+	private int update(int state) {
+            if (isFinal[state])
+                return -1;
+            int row = bestRow(state);
+            double utility = qValue(state, row);
+            if (Math.abs(utility - utilities[state]) > trialResidual)
+                trialResidual = Math.abs(utility - utilities[state]);
+            utilities[state] = utility;
+            backups++;
+            return row;
+	}
+
+	/** Difference between the backed up utility of the state and the current one. */
+	private double residual(int state, int row) {
+            return Math.abs(qValue(state, row) - utilities[state]);
+	}
+
+	/** Returns the row of the state with the maximum utility, or -1 if there is none. */
+	private int bestRow(int state) {
+            if (stateRows[state] < 0)
+                expand(state);
+            double max = Double.NEGATIVE_INFINITY;
+            int best = -1;
+            for (int row = stateRows[state]; row < stateRows[state] + numRows[state]; row++) {
+                double utility = qValue(state, row);
+                if (utility > max) {
+                    max = utility;
+                    best = row;
+                }
+            }
+            return best;
+	}
+
+	/** U<s> = R<s> + gamma * SUM[s'] T<s,a,s'> * (R<s,a,s'> + U<s'>). R<s> if row is -1. */
+	private double qValue(int state, int row) {
+            if (row < 0)
+                return reward[state];
+            double expectedNext = rowReward[row];
+            for (int entry = rowStart[row]; entry < rowEnd[row]; entry++)
+                expectedNext += probs[entry] * utilities[successors[entry]];
+            return reward[state] + problem.gamma * expectedNext;
+	}
+
+	/** Samples the successor of a row. */
+	private int sampleSuccessor(int row) {
+            double value = random().nextDouble();
+            for (int entry = rowStart[row]; entry < rowEnd[row] - 1; entry++) {
+                value -= probs[entry];
+                if (value < 0)
+                    return successors[entry];
+            }
+            return successors[rowEnd[row] - 1];
+	}
+
+	/** Stores the transition models of all the actions of a state. */
+	private void expand(int state) {
+            MDPLearningProblem mdp = (MDPLearningProblem) problem;
+            State from = states[state];
+            int first = numRowsTotal;
+            for (Action action : mdp.getPossibleActions(from)) {
+                StateActionTransModel transModel = mdp.getTransitionModel(from, action);
+                State[] reachable = transModel.getReachableStates();
+                double[] transProbs = transModel.getProbs();
+                if (numRowsTotal == rowAction.length) {
+                    int length = 2 * rowAction.length;
+                    rowAction = Arrays.copyOf(rowAction, length);
+                    rowReward = Arrays.copyOf(rowReward, length);
+                    rowStart = Arrays.copyOf(rowStart, length);
+                    rowEnd = Arrays.copyOf(rowEnd, length);
+                }
+                if (numEntries + reachable.length > successors.length) {
+                    int length = Math.max(2 * successors.length, numEntries + reachable.length);
+                    successors = Arrays.copyOf(successors, length);
+                    probs = Arrays.copyOf(probs, length);
+                }
+                int row = numRowsTotal++;
+                double expectedReward = 0;
+                rowAction[row] = action;
+                rowStart[row] = numEntries;
+                for (int reachIdx = 0; reachIdx < reachable.length; reachIdx++) {
+                    // New states are registered (which may grow the arrays of the states).
+                    int next = idOf(reachable[reachIdx]);
+                    successors[numEntries] = next;
+                    probs[numEntries++] = transProbs[reachIdx];
+                    expectedReward += transProbs[reachIdx] * mdp.getTransitionReward(from, action, reachable[reachIdx]);
+                }
+                rowEnd[row] = numEntries;
+                rowReward[row] = expectedReward;
+            }
+            stateRows[state] = first;
+            numRows[state] = numRowsTotal - first;
+	}
+
+	/** Returns the identifier of a state, registering it if it is new. */
+	private int idOf(State state) {
+            if (indexed != null) {
+                int index = indexed.stateIndex(state);
+                if (index >= 0) {
+                    if (idOfIndex[index] < 0)
+                        idOfIndex[index] = register(state);
+                    return idOfIndex[index];
+                }
+            }
+            Integer id = ids.get(state);
+            if (id == null) {
+                id = register(state);
+                ids.put(state, id);
+            }
+            return id;
+	}
+
+	/** Adds a new state to the store. */
+	private int register(State state) {
+            if (numStates == states.length) {
+                int length = 2 * states.length;
+                states = Arrays.copyOf(states, length);
+                utilities = Arrays.copyOf(utilities, length);
+                reward = Arrays.copyOf(reward, length);
+                isFinal = Arrays.copyOf(isFinal, length);
+                solved = Arrays.copyOf(solved, length);
+                stateRows = Arrays.copyOf(stateRows, length);
+                numRows = Arrays.copyOf(numRows, length);
+                marks = Arrays.copyOf(marks, length);
+                open = Arrays.copyOf(open, length);
+                closed = Arrays.copyOf(closed, length);
+            }
+            int id = numStates++;
+            states[id] = state;
+            isFinal[id] = problem.isFinal(state);
+            reward[id] = problem.getReward(state);
+            utilities[id] = isFinal[id] ? reward[id] : initialUtility;
+            // Final states are solved from the beginning.
+            solved[id] = isFinal[id];
+            stateRows[id] = -1;
+            marks[id] = 0;
+            return id;
+	}
+
+	/** Creates the store, with room for a few states. */
+	private void initStore() {
+            int capacity = 1024;
+            indexed = problem instanceof IndexedProblem ? (IndexedProblem) problem : null;
+            if (indexed != null) {
+                idOfIndex = new int[indexed.numStates()];
+                Arrays.fill(idOfIndex, -1);
+            }
+            ids = new HashMap<State, Integer>();
+            numStates = 0;
+            states = new State[capacity];
+            utilities = new double[capacity];
+            reward = new double[capacity];
+            isFinal = new boolean[capacity];
+            solved = new boolean[capacity];
+            stateRows = new int[capacity];
+            numRows = new int[capacity];
+            marks = new int[capacity];
+            open = new int[capacity];
+            closed = new int[capacity];
+            trialStack = new int[maxDepth];
+            mark = 0;
+            numRowsTotal = 0;
+            rowAction = new Action[4 * capacity];
+            rowReward = new double[4 * capacity];
+            rowStart = new int[4 * capacity];
+            rowEnd = new int[4 * capacity];
+            numEntries = 0;
+            successors = new int[4 * capacity];
+            probs = new double[4 * capacity];
+	}
+
+	/** Starts a new search in checkSolved. */
+	private void newMark() {
+            if (++mark == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                mark = 1;
+            }
+	}
+
+	/**
+	 * Sets the parameters of the algorithm.
+	 */
+	@Override
+	public void setParams(String[] args) {
+            // The first parameter is epsilon, the second one the initial utility of the
+            // non final states and the third one the max number of steps of each trial.
+            if (args.length>0){
+                try{
+                    epsilon = Double.parseDouble(args[0]);
+                }
+                catch(Exception e){
+                    System.out.println("The value for epsilon is not correct. Using "+epsilon+".");
+                }
+            }
+            if (args.length>1){
+                try{
+                    initialUtility = Double.parseDouble(args[1]);
+                }
+                catch(Exception e){
+                    System.out.println("The initial utility is not correct. Using "+initialUtility+".");
+                }
+            }
+            if (args.length>2){
+                try{
+                    setMaxDepth(Integer.parseInt(args[2]));
+                }
+                catch(Exception e){
+                    System.out.println("The max depth is not correct. Using "+maxDepth+".");
+                }
+            }
+	}
+
+	/** 
+	 * Sets the initial utility of the non final states. It must be an upper bound of their
+	 * utility (e.g. the largest reward of a final state, when the rest of rewards are not
+	 * positive, as in the maze).
+	 */
+	public void setInitialUtility(double initialUtility){ this.initialUtility = initialUtility; }
+
+	/** Sets the max number of steps of each trial. It must be positive. */
+	public void setMaxDepth(int maxDepth){
+            if (maxDepth < 1) {
+                System.out.println("The max depth must be positive. Using "+this.maxDepth+".");
+                return;
+            }
+            this.maxDepth = maxDepth;
+	}
+
+	/** Number of states stored in the last execution. */
+	public int getNumStates(){ return numStates; }
+
+	/** Number of backups carried out in the last execution. */
+	public long getBackups(){ return backups; }
+
+	/** Number of trials run in the last execution. */
+	public int getTrials(){ return trials; }
+
+	/** Utility of a state, or NaN if it has not been reached. */
+	public double getUtility(State state) {
+            Integer id = null;
+            if (indexed != null && indexed.stateIndex(state) >= 0)
+                id = idOfIndex[indexed.stateIndex(state)] >= 0 ? idOfIndex[indexed.stateIndex(state)] : null;
+            else if (ids != null)
+                id = ids.get(state);
+            return id == null ? Double.NaN : utilities[id];
+	}
+
+	/** Prints the results */
+	public void printResults(){
+            System.out.println("LRTDP");
+            System.out.println(trials+" trials, "+backups+" backups, "+numStates+" states stored");
+            // Prints the policy
+            System.out.println("\nPolicy");
+            System.out.println(solution);
+	}
+
+	/** Main function. Allows testing the algorithm with MDPExProblem */
+	public static void main(String[] args){
+            LearningProblem mdp = new problems.mdpexample2.MDPExProblem();
+            mdp.setParams(null);
+            LRTDP lrtdp = new LRTDP();
+            lrtdp.setProblem(mdp);
+            lrtdp.learnPolicy(mdp);
+            lrtdp.printResults();
+	}
+}
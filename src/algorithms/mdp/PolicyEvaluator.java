@@ -0,0 +1,132 @@
+package algorithms.mdp;
+
+import learning.CompiledMDP;
+
+/**
+ * Evaluation step of PolicyIteration over a compiled model. Given a policy (the row
+ * selected for each state, or -1 if there is none), the utilities are the solution of
+ * the sparse linear system
+ *
+ *     (I - γP<π>) U = R<π>,    R<π>(s) = R(s) + γ rowReward[π(s)]
+ *
+ * where P<π> holds the transition probabilities of the selected rows. Final states and
+ * states without rows have the equation U(s) = R(s). The matrix is never built: the
+ * products are calculated row by row over the arrays of the model, and uniform rows use
+ * the sums of the utilities of their set, so each product costs as much as a sweep.
+ *
+ * Evaluators start from the utilities received (warm start) and leave the solution
+ * there. They stop when the residual, max|R<π> - (I - γP<π>)U|, is not greater than
+ * the tolerance or after maxIterations iterations.
+ */
+public abstract class PolicyEvaluator {
+
+    /* Model, policy and discount of the current evaluation. */
+    protected CompiledMDP model;
+    protected int[] policyRows;
+    protected double gamma;
+
+    /* Sums of the utilities of each set (see CompiledMDP.updateSetSums). */
+    protected double[] setSums;
+
+    /** Residual under which the evaluation stops. */
+    protected double tolerance = 1e-6;
+
+    /* Number of iterations, residual and number of backups of the last evaluation. */
+    protected int iterations;
+    protected double residual;
+    protected long backups;
+
+    /**
+     * Evaluates the policy. utilities contains the initial guess and receives the result.
+     * Returns the residual reached.
+     */
+    public double evaluate(CompiledMDP model, int[] policyRows, double gamma, double[] utilities, int maxIterations){
+        this.model = model;
+        this.policyRows = policyRows;
+        this.gamma = gamma;
+        if (setSums == null || setSums.length != model.numSets())
+            setSums = new double[model.numSets()];
+        iterations = 0;
+        backups = 0;
+        residual = solve(utilities, maxIterations);
+        return residual;
+    }
+
+    /** 
+     * Solves the system. Must update iterations and return the residual. Products by the
+     * matrix (multiply and residual) are counted as backups; sweeps of other kinds must
+     * add theirs.
+     */
+    protected abstract double solve(double[] utilities, int maxIterations);
+
+    /** Returns whether the utility of the state is fixed to its reward. */
+    protected boolean isFixed(int state){
+        return model.isFinal[state] || policyRows[state] < 0;
+    }
+
+    /** Right-hand side of the equation of the state, R<π>(s). */
+    protected double rhs(int state){
+        if (isFixed(state))
+            return model.reward[state];
+        return model.reward[state] + gamma*model.rowReward[policyRows[state]];
+    }
+
+    /** Diagonal of the matrix, 1 - γT(s,π(s),s). */
+    protected double diagonal(int state){
+        if (isFixed(state))
+            return 1.0;
+        return 1.0 - gamma*model.selfProbability(state, policyRows[state]);
+    }
+
+    /**
+     * Product of the row of the state by the utilities, ((I - γP<π>)U)(s). setSums
+     * must contain the sums of utilities.
+     */
+    protected double product(int state, double[] utilities){
+        if (isFixed(state))
+            return utilities[state];
+        return utilities[state] - gamma*model.successorUtility(policyRows[state], utilities, setSums);
+    }
+
+    /** Stores in result the product (I - γP<π>)x. */
+    protected void multiply(double[] x, double[] result){
+        backups += model.numStates;
+        model.updateSetSums(x, setSums);
+        for (int state = 0; state < model.numStates; state++)
+            result[state] = product(state, x);
+    }
+
+    /** Returns the residual of the utilities, max|R<π> - (I - γP<π>)U|. */
+    public double residual(double[] utilities){
+        backups += model.numStates;
+        model.updateSetSums(utilities, setSums);
+        double max = 0;
+        for (int state = 0; state < model.numStates; state++)
+            max = Math.max(max, Math.abs(rhs(state) - product(state, utilities)));
+        return max;
+    }
+
+    /** Sets the residual under which the evaluation stops. */
+    public void setTolerance(double tolerance){ this.tolerance = tolerance; }
+
+    /** Number of iterations of the last evaluation. */
+    public int getIterations(){ return iterations; }
+
+    /** Residual reached in the last evaluation. */
+    public double getResidual(){ return residual; }
+
+    /** Number of backups (rows multiplied by the utilities) of the last evaluation. */
+    public long getBackups(){ return backups; }
+
+    /** Returns the evaluator corresponding to a name (jacobi, sor or bicgstab), or null. */
+    public static PolicyEvaluator forName(String name){
+        name = name.toLowerCase();
+        if (name.equals("jacobi"))
+            return new JacobiEvaluator();
+        if (name.equals("sor"))
+            return new SOREvaluator();
+        if (name.equals("bicgstab"))
+            return new BiCGSTABEvaluator();
+        return null;
+    }
+}
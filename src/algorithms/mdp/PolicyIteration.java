@@ -1,8 +1,8 @@
 package algorithms.mdp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import utils.Utils;
 
 import learning.*;
 
@@ -10,6 +10,43 @@ public class PolicyIteration extends LearningAlgorithm {
 	/** Max delta. Controls convergence.*/
 	private double maxDelta = 0.01;
 	
+	/** Ways of evaluating and improving the policies. */
+	public enum Mode {
+            /** Utilities and policies stored in HashMaps, backups call the problem. */
+            HASH,
+            /** Sweeps only over the arrays of the compiled transition model. */
+            COMPILED,
+            /** 
+             * Compiled model, with a fixed number of evaluation sweeps per improvement and 
+             * utilities warm-started from the previous evaluation (modified policy iteration). 
+             */
+            MODIFIED
+	}
+	
+	/** Mode used to evaluate and improve the policies. */
+	private Mode mode = Mode.HASH;
+	
+	/** Number of evaluation sweeps per improvement in MODIFIED mode. */
+	private int evaluationSweeps = 5;
+	
+	/** Compiled transition model (modes other than HASH). */
+	private CompiledMDP model;
+	
+	/** Solver of the evaluation step (modes other than HASH). */
+	private PolicyEvaluator evaluator = new JacobiEvaluator();
+	
+	/** Number of improvements and of evaluation iterations of the last execution. */
+	private int iterations, sweeps;
+	
+	/** Residual of the last evaluation. */
+	private double residual;
+	
+	/** Minimum gain for the improvement to change the action of a state (compiled modes). */
+	private static final double IMPROVEMENT_MARGIN = 1e-9;
+	
+	/** Maximum number of iterations of an evaluation (COMPILED mode), in case the evaluator does not converge. */
+	private static final int MAX_EVALUATION_ITERATIONS = 100000;
+	
 	/** 
 	 * Learns the policy (notice that this method is protected, and called from the 
 	 * public method learnPolicy(LearningProblem problem, double gamma) in LearningAlgorithm.
@@ -32,19 +69,32 @@ public class PolicyIteration extends LearningAlgorithm {
                 System.out.println("The algorithm PolicyIteration can not be applied to this problem (model is not visible).");
                 System.exit(0);
             }
-            solution = new Policy();
-            Policy policyAux = new Policy();
+            if (mode != Mode.HASH)
+            {
+                learnPolicyCompiled();
+                return;
+            }
+            Policy policyAux;
 
             //****************************/
             // TO DO
             //***************************/
             HashMap<State,Double> utilities = new HashMap<State,Double>();
             policyAux = randomPolicy();
+            iterations = 0;
+            sweeps = 0;
             do
             {
+                // π ← π' (the previous policy is reused to store the next improvement)
+                Policy previous = solution;
                 solution = policyAux;
+                policyAux = previous;
+                int previousSweeps = sweeps;
                 utilities = policyEvaluation(solution);
-                policyAux = policyImprovement(utilities);
+                policyImprovement(utilities, policyAux);
+                iterations++;
+                if (isListened())
+                    sweepFinished(residual, (long) (sweeps - previousSweeps + 1) * utilities.size(), solution.countDifferences(policyAux));
             }
             while (!solution.equals(policyAux));
             //****************************/
@@ -53,14 +103,14 @@ public class PolicyIteration extends LearningAlgorithm {
         /** Generates a random policy */
         public Policy randomPolicy()
         {
-            Policy policy = new Policy();
+            Policy policy = new Policy(problem);
 
-            for(State state : ((MDPLearningProblem) problem).getAllStates())
+            for(State state : ((MDPLearningProblem) problem).getSolverStates())
             {
                 ArrayList<Action> possibleActions = problem.getPossibleActions(state);
-                int randomIndex = Utils.random.nextInt(possibleActions.size());
-                if (!problem.isFinal(state))
-                    policy.setAction(state, possibleActions.get(randomIndex));
+                // Final states (which may have no actions) get no action.
+                if (!problem.isFinal(state) && !possibleActions.isEmpty())
+                    policy.setAction(state, possibleActions.get(random().nextInt(possibleActions.size())));
             }
 
             return policy;
@@ -80,7 +130,7 @@ public class PolicyIteration extends LearningAlgorithm {
             utilitiesAux = new HashMap<State,Double>();
 
             // iniciamos la utilidad
-            for (State state : ((MDPLearningProblem)problem).getAllStates())
+            for (State state : ((MDPLearningProblem)problem).getSolverStates())
             {
                 if (problem.isFinal(state))
                     utilities.put(state, problem.getReward(state));
@@ -107,15 +157,17 @@ public class PolicyIteration extends LearningAlgorithm {
                 }
                 // U <- U'
                 utilities.putAll(utilitiesAux);
+                sweeps++;
             }
             while(delta > maxDelta*(1-problem.gamma)/problem.gamma);
+            residual = delta;
             //***************************/
 
             return utilities;
         }
 
-        /** Improves the policy given the utility */
-        private Policy policyImprovement(HashMap<State,Double> utilities)
+        /** Improves the policy given the utility, storing the new policy in newPolicy */
+        private void policyImprovement(HashMap<State,Double> utilities, Policy newPolicy)
         {
             /*
             function PolicyImprovement(MDP< S,A,T,R,γ >,Uπ)
@@ -124,16 +176,147 @@ public class PolicyIteration extends LearningAlgorithm {
                 return π'
             */
 
-            Policy newPolicy = new Policy();
+            newPolicy.reset();
 
             //****************************/
             // TO DO
             //***************************/
-            for (State s : ((MDPLearningProblem)problem).getAllStates())
-                newPolicy.setAction(s, argMaxAction(problem.getPossibleActions(s),s,utilities));
+            for (State s : ((MDPLearningProblem)problem).getSolverStates())
+                if (!problem.isFinal(s))
+                    newPolicy.setAction(s, argMaxAction(problem.getPossibleActions(s),s,utilities));
             //****************************/
+        }
+
+        /** 
+         * Policy iteration over the compiled transition model. Policies are stored as
+         * the row (pair state-action) selected for each state, or -1 if there is none.
+         * The evaluation is solved by the evaluator (Jacobi sweeps by default). If the
+         * evaluator diverges (its residual is not finite), the evaluation is repeated with
+         * Jacobi sweeps, which are used from then on.
+         * In MODIFIED mode, each evaluation only carries out evaluationSweeps iterations,
+         * starting from the utilities of the previous evaluation, and the algorithm 
+         * finishes when the policy is stable and the utilities have converged.
+         * 
+         * With exact evaluations, policy iteration never returns to a policy. As the 
+         * evaluations are approximate, rows whose expected utilities differ less than 
+         * the error of the utilities could make the policy cycle, so the algorithm also 
+         * finishes when an improvement gives a policy already reached after an accurate 
+         * evaluation (one with the residual under the tolerance).
+         */
+        private void learnPolicyCompiled()
+        {
+            model = new CompiledMDP((MDPLearningProblem) problem);
+            double gamma = problem.gamma;
+            double[] utilities = new double[model.numStates];
+            int[] policyRows = randomPolicyRows();
+            int changed;
+            iterations = 0;
+            sweeps = 0;
+            double tolerance = maxDelta*(1-gamma)/gamma;
+            evaluator.setTolerance(tolerance);
+            ArrayList<int[]> reached = new ArrayList<int[]>();
+            PolicyEvaluator current = evaluator;
+            // Copy of the utilities before each evaluation, in case it has to be repeated.
+            double[] start = new double[model.numStates];
+
+            resetUtilities(utilities);
+            do
+            {
+                if (mode != Mode.MODIFIED)
+                    resetUtilities(utilities);
+                int maxIterations = mode == Mode.MODIFIED ? evaluationSweeps : MAX_EVALUATION_ITERATIONS;
+                System.arraycopy(utilities, 0, start, 0, utilities.length);
+                residual = current.evaluate(model, policyRows, gamma, utilities, maxIterations);
+                long backups = current.getBackups();
+                sweeps += current.getIterations();
+                if (Double.isNaN(residual) || Double.isInfinite(residual))
+                {
+                    // The evaluator has diverged: the rest of evaluations use Jacobi, which can not.
+                    System.out.println("The evaluation has diverged. Using jacobi.");
+                    current = new JacobiEvaluator();
+                    current.setTolerance(tolerance);
+                    System.arraycopy(start, 0, utilities, 0, utilities.length);
+                    residual = current.evaluate(model, policyRows, gamma, utilities, maxIterations);
+                    backups += current.getBackups();
+                    sweeps += current.getIterations();
+                }
+                changed = policyImprovementCompiled(utilities, policyRows);
+                iterations++;
+                // The improvement backs up all the states.
+                sweepFinished(residual, backups + model.numStates, changed);
+                if (changed > 0 && residual <= tolerance && reachedBefore(reached, policyRows))
+                    break;
+            }
+            while (changed > 0 || (mode == Mode.MODIFIED && residual > tolerance));
+
+            solution.reset(problem);
+            for (int state = 0; state < model.numStates; state++)
+                if (!model.isFinal[state])
+                    solution.setAction(model.states[state], policyRows[state] >= 0 ? model.rowAction[policyRows[state]] : null);
+        }
+
+        /** Generates a random policy for the compiled model. Final states have no action. */
+        private int[] randomPolicyRows()
+        {
+            int[] policyRows = new int[model.numStates];
+            for (int state = 0; state < model.numStates; state++)
+            {
+                int numRows = model.stateRows[state+1] - model.stateRows[state];
+                if (model.isFinal[state] || numRows == 0)
+                    policyRows[state] = -1;
+                else
+                    policyRows[state] = model.stateRows[state] + random().nextInt(numRows);
+            }
+            return policyRows;
+        }
+
+        /** 
+         * Returns whether the policy is one of the policies reached. Otherwise, a copy of 
+         * it is added to them.
+         */
+        private static boolean reachedBefore(ArrayList<int[]> reached, int[] policyRows)
+        {
+            for (int[] policy : reached)
+                if (Arrays.equals(policy, policyRows))
+                    return true;
+            reached.add(policyRows.clone());
+            return false;
+        }
 
-            return newPolicy;
+        /** Final states take their reward as utility, the rest start at 0. */
+        private void resetUtilities(double[] utilities)
+        {
+            for (int state = 0; state < model.numStates; state++)
+                utilities[state] = model.isFinal[state] ? model.reward[state] : 0.0;
+        }
+
+        /** 
+         * Improves the policy given the utility (compiled model). The policy is updated in
+         * place, and the number of states whose action has changed is returned. Final 
+         * states keep no action. 
+         * 
+         * The current row is only replaced by a row better by more than IMPROVEMENT_MARGIN, 
+         * so that rows tied up to rounding errors do not swap.
+         */
+        private int policyImprovementCompiled(double[] utilities, int[] policyRows)
+        {
+            double[] setSums = new double[model.numSets()];
+            int changed = 0;
+            model.updateSetSums(utilities, setSums);
+            for (int state = 0; state < model.numStates; state++)
+            {
+                if (model.isFinal[state])
+                    continue;
+                int row = model.bestRow(state, utilities, setSums, problem.gamma);
+                if (row < 0 || row == policyRows[state])
+                    continue;
+                if (policyRows[state] >= 0 && model.expectedUtility(state, row, utilities, setSums, problem.gamma) 
+                        <= model.expectedUtility(state, policyRows[state], utilities, setSums, problem.gamma) + IMPROVEMENT_MARGIN)
+                    continue;
+                policyRows[state] = row;
+                changed++;
+            }
+            return changed;
         }
 
         // γ * max[a] ( SUM[s'] T(s,a,s')U(s') ) */
@@ -160,7 +343,9 @@ public class PolicyIteration extends LearningAlgorithm {
 	 */
 	@Override
 	public void setParams(String[] args) {
-            // In this case, there is only one parameter (maxDelta).
+            // The first parameter is maxDelta, the second one the mode (hash, compiled or modified)
+            // the third one the number of evaluation iterations per improvement (modified mode)
+            // and the fourth one the evaluator (jacobi, sor or bicgstab).
             if (args.length>0){
                 try{
                     maxDelta = Double.parseDouble(args[0]);
@@ -169,11 +354,59 @@ public class PolicyIteration extends LearningAlgorithm {
                     System.out.println("The value for maxDelta is not correct. Using 0.01.");
                 }	
             }	
+            if (args.length>1){
+                try{
+                    mode = Mode.valueOf(args[1].toUpperCase());
+                } 
+                catch(Exception e){
+                    System.out.println("The mode "+args[1]+" is not correct. Using "+mode+".");
+                }	
+            }
+            if (args.length>2){
+                try{
+                    setEvaluationSweeps(Integer.parseInt(args[2]));
+                } 
+                catch(Exception e){
+                    System.out.println("The number of evaluation sweeps is not correct. Using "+evaluationSweeps+".");
+                }	
+            }
+            if (args.length>3){
+                PolicyEvaluator named = PolicyEvaluator.forName(args[3]);
+                if (named != null)
+                    evaluator = named;
+                else
+                    System.out.println("The evaluator "+args[3]+" is not correct. Using jacobi.");
+            }
 	}
 	
+	/** Sets the mode used to evaluate and improve the policies. */
+	public void setMode(Mode mode){ this.mode = mode; }
+	
+	/** Sets the number of evaluation sweeps per improvement in MODIFIED mode. It must be positive. */
+	public void setEvaluationSweeps(int evaluationSweeps){
+		if (evaluationSweeps < 1){
+			System.out.println("The number of evaluation sweeps must be positive. Using "+this.evaluationSweeps+".");
+			return;
+		}
+		this.evaluationSweeps = evaluationSweeps;
+	}
+	
+	/** Sets the solver of the evaluation step (modes other than HASH). */
+	public void setEvaluator(PolicyEvaluator evaluator){ this.evaluator = evaluator; }
+	
+	/** Number of improvements carried out in the last execution. */
+	public int getIterations(){ return iterations; }
+	
+	/** Number of evaluation iterations carried out in the last execution. */
+	public int getSweeps(){ return sweeps; }
+	
+	/** Residual of the last evaluation. */
+	public double getResidual(){ return residual; }
+	
 	/** Prints the results */
 	public void printResults(){
             System.out.println("Policy Iteration");
+            System.out.println(iterations+" improvements, "+sweeps+" evaluation iterations, residual "+residual);
             // Prints the policy
             System.out.println("\nOptimal policy");
             System.out.println(solution);
@@ -0,0 +1,58 @@
+package algorithms.mdp;
+
+/**
+ * Successive over-relaxation. States are updated in place, each one using the newest
+ * utilities of the rest (Gauss-Seidel), and the correction is multiplied by the
+ * relaxation factor ω:
+ *
+ *     U(s) <- U(s) + ω * (R<π>(s) - ((I - γP<π>)U)(s)) / (1 - γT(s,π(s),s))
+ *
+ * The sums of the sets are updated with each change. ω = 1 is plain Gauss-Seidel;
+ * slightly greater values may converge faster, but the matrix is not symmetric and
+ * over-relaxation can diverge (e.g. ω = 1.3 on mazes with γ = 0.99).
+ */
+public class SOREvaluator extends PolicyEvaluator {
+
+    /** Relaxation factor. */
+    private double omega = 1.0;
+
+    /* Diagonal of the matrix for the current policy. */
+    private double[] diagonal;
+
+    public SOREvaluator(){}
+
+    public SOREvaluator(double omega){ this.omega = omega; }
+
+    @Override
+    protected double solve(double[] utilities, int maxIterations){
+        if (diagonal == null || diagonal.length != model.numStates)
+            diagonal = new double[model.numStates];
+        for (int state = 0; state < model.numStates; state++)
+            diagonal[state] = diagonal(state);
+
+        model.updateSetSums(utilities, setSums);
+        double maxResidual;
+        do
+        {
+            // Residual of each state just before its update.
+            maxResidual = 0.0;
+            for (int state = 0; state < model.numStates; state++)
+            {
+                double stateResidual = rhs(state) - product(state, utilities);
+                if (Math.abs(stateResidual) > maxResidual)
+                    maxResidual = Math.abs(stateResidual);
+                // Fixed utilities are set directly.
+                double change = isFixed(state) ? stateResidual : omega*stateResidual/diagonal[state];
+                utilities[state] += change;
+                model.updateSetSums(state, change, setSums);
+            }
+            iterations++;
+            backups += model.numStates;
+        }
+        while(maxResidual > tolerance && iterations < maxIterations);
+        return maxResidual;
+    }
+
+    /** Sets the relaxation factor. */
+    public void setOmega(double omega){ this.omega = omega; }
+}
@@ -3,8 +3,11 @@ package algorithms.mdp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import learning.*;
+import utils.IndexedMaxHeap;
 
 /** 
  * Implements the value iteration algorithm for Markov Decision Processes 
@@ -18,6 +21,44 @@ public class ValueIteration extends LearningAlgorithm {
 	/** Max delta. Controls convergence.*/
 	private double maxDelta = 0.01;
 	
+	/** Ways of carrying out the sweeps. */
+	public enum Mode {
+            /** Utilities stored in HashMaps, backups call the problem. */
+            HASH,
+            /** Sweeps only over the arrays of the compiled transition model. */
+            COMPILED,
+            /** Same as COMPILED, but each sweep is split into chunks processed in parallel. */
+            PARALLEL,
+            /** Compiled model, updating the utilities in place (Gauss-Seidel). */
+            GAUSS_SEIDEL,
+            /** 
+             * Compiled model, backing up first the states with the largest Bellman error and 
+             * then their predecessors (prioritized sweeping). 
+             */
+            PRIORITIZED,
+            /** 
+             * Compiled model, solving the strongly connected components of the transition 
+             * graph one by one in reverse topological order (topological value iteration).
+             */
+            TOPOLOGICAL
+	}
+	
+	/** Mode used to carry out the sweeps. */
+	private Mode mode = Mode.HASH;
+	
+	/** Number of threads used in PARALLEL mode. */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	
+	/** Number of states below which a chunk is not split any more (PARALLEL mode). */
+	private static final int CHUNK_SIZE = 4096;
+	
+	/** Compiled transition model and utilities of each state (modes other than HASH). */
+	private CompiledMDP model;
+	private double[] utilityValues;
+	
+	/** Number of backups carried out. */
+	private long backups;
+	
 	/** 
 	 * Learns the policy (notice that this method is protected, and called from the 
 	 * public method learnPolicy(LearningProblem problem, double gamma) in LearningAlgorithm.
@@ -32,6 +73,13 @@ public class ValueIteration extends LearningAlgorithm {
                 System.exit(0);
             } 
             
+            if (mode != Mode.HASH) {
+                learnPolicyCompiled();
+                System.out.println("Value Iteration: Utilities");
+                printUtilities();
+                return;
+            }
+            
             //****************************/
             // TO DO
             //***************************/
@@ -42,15 +90,18 @@ public class ValueIteration extends LearningAlgorithm {
             utilitiesAux = new HashMap<State,Double>();
 
             // iniciamos la utilidad
-            for (State state : MDPproblem.getAllStates()) {
+            for (State state : MDPproblem.getSolverStates()) {
                 if (MDPproblem.isFinal(state))
                     utilities.put(state, MDPproblem.getReward(state));
                 else
                     utilities.put(state,0.0);
             }
 
+            double threshold = maxDelta*(1-MDPproblem.gamma)/MDPproblem.gamma;
+            backups = 0;
             do {
                 delta = 0.0;
+                int sweepBackups = 0, changed = 0;
                 for(State state : utilities.keySet()) {
                     if (!MDPproblem.isFinal(state)) {
                         // U'(s) <- R(s) + γ * max[a] ( SUM[s'] T(s,a,s')U(s') )
@@ -64,18 +115,323 @@ public class ValueIteration extends LearningAlgorithm {
                         double operation = Math.abs(utilitiesAux.get(state) - utilities.get(state));
                         if (operation > delta)
                             delta = operation;
+                        if (operation > threshold)
+                            changed++;
+                        sweepBackups++;
                     }
                 }
                 // U <- U'
                 utilities.putAll(utilitiesAux);
+                backups += sweepBackups;
+                sweepFinished(delta, sweepBackups, changed);
             }
-            while(delta > maxDelta*(1-MDPproblem.gamma)/MDPproblem.gamma); // Para cuando hay convergencia
+            while(delta > threshold); // Para cuando hay convergencia
             //****************************/
 
             // Prints the utilities.
             System.out.println("Value Iteration: Utilities");
-            for (Entry<State,Double> entry: utilities.entrySet())
-            {
+            printUtilities();
+	}
+	
+	/** 
+	 * Value iteration over the compiled transition model. The utilities are stored in
+	 * arrays indexed by state, and each backup only reads primitive arrays. In PARALLEL 
+	 * mode, the states of each sweep are split into chunks. As each sweep reads the 
+	 * utilities of the previous one (Jacobi), the result does not depend on the mode.
+	 */
+	private void learnPolicyCompiled() {
+            MDPLearningProblem MDPproblem = ((MDPLearningProblem) problem);
+            double gamma = MDPproblem.gamma;
+            model = new CompiledMDP(MDPproblem);
+            int numStates = model.numStates;
+            int[] bestRows = new int[numStates];
+            double[] setSums = new double[model.numSets()];
+            double delta;
+            backups = 0;
+
+            // Final states keep their reward, the rest start at 0.
+            utilityValues = new double[numStates];
+            for (int state = 0; state < numStates; state++)
+                if (model.isFinal[state])
+                    utilityValues[state] = model.reward[state];
+
+            // Modes that update the utilities in place.
+            if (mode == Mode.GAUSS_SEIDEL || mode == Mode.PRIORITIZED || mode == Mode.TOPOLOGICAL) {
+                if (mode == Mode.GAUSS_SEIDEL)
+                    gaussSeidel(setSums, gamma);
+                else if (mode == Mode.PRIORITIZED)
+                    prioritizedSweeping(setSums, gamma);
+                else
+                    topological(setSums, gamma);
+                // The policy is greedy with respect to the final utilities.
+                model.updateSetSums(utilityValues, setSums);
+                for (int state = 0; state < numStates; state++)
+                    if (!model.isFinal[state]) {
+                        int row = model.bestRow(state, utilityValues, setSums, gamma);
+                        solution.setAction(model.states[state], row >= 0 ? model.rowAction[row] : null);
+                    }
+                return;
+            }
+
+            int numNonFinal = 0;
+            for (int state = 0; state < numStates; state++)
+                if (!model.isFinal[state])
+                    numNonFinal++;
+            double[] utilityValuesAux = utilityValues.clone();
+            ForkJoinPool pool = mode == Mode.PARALLEL ? new ForkJoinPool(threads) : null;
+
+            try {
+                do {
+                    model.updateSetSums(utilityValues, setSums);
+                    if (pool != null)
+                        delta = pool.invoke(new SweepTask(0, numStates, utilityValues, utilityValuesAux, setSums, bestRows, gamma));
+                    else
+                        delta = sweep(0, numStates, utilityValues, utilityValuesAux, setSums, bestRows, gamma);
+                    // U <- U'
+                    double[] swap = utilityValues;
+                    utilityValues = utilityValuesAux;
+                    utilityValuesAux = swap;
+                    backups += numNonFinal;
+                    if (isListened())
+                        sweepFinished(delta, numNonFinal, countChanges(utilityValuesAux, utilityValues, maxDelta*(1-gamma)/gamma));
+                }
+                while(delta > maxDelta*(1-gamma)/gamma);
+            }
+            finally {
+                // The threads of the pool are released even if a sweep fails.
+                if (pool != null)
+                    pool.shutdown();
+            }
+
+            // The policy is the one obtained in the last sweep.
+            for (int state = 0; state < numStates; state++)
+                if (!model.isFinal[state])
+                    solution.setAction(model.states[state], bestRows[state] >= 0 ? model.rowAction[bestRows[state]] : null);
+	}
+	
+	/** 
+	 * Sweeps updating the utilities in place, so that each backup uses the utilities
+	 * already updated in the same sweep (Gauss-Seidel). 
+	 */
+	private void gaussSeidel(double[] setSums, double gamma) {
+            double threshold = maxDelta*(1-gamma)/gamma;
+            double delta;
+            do {
+                delta = 0.0;
+                long sweepStart = backups;
+                int changed = 0;
+                // Recalculated in each sweep to avoid accumulating rounding errors.
+                model.updateSetSums(utilityValues, setSums);
+                for (int state = 0; state < model.numStates; state++) {
+                    if (!model.isFinal[state]) {
+                        double change = backup(state, setSums, gamma);
+                        if (Math.abs(change) > delta)
+                            delta = Math.abs(change);
+                        if (Math.abs(change) > threshold)
+                            changed++;
+                    }
+                }
+                sweepFinished(delta, backups - sweepStart, changed);
+            }
+            while(delta > threshold);
+	}
+	
+	/** 
+	 * Prioritized sweeping. States are kept in a queue ordered by a bound of their 
+	 * Bellman error. The state with the largest bound is backed up (its error becomes 0),
+	 * and the bounds of the states depending on it (reverse index of the model) grow by
+	 * γ times the change, which is the most their error can grow. Finishes when no state
+	 * can have an error greater than the threshold.
+	 */
+	private void prioritizedSweeping(double[] setSums, double gamma) {
+            double threshold = maxDelta*(1-gamma)/gamma;
+            model.buildPredecessors();
+            model.updateSetSums(utilityValues, setSums);
+            IndexedMaxHeap queue = new IndexedMaxHeap(model.numStates);
+            double[] errorBounds = new double[model.numStates];
+
+            // Initially, the bounds are the Bellman errors.
+            for (int state = 0; state < model.numStates; state++) {
+                if (model.isFinal[state])
+                    continue;
+                int row = model.bestRow(state, utilityValues, setSums, gamma);
+                errorBounds[state] = Math.abs(model.expectedUtility(state, row, utilityValues, setSums, gamma) - utilityValues[state]);
+                if (errorBounds[state] > threshold)
+                    queue.set(state, errorBounds[state]);
+            }
+
+            // Progress is reported every numStates backups, with the largest bound at that point.
+            long sweepStart = backups;
+            int changed = 0;
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                if (backups - sweepStart == model.numStates) {
+                    sweepFinished(errorBounds[state], model.numStates, changed);
+                    sweepStart = backups;
+                    changed = 0;
+                }
+                errorBounds[state] = 0;
+                double change = gamma * Math.abs(backup(state, setSums, gamma));
+                if (change > gamma * threshold)
+                    changed++;
+                // States reaching this one through a regular row.
+                for (int pos = model.predStart[state]; pos < model.predStart[state+1]; pos++)
+                    raiseErrorBound(queue, errorBounds, model.predecessors[pos], change, threshold);
+                // States reaching this one through a set, with probability 1/(size-1) at most.
+                for (int pos = model.stateSetStart[state]; pos < model.stateSetStart[state+1]; pos++) {
+                    int setId = model.stateSets[pos];
+                    int setSize = model.setStart[setId+1] - model.setStart[setId];
+                    double setChange = setSize > 1 ? change / (setSize - 1) : change;
+                    for (int user = model.setUserStart[setId]; user < model.setUserStart[setId+1]; user++)
+                        raiseErrorBound(queue, errorBounds, model.setUsers[user], setChange, threshold);
+                }
+            }
+            if (backups > sweepStart)
+                sweepFinished(0.0, backups - sweepStart, changed);
+	}
+	
+	/** 
+	 * Topological value iteration. The components of the transition graph are solved in
+	 * reverse topological order, so when a component is processed the utilities of all
+	 * the states it can reach outside it have already converged. Each component is swept
+	 * in place until its own states converge. Components with a single state that can not
+	 * reach itself (most corridors and dead ends) only need one backup. Each sweep of a
+	 * component with more states is reported as a sweep (including the backups of the 
+	 * single states solved before it).
+	 */
+	private void topological(double[] setSums, double gamma) {
+            double threshold = maxDelta*(1-gamma)/gamma;
+            StateComponents components = new StateComponents(model);
+            model.updateSetSums(utilityValues, setSums);
+            long reported = backups;
+            for (int component = 0; component < components.numComponents; component++) {
+                int from = components.componentStart[component];
+                int to = components.componentStart[component+1];
+                if (to - from == 1 && !reachesItself(components.componentStates[from])) {
+                    if (!model.isFinal[components.componentStates[from]])
+                        backup(components.componentStates[from], setSums, gamma);
+                    continue;
+                }
+                double delta;
+                do {
+                    delta = 0.0;
+                    int changed = 0;
+                    for (int pos = from; pos < to; pos++) {
+                        int state = components.componentStates[pos];
+                        if (!model.isFinal[state]) {
+                            double change = backup(state, setSums, gamma);
+                            if (Math.abs(change) > delta)
+                                delta = Math.abs(change);
+                            if (Math.abs(change) > threshold)
+                                changed++;
+                        }
+                    }
+                    sweepFinished(delta, backups - reported, changed);
+                    reported = backups;
+                }
+                while(delta > threshold);
+            }
+	}
+	
+	/** Number of states whose utility differs more than the threshold in both arrays. */
+	private static int countChanges(double[] previous, double[] current, double threshold) {
+            int changed = 0;
+            for (int state = 0; state < current.length; state++)
+                if (Math.abs(current[state] - previous[state]) > threshold)
+                    changed++;
+            return changed;
+	}
+	
+	/** Returns whether some row of the state can lead to the same state. */
+	private boolean reachesItself(int state) {
+            if (model.isFinal[state])
+                return false;
+            for (int row = model.stateRows[state]; row < model.stateRows[state+1]; row++)
+                if (model.selfProbability(state, row) > 0)
+                    return true;
+            return false;
+	}
+	
+	/** Raises the bound of the error of a state, and queues it if the bound exceeds the threshold. */
+	private void raiseErrorBound(IndexedMaxHeap queue, double[] errorBounds, int state, double change, double threshold) {
+            if (model.isFinal[state] || change == 0)
+                return;
+            errorBounds[state] += change;
+            if (errorBounds[state] > threshold)
+                queue.set(state, errorBounds[state]);
+	}
+	
+	/** Backs up a state in place, keeping the sums of the sets updated. Returns the change. */
+	private double backup(int state, double[] setSums, double gamma) {
+            // U(s) <- R(s) + γ * max[a] ( SUM[s'] T(s,a,s')U(s') )
+            int row = model.bestRow(state, utilityValues, setSums, gamma);
+            double change = model.expectedUtility(state, row, utilityValues, setSums, gamma) - utilityValues[state];
+            utilityValues[state] += change;
+            model.updateSetSums(state, change, setSums);
+            backups++;
+            return change;
+	}
+	
+	/** 
+	 * Backs up the states from index from (inclusive) to index to (exclusive), reading
+	 * the utilities from current and writing them in next. Returns the maximum change.
+	 */
+	private double sweep(int from, int to, double[] current, double[] next, double[] setSums, int[] bestRows, double gamma) {
+            double delta = 0.0;
+            for (int state = from; state < to; state++) {
+                if (!model.isFinal[state]) {
+                    // U'(s) <- R(s) + γ * max[a] ( SUM[s'] T(s,a,s')U(s') )
+                    int row = model.bestRow(state, current, setSums, gamma);
+                    bestRows[state] = row;
+                    next[state] = model.expectedUtility(state, row, current, setSums, gamma);
+                    // if |U'(s) - U(s)| > δ then
+                    //    δ <- |U'(s) - U(s)|
+                    double operation = Math.abs(next[state] - current[state]);
+                    if (operation > delta)
+                        delta = operation;
+                }
+            }
+            return delta;
+	}
+	
+	/** Sweeps a range of states, splitting it in halves until it is small enough. */
+	private class SweepTask extends RecursiveTask<Double> {
+            private static final long serialVersionUID = 1L;
+            private final int from, to;
+            private final double[] current, next, setSums;
+            private final int[] bestRows;
+            private final double gamma;
+
+            SweepTask(int from, int to, double[] current, double[] next, double[] setSums, int[] bestRows, double gamma) {
+                this.from = from;
+                this.to = to;
+                this.current = current;
+                this.next = next;
+                this.setSums = setSums;
+                this.bestRows = bestRows;
+                this.gamma = gamma;
+            }
+
+            @Override
+            protected Double compute() {
+                if (to - from <= CHUNK_SIZE)
+                    return sweep(from, to, current, next, setSums, bestRows, gamma);
+                int middle = (from + to) >>> 1;
+                SweepTask left = new SweepTask(from, middle, current, next, setSums, bestRows, gamma);
+                left.fork();
+                double rightDelta = new SweepTask(middle, to, current, next, setSums, bestRows, gamma).compute();
+                return Math.max(left.join(), rightDelta);
+            }
+	}
+	
+	/** Prints the utility of each state. */
+	private void printUtilities() {
+            if (mode != Mode.HASH) {
+                for (int state = 0; state < model.numStates; state++)
+                    System.out.println("\t"+model.states[state] +"  ---> "+utilityValues[state]);
+                return;
+            }
+            for (Entry<State,Double> entry: utilities.entrySet()) {
                 State state = entry.getKey();
                 double utility = entry.getValue();
                 System.out.println("\t"+state +"  ---> "+utility);
@@ -105,7 +461,8 @@ public class ValueIteration extends LearningAlgorithm {
 	 */
 	@Override
 	public void setParams(String[] args) {
-		// In this case, there is only one parameter (maxDelta).
+		// The first parameter is maxDelta, the second one the mode (hash, compiled, parallel,
+		// gauss_seidel, prioritized or topological) and the third one the number of threads (parallel mode).
             if (args.length>0){
                 try{
                     maxDelta = Double.parseDouble(args[0]);
@@ -114,18 +471,45 @@ public class ValueIteration extends LearningAlgorithm {
                     System.out.println("The value for maxDelta is not correct. Using 0.01.");
                 }	
             }
+            if (args.length>1){
+                try{
+                    mode = Mode.valueOf(args[1].toUpperCase());
+                } 
+                catch(Exception e){
+                    System.out.println("The mode "+args[1]+" is not correct. Using "+mode+".");
+                }	
+            }
+            if (args.length>2){
+                try{
+                    setThreads(Integer.parseInt(args[2]));
+                } 
+                catch(Exception e){
+                    System.out.println("The number of threads is not correct. Using "+threads+".");
+                }	
+            }
 	}
 	
+	/** Sets the mode used to carry out the sweeps. */
+	public void setMode(Mode mode){ this.mode = mode; }
+	
+	/** Sets the number of threads used in PARALLEL mode. It must be positive. */
+	public void setThreads(int threads){
+		if (threads <= 0){
+			System.out.println("The number of threads must be positive. Using "+Runtime.getRuntime().availableProcessors()+".");
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		this.threads = threads;
+	}
+	
+	/** Number of backups carried out in the last execution (all modes). */
+	public long getBackups(){ return backups; }
+	
 	/** Prints the results */
 	public void printResults(){
 		// Prints the utilities.
 		System.out.println("Value Iteration\n");
 		System.out.println("Utilities");
-		for (Entry<State,Double> entry: utilities.entrySet()){
-                    State state = entry.getKey();
-                    double utility = entry.getValue();
-                    System.out.println("\t"+state +"  ---> "+utility);
-		}
+		printUtilities();
 		// Prints the policy
 		System.out.println("\nOptimal policy");
 		System.out.println(solution);
@@ -0,0 +1,78 @@
+package algorithms.qlearning;
+
+import java.util.Arrays;
+
+/** 
+ * Sparse eligibility traces of the pairs state-action (pair = state*numActions+action).
+ * Only the pairs with a trace are stored, in a list of pairs and a parallel list of 
+ * traces, plus the position of each pair in the lists, so visiting a pair is O(1) and 
+ * decaying the traces is O(active traces). Traces that fall below a threshold are 
+ * removed, which bounds the number of active traces to the last steps of the episode.
+ */
+public class EligibilityTraces {
+
+    /** Pairs with a trace, and their traces. */
+    private final int[] pairs;
+    private final double[] traces;
+
+    /** Position of each pair in the lists, or -1 if it has no trace. */
+    private final int[] positions;
+
+    /** Number of active traces. */
+    private int size;
+
+    /** Creates empty traces for the given number of pairs. */
+    public EligibilityTraces(int numPairs){
+        pairs = new int[numPairs];
+        traces = new double[numPairs];
+        positions = new int[numPairs];
+        Arrays.fill(positions, -1);
+    }
+
+    /** Sets the trace of a pair to 1 (replacing traces). */
+    public void visit(int pair){
+        int position = positions[pair];
+        if (position<0){
+            position = size++;
+            positions[pair] = position;
+            pairs[position] = pair;
+        }
+        traces[position] = 1.0;
+    }
+
+    /** Multiplies all the traces by the factor, removing the ones that fall below the threshold. */
+    public void decay(double factor, double threshold){
+        int position = 0;
+        while (position<size){
+            traces[position] *= factor;
+            if (traces[position]>=threshold)
+                position++;
+            else {
+                // The last trace takes the place of the removed one.
+                positions[pairs[position]] = -1;
+                size--;
+                if (position<size){
+                    pairs[position] = pairs[size];
+                    traces[position] = traces[size];
+                    positions[pairs[position]] = position;
+                }
+            }
+        }
+    }
+
+    /** Removes all the traces. */
+    public void clear(){
+        for (int position=0; position<size; position++)
+            positions[pairs[position]] = -1;
+        size = 0;
+    }
+
+    /** Number of active traces. */
+    public int size(){ return size; }
+
+    /** Pair of the active trace at a position (from 0 to size()-1). */
+    public int pair(int position){ return pairs[position]; }
+
+    /** Trace at a position (from 0 to size()-1). */
+    public double trace(int position){ return traces[position]; }
+}
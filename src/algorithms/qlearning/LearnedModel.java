@@ -0,0 +1,139 @@
+package algorithms.qlearning;
+
+import java.util.Arrays;
+
+/** 
+ * Transition model of an indexed problem learnt from the transitions observed, used to
+ * plan (Dyna-Q). For each pair state-action (pair = state*numActions+action) it stores the
+ * number of visits, the sum of the rewards obtained, and the number of times each next 
+ * state has been reached. The next states of the pairs, and the pairs that have reached 
+ * each state (its predecessors, used by prioritized sweeping), are lists of outcomes kept
+ * in growable primitive arrays:
+ * 
+ *     firstOutcome[pair] -> outcome -> nextOutcome[outcome] -> ... -> -1
+ *     firstPredecessor[state] -> outcome -> nextPredecessor[outcome] -> ... -> -1
+ * 
+ * where each outcome stores its pair, its next state and its count. Nothing is allocated
+ * per transition, except when the arrays of outcomes grow.
+ */
+public class LearnedModel {
+
+    /** Number of actions of the problem. */
+    private final int numActions;
+
+    /** Visits and sum of the rewards of each pair. */
+    private final int[] visits;
+    private final double[] rewardSums;
+
+    /** First outcome of each pair, and first outcome leading to each state (-1 if none). */
+    private final int[] firstOutcome, firstPredecessor;
+
+    /** Whether each state has been observed to be final. */
+    private final boolean[] finalStates;
+
+    /** Pairs visited at least once, in the order of their first visit. */
+    private int[] visitedPairs = new int[64];
+    private int numVisited;
+
+    /** Outcomes: pair, next state, count, next outcome of the pair and next predecessor of the state. */
+    private int[] outcomePair, outcomeState, outcomeCount, nextOutcome, nextPredecessor;
+    private int numOutcomes;
+
+    /** Creates an empty model for a problem with the given number of states and actions. */
+    public LearnedModel(int numStates, int numActions){
+        this.numActions = numActions;
+        visits = new int[numStates*numActions];
+        rewardSums = new double[numStates*numActions];
+        firstOutcome = new int[numStates*numActions];
+        firstPredecessor = new int[numStates];
+        finalStates = new boolean[numStates];
+        Arrays.fill(firstOutcome, -1);
+        Arrays.fill(firstPredecessor, -1);
+        int capacity = 1024;
+        outcomePair = new int[capacity];
+        outcomeState = new int[capacity];
+        outcomeCount = new int[capacity];
+        nextOutcome = new int[capacity];
+        nextPredecessor = new int[capacity];
+    }
+
+    /** 
+     * Adds a transition to the model. The reward is the one of the target of the 
+     * transition (see QLearning), and terminal tells whether the next state is final.
+     */
+    public void add(int state, int action, double reward, int nextState, boolean terminal){
+        int pair = state*numActions+action;
+        if (visits[pair]==0){
+            if (numVisited==visitedPairs.length)
+                visitedPairs = Arrays.copyOf(visitedPairs, 2*numVisited);
+            visitedPairs[numVisited++] = pair;
+        }
+        visits[pair]++;
+        rewardSums[pair] += reward;
+        if (terminal)
+            finalStates[nextState] = true;
+        for (int outcome=firstOutcome[pair]; outcome>=0; outcome=nextOutcome[outcome])
+            if (outcomeState[outcome]==nextState){
+                outcomeCount[outcome]++;
+                return;
+            }
+        // New outcome of the pair.
+        if (numOutcomes==outcomePair.length)
+            growOutcomes();
+        int outcome = numOutcomes++;
+        outcomePair[outcome] = pair;
+        outcomeState[outcome] = nextState;
+        outcomeCount[outcome] = 1;
+        nextOutcome[outcome] = firstOutcome[pair];
+        firstOutcome[pair] = outcome;
+        nextPredecessor[outcome] = firstPredecessor[nextState];
+        firstPredecessor[nextState] = outcome;
+    }
+
+    /** Doubles the capacity of the arrays of outcomes. */
+    private void growOutcomes(){
+        int capacity = 2*outcomePair.length;
+        outcomePair = Arrays.copyOf(outcomePair, capacity);
+        outcomeState = Arrays.copyOf(outcomeState, capacity);
+        outcomeCount = Arrays.copyOf(outcomeCount, capacity);
+        nextOutcome = Arrays.copyOf(nextOutcome, capacity);
+        nextPredecessor = Arrays.copyOf(nextPredecessor, capacity);
+    }
+
+    /** 
+     * Expected target of a visited pair according to the model:
+     * 
+     *     r(s,a) + gamma * SUM[s' not final] n(s,a,s')/n(s,a) * max[a'] Q(s',a')
+     */
+    public double target(int pair, QTable qTable, double gamma){
+        double sum = 0;
+        for (int outcome=firstOutcome[pair]; outcome>=0; outcome=nextOutcome[outcome])
+            if (!finalStates[outcomeState[outcome]])
+                sum += outcomeCount[outcome] * qTable.getMaxQValue(outcomeState[outcome]);
+        return (rewardSums[pair] + gamma*sum) / visits[pair];
+    }
+
+    /** Number of pairs visited. */
+    public int numVisited(){ return numVisited; }
+
+    /** The n-th pair visited (from 0). */
+    public int visitedPair(int n){ return visitedPairs[n]; }
+
+    /** First outcome leading to a state (its first predecessor), or -1 if none. */
+    public int firstPredecessor(int state){ return firstPredecessor[state]; }
+
+    /** Next outcome leading to the same state, or -1 if none. */
+    public int nextPredecessor(int outcome){ return nextPredecessor[outcome]; }
+
+    /** Pair of an outcome. */
+    public int pairOf(int outcome){ return outcomePair[outcome]; }
+
+    /** State of a pair. */
+    public int stateOf(int pair){ return pair/numActions; }
+
+    /** Action of a pair. */
+    public int actionOf(int pair){ return pair%numActions; }
+
+    /** Number of pairs of the problem (states times actions). */
+    public int numPairs(){ return visits.length; }
+}
@@ -0,0 +1,74 @@
+package algorithms.qlearning;
+
+import utils.RandomSource;
+import utils.SumTree;
+
+/** 
+ * Replay buffer that samples the transitions proportionally to a priority, so that the
+ * updates concentrate on the transitions whose TD error is large (prioritized experience
+ * replay). The priority of a transition with TD error δ is (|δ| + ε)^α, and the priorities
+ * are kept in a SumTree, so sampling and updating them take O(log n). New transitions
+ * take the largest priority seen, so they are learnt at least once before their error
+ * is known.
+ * 
+ * The exponent α sets how much the sampling depends on the priorities (0 is uniform).
+ * As learning from a non-uniform distribution biases the values, each update can be
+ * weighted by (P(min) / P(i))^β, the importance sampling correction normalized by the
+ * largest weight: β = 1 corrects the bias completely, β = 0 does not correct it.
+ */
+public class PrioritizedReplayBuffer extends ReplayBuffer {
+
+    /** Added to the errors, so that no transition has priority 0. */
+    private static final double EPSILON = 1e-6;
+
+    /** Priorities of the positions of the buffer. */
+    private final SumTree priorities;
+
+    /** Exponents of the priorities and of the correction. */
+    private final double alpha, beta;
+
+    /** Largest priority seen, given to the new transitions. */
+    private double maxPriority = 1.0;
+
+    /** Creates an empty buffer with the given exponents. */
+    public PrioritizedReplayBuffer(int capacity, double alpha, double beta){
+        super(capacity);
+        this.alpha = alpha;
+        this.beta = beta;
+        priorities = new SumTree(capacity);
+    }
+
+    @Override
+    public int add(int state, int action, double reward, int nextState, boolean terminal){
+        int position = super.add(state, action, reward, nextState, terminal);
+        priorities.set(position, maxPriority);
+        return position;
+    }
+
+    @Override
+    public int sample(RandomSource random){
+        return priorities.find(random.nextDouble()*priorities.total());
+    }
+
+    @Override
+    public double weight(int position){
+        if (beta==0)
+            return 1.0;
+        return Math.pow(priorities.min()/priorities.get(position), beta);
+    }
+
+    @Override
+    public void updateError(int position, double tdError){
+        double priority = Math.pow(tdError+EPSILON, alpha);
+        priorities.set(position, priority);
+        if (priority>maxPriority)
+            maxPriority = priority;
+    }
+
+    @Override
+    public void clear(){
+        super.clear();
+        priorities.clear();
+        maxPriority = 1.0;
+    }
+}
@@ -1,15 +1,111 @@
 package algorithms.qlearning;
 
 import learning.*;
+import utils.IndexedMaxHeap;
+import utils.RandomSource;
 import utils.Utils;
 /** 
  * This class must implement the QLearning algorithm to learn the optimal policy. 
+ * 
+ * Learning can be bounded: episodes can be cut after a maximum number of steps, and the
+ * whole execution can be given a budget of time and/or steps. The execution finishes
+ * after the given number of episodes or when a budget is exhausted, whatever happens 
+ * first, and the policy learnt so far is returned. stop() finishes it from another 
+ * thread in the same way.
+ * 
+ * With experience replay (setReplay, indexed problems only), each real transition is 
+ * stored in a ReplayBuffer, and after each step a mini-batch of transitions sampled 
+ * uniformly from the buffer is learnt again, so each (expensive) step of the problem is
+ * used several times. In this mode all the updates, real or replayed, move Q(s,a) 
+ * towards the target of the transition: Q(s,a) <- Q(s,a) + alpha*(target - Q(s,a)), 
+ * with target = R(s') if s' is final, and R(s') + R(s,a,s') + gamma*max[a']Q(s',a') 
+ * otherwise. (The update of final transitions without replay, Q(s,a) + alpha*R(s'), 
+ * would grow with each replay.) With prioritized replay (setPrioritizedReplay), the
+ * batches are sampled proportionally to the TD errors of the transitions, and each 
+ * replayed update is scaled by the weight of PrioritizedReplayBuffer.
+ * 
+ * With planning (Dyna-Q, setPlanning, indexed problems only), the transitions observed 
+ * are learnt in a LearnedModel, and each real step is followed by a number of backups 
+ * simulated with the model, Q(s,a) <- Q(s,a) + alpha*(target(s,a) - Q(s,a)), where
+ * target(s,a) is the expected target according to the model. The pairs backed up are
+ * chosen uniformly among the pairs visited, or, with prioritized sweeping, from a queue 
+ * ordered by the change of their targets: after a pair is backed up, the pairs leading
+ * to its state are queued with priority |target - Q|. Planning replaces the replay.
+ * 
+ * With eligibility traces (Watkins Q(lambda), setTraces, indexed problems only), the TD 
+ * error of each step, δ = target - Q(s,a), updates all the pairs visited recently in
+ * the episode, Q(x,b) <- Q(x,b) + alpha*δ*e(x,b), where the trace of the pair of the step
+ * is set to 1 and all of them decay by gamma*lambda per step (see EligibilityTraces). 
+ * The target is the same as in replay mode, so final transitions move Q(s,a) towards
+ * R(s') instead of adding alpha*R(s') as the basic update does. 
+ * Watkins cuts the traces after an exploratory action; as actions are always greedy
+ * (actions of unknown states are ties), traces only reset at the end of each episode.
+ * Traces are used when neither planning nor replay is enabled.
+ * 
+ * With batched agents (setBatchAgents, problems implementing BatchEnvironment), several
+ * agents learn the same table at once: each step of the batch moves all of them with the
+ * BatchEnvironment of the problem, without State or Action objects, and then updates
+ * their pairs in order. Each agent runs its own episodes, starting a new one as soon as
+ * it finishes the last one, and the episodes in progress when the execution finishes
+ * are not counted. Every transition of a batch is learnt before checking the limits, so
+ * the last batch may finish a few more episodes than the iterations (up to the number of
+ * agents minus one). The last batch only moves the agents the budget of steps allows.
+ * Batches use the basic update, so they are only used when planning, replay and traces
+ * are disabled.
  */
 public class QLearning extends LearningAlgorithm{
 
     /* Table containing the Q values for each pair State-Action. */
     private QTable qTable;
 
+    /* Maximum number of steps of an episode. */
+    private int maxEpisodeSteps=Integer.MAX_VALUE;
+
+    /* Budgets of time (nanoseconds) and steps of an execution (0 means no budget). */
+    private long timeBudget, stepBudget;
+
+    /* Steps between two checks of the time budget. */
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    /* Time at which the time budget is exhausted. */
+    private long deadline;
+
+    /* Whether the execution must finish (budget exhausted or stop requested). */
+    private volatile boolean stopped;
+
+    /* Episodes and steps carried out in the last execution. */
+    private int episodes;
+    private long steps;
+
+    /* Capacity of the replay buffer (0 means no replay) and transitions replayed after each step. */
+    private int replayCapacity, batchSize=32;
+
+    /* Exponents of the priorities and of their correction (prioritized replay, 0 means uniform sampling). */
+    private double priorityExponent, correctionExponent;
+
+    /* Replay buffer (kept between executions with the same parameters). */
+    private ReplayBuffer replay;
+
+    /* Number of backups simulated after each step (0 means no planning), and whether they are prioritized. */
+    private int planningSteps;
+    private boolean prioritizedSweeping;
+
+    /* Pairs are queued by prioritized sweeping only if the change of their target exceeds this. */
+    private static final double PRIORITY_THRESHOLD = 1e-4;
+
+    /* Model learnt and queue of pairs of prioritized sweeping (planning). */
+    private LearnedModel model;
+    private IndexedMaxHeap queue;
+
+    /* Decay of the traces (0 means no traces) and threshold below which they are removed. */
+    private double lambda, traceThreshold=0.01;
+
+    /* Eligibility traces of the current episode. */
+    private EligibilityTraces traces;
+
+    /* Number of agents moved at once (1 means no batches). */
+    private int batchAgents=1;
+
     /* Number of iterations used to learn the algorithm.*/
     private int iterations=1000;
 
@@ -25,6 +121,125 @@ public class QLearning extends LearningAlgorithm{
     /** Sets the parameter alpha. */
     public void setAlpha(double alpha){ this.alpha = alpha; }
 
+    /** 
+     * Sets the maximum number of steps of an episode, after which the episode is cut 
+     * without any further update (0 means no maximum). 
+     */
+    public void setMaxEpisodeSteps(int maxEpisodeSteps){ 
+        this.maxEpisodeSteps = maxEpisodeSteps>0 ? maxEpisodeSteps : Integer.MAX_VALUE; 
+    }
+
+    /** Sets the time budget of an execution, in milliseconds (0 means no budget). */
+    public void setTimeBudget(long millis){ this.timeBudget = millis*1000000L; }
+
+    /** Sets the budget of steps of an execution (0 means no budget). */
+    public void setStepBudget(long stepBudget){ this.stepBudget = stepBudget; }
+
+    /** 
+     * Asks the running execution to finish after the current step. learnPolicy then 
+     * returns the policy learnt so far. Can be called from any thread.
+     */
+    public void stop(){ stopped = true; }
+
+    /** 
+     * Enables experience replay with a buffer of the given capacity, replaying batchSize
+     * transitions after each step (a capacity of 0 disables replay). The batches must
+     * have between 1 and capacity transitions (as the buffer must hold a batch before 
+     * replaying it). Only applies to indexed problems.
+     */
+    public void setReplay(int capacity, int batchSize){
+        this.replayCapacity = Math.max(0, capacity);
+        if (replayCapacity>0 && batchSize<1){
+            System.out.println("The size of the batches must be positive. Using 1.");
+            batchSize = 1;
+        }
+        else if (replayCapacity>0 && batchSize>replayCapacity){
+            System.out.println("The size of the batches can not exceed the capacity of the buffer. Using "+replayCapacity+".");
+            batchSize = replayCapacity;
+        }
+        this.batchSize = batchSize;
+        replay = null;
+    }
+
+    /** Number of transitions replayed after each step (see setReplay). */
+    public int getBatchSize(){ return batchSize; }
+
+    /** 
+     * Samples the replayed transitions proportionally to their TD errors raised to 
+     * priorityExponent (0 means uniform sampling), correcting the bias with the exponent
+     * correctionExponent (see PrioritizedReplayBuffer). Replay must be enabled with setReplay.
+     */
+    public void setPrioritizedReplay(double priorityExponent, double correctionExponent){
+        this.priorityExponent = priorityExponent;
+        this.correctionExponent = correctionExponent;
+        replay = null;
+    }
+
+    /** 
+     * Enables planning (Dyna-Q) with the given number of simulated backups after each
+     * step (0 disables it), choosing the pairs to back up uniformly or by prioritized
+     * sweeping. Only applies to indexed problems.
+     */
+    public void setPlanning(int planningSteps, boolean prioritizedSweeping){
+        this.planningSteps = Math.max(0, planningSteps);
+        this.prioritizedSweeping = prioritizedSweeping;
+    }
+
+    /** 
+     * Enables eligibility traces (Watkins Q(lambda)) with the given decay (0 disables 
+     * them), removing the traces below the threshold. Only applies to indexed problems.
+     */
+    public void setTraces(double lambda, double threshold){
+        this.lambda = lambda;
+        this.traceThreshold = threshold;
+    }
+
+    /** 
+     * Moves the given number of agents at once if the problem implements BatchEnvironment
+     * (1 disables the batches). 
+     */
+    public void setBatchAgents(int batchAgents){ this.batchAgents = Math.max(1, batchAgents); }
+
+    /** Number of episodes (finished or cut) of the last execution. */
+    public int getEpisodes(){ return episodes; }
+
+    /** Number of steps of the last execution. */
+    public long getSteps(){ return steps; }
+
+    /** 
+     * Returns the greedy policy of the current Q values (null before learning). Must be
+     * called from the thread running the algorithm (e.g. from its listener) or once 
+     * learnPolicy has returned, as the table is not synchronized.
+     */
+    public Policy currentPolicy(){
+        return qTable!=null ? qTable.generatePolicy() : null;
+    }
+
+    /* Starts the budgets of a new execution. */
+    private void startBudgets(){
+        stopped = false;
+        episodes = 0;
+        steps = 0;
+        deadline = System.nanoTime() + timeBudget;
+    }
+
+    /* Accounts for a step, and returns whether the execution must finish. */
+    private boolean stepDone(){
+        steps++;
+        if (stepBudget>0 && steps>=stepBudget)
+            stopped = true;
+        else if (timeBudget>0 && steps%TIME_CHECK_INTERVAL==0 && System.nanoTime()-deadline>=0)
+            stopped = true;
+        return stopped;
+    }
+
+    /* Whether a new episode can start. */
+    private boolean canStartEpisode(){
+        if (timeBudget>0 && System.nanoTime()-deadline>=0)
+            stopped = true;
+        return episodes<iterations && !stopped;
+    }
+
     /** 
      * Learns the policy (notice that this method is protected, and called from the 
      * public method learnPolicy(LearningProblem problem, double gamma) in LearningAlgorithm.
@@ -32,12 +247,39 @@ public class QLearning extends LearningAlgorithm{
     public void learnPolicy(){
         // Creates the QTable
         qTable = new QTable(problem);
+        qTable.setRandomSource(random());
+        startBudgets();
+
+        // Indexed problems work with the indices of states and actions.
+        if (qTable.isDense()){
+            if (replayCapacity==0)
+                replay = null;
+            else if (replay==null)
+                replay = priorityExponent>0 ? new PrioritizedReplayBuffer(replayCapacity, priorityExponent, correctionExponent)
+                                            : new ReplayBuffer(replayCapacity);
+            else
+                replay.clear();
+            // The model is learnt again in each execution.
+            IndexedProblem indexed = (IndexedProblem) problem;
+            model = planningSteps>0 ? new LearnedModel(indexed.numStates(), indexed.numActions()) : null;
+            queue = model!=null && prioritizedSweeping ? new IndexedMaxHeap(model.numPairs()) : null;
+            traces = lambda>0 ? new EligibilityTraces(indexed.numStates()*indexed.numActions()) : null;
+            if (batchAgents>1 && problem instanceof BatchEnvironment && model==null && replay==null && traces==null)
+                learnPolicyBatch();
+            else
+                learnPolicyDense();
+            return;
+        }
+        if (replayCapacity>0 || planningSteps>0 || lambda>0)
+            System.out.println("Experience replay, planning and traces require an indexed problem. Learning without them.");
 
         // The algorithm carries out a certain number of iterations
-        for (int nIteration=0; nIteration<iterations; nIteration++){
+        while (canStartEpisode()){
             State currentState, newState;         // Current state and new state
             Action selAction;                     // Selected action
             double Q, reward, maxQ;               // Values necessary to update the table.
+            int episodeSteps = 0;                 // Steps and largest TD error of the episode.
+            double maxTDError = 0;
 
             // Generates a new initial state.
              currentState = problem.getRandomState();
@@ -71,28 +313,263 @@ public class QLearning extends LearningAlgorithm{
                 maxQ = qTable.getMaxQValue(newState);
                 
                 // Actualizamos Q'(s,a) 
+                double oldQ = qTable.getQValue(currentState,selAction);
                 if(!problem.isFinal(newState))
                 {
                     // si no es final -> Q'(s,a) = (1-alpha)*Q(s,a) + alpha * (R(s') + gamma * maxAccion(Q(s',a'))
                     // siendo a' accion que produce la raiz de s' la utilidad maxima
-                    Q = (1-alpha) * qTable.getQValue(currentState,selAction) + alpha*(reward + problem.gamma * maxQ);
+                    Q = (1-alpha) * oldQ + alpha*(reward + problem.gamma * maxQ);
                 }
                 else
                 {
                     // si es final R(s')=R(s') and finally Q'(s,a) = Q(s,a) + alfa*R(s')
                     reward = problem.getReward(newState);
-                    Q = qTable.getQValue(currentState, selAction)+ alpha*reward;
+                    Q = oldQ + alpha*reward;
                 }
                 
                 // Q(s,a) = Q'(s,a) actualizar la utilidad del estado
                 qTable.setQValue(currentState, selAction,Q);
                 currentState=newState;
+                // The update moves Q(s,a) alpha times the TD error.
+                maxTDError = Math.max(maxTDError, Math.abs(Q - oldQ) / alpha);
+                episodeSteps++;
             }
-            while(!problem.isFinal(newState));
+            while(!stepDone() && !problem.isFinal(newState) && episodeSteps<maxEpisodeSteps);
+            episodes++;
+            episodeFinished(episodeSteps, maxTDError);
         }
         solution = qTable.generatePolicy();
     }
 
+    /** 
+     * Same algorithm as learnPolicy(), but working with the indices of the states and
+     * the ordinals of the actions in the dense QTable.
+     */
+    private void learnPolicyDense(){
+        IndexedProblem indexed = (IndexedProblem) problem;
+        RandomSource random = random();
+
+        while (canStartEpisode()){
+            State currentState, newState;         // Current state and new state
+            int current, next, selAction;         // Their indices and the ordinal of the selected action
+            Action action;                        // Selected action
+            double Q, reward, maxQ;               // Values necessary to update the table.
+            int episodeSteps = 0;                 // Steps and largest TD error of the episode.
+            double maxTDError = 0;
+
+            // Generates a new initial state.
+            currentState = problem.getRandomState();
+            current = indexed.stateIndex(currentState);
+
+            // Iterates until it finds a final state.
+            do
+            {
+                // Selects the action with pi*(Q), or a random one if the state is unknown.
+                selAction = qTable.getActionMaxValue(current);
+                if (selAction < 0) {
+                    action = problem.randomAction(currentState);
+                    selAction = indexed.actionIndex(action);
+                }
+                else
+                    action = indexed.actionAt(selAction);
+
+                // Applies the action and reads the new state.
+                newState = problem.applyAction(currentState, action);
+                next = indexed.stateIndex(newState);
+
+                // R(s') + R(s,a,s')
+                reward = problem.getReward(newState) + problem.getTransitionReward(currentState, action, newState);
+                maxQ = qTable.getMaxQValue(next);
+
+                // Updates Q(s,a)
+                if (model!=null){
+                    // Learns the transition (with the reward of its target), backs up the pair and plans.
+                    boolean terminal = problem.isFinal(newState);
+                    if (terminal)
+                        reward = problem.getReward(newState);
+                    model.add(current, selAction, reward, next, terminal);
+                    maxTDError = Math.max(maxTDError, backup(current*indexed.numActions()+selAction));
+                    plan(current, random);
+                }
+                else if (replay!=null){
+                    // Stores the transition with the reward of its target, and learns it and a batch of the buffer.
+                    boolean terminal = problem.isFinal(newState);
+                    if (terminal)
+                        reward = problem.getReward(newState);
+                    replay.add(current, selAction, reward, next, terminal);
+                    maxTDError = Math.max(maxTDError, update(current, selAction, reward, next, terminal, 1.0));
+                    if (replay.size()>=batchSize)
+                        for (int sample=0; sample<batchSize; sample++){
+                            int position = replay.sample(random);
+                            double error = update(replay.state(position), replay.action(position), replay.reward(position), 
+                                    replay.nextState(position), replay.isTerminal(position), replay.weight(position));
+                            replay.updateError(position, error);
+                        }
+                }
+                else if (traces!=null){
+                    // δ = target - Q(s,a), and every pair with a trace moves alpha*δ*e.
+                    boolean terminal = problem.isFinal(newState);
+                    if (terminal)
+                        reward = problem.getReward(newState);
+                    double delta = target(reward, next, terminal) - qTable.getQValue(current, selAction);
+                    traces.visit(current*indexed.numActions()+selAction);
+                    for (int position=0; position<traces.size(); position++){
+                        int pair = traces.pair(position);
+                        int state = pair/indexed.numActions(), actionIdx = pair%indexed.numActions();
+                        qTable.setQValue(state, actionIdx, qTable.getQValue(state, actionIdx) + alpha*delta*traces.trace(position));
+                    }
+                    traces.decay(problem.gamma*lambda, traceThreshold);
+                    maxTDError = Math.max(maxTDError, Math.abs(delta));
+                }
+                else{
+                    double oldQ = qTable.getQValue(current, selAction);
+                    if(!problem.isFinal(newState))
+                        Q = (1-alpha) * oldQ + alpha*(reward + problem.gamma * maxQ);
+                    else
+                        Q = oldQ + alpha*problem.getReward(newState);
+                    qTable.setQValue(current, selAction, Q);
+                    maxTDError = Math.max(maxTDError, Math.abs(Q - oldQ) / alpha);
+                }
+                episodeSteps++;
+
+                currentState = newState;
+                current = next;
+            }
+            while(!stepDone() && !problem.isFinal(newState) && episodeSteps<maxEpisodeSteps);
+            if (traces!=null)
+                traces.clear();
+            episodes++;
+            episodeFinished(episodeSteps, maxTDError);
+        }
+        solution = qTable.generatePolicy();
+    }
+
+    /** 
+     * Same algorithm as learnPolicyDense() with the basic update, moving batchAgents 
+     * agents at once with the BatchEnvironment of the problem.
+     */
+    private void learnPolicyBatch(){
+        IndexedProblem indexed = (IndexedProblem) problem;
+        BatchEnvironment environment = (BatchEnvironment) problem;
+        RandomSource random = random();
+        int numAgents = batchAgents;
+        int[] states = new int[numAgents];        // Current state of each agent, and the one before the step.
+        int[] previous = new int[numAgents];
+        int[] actions = new int[numAgents];       // Selected actions, and the result of the step.
+        int[] nextStates = new int[numAgents];
+        double[] rewards = new double[numAgents];
+        boolean[] done = new boolean[numAgents];
+        int[] episodeSteps = new int[numAgents];  // Steps and largest TD error of the episode of each agent.
+        double[] maxTDErrors = new double[numAgents];
+
+        // Generates the initial states.
+        for (int agent=0; agent<numAgents; agent++)
+            states[agent] = environment.randomStateIndex(random);
+
+        while (canStartEpisode()){
+            // The last batch only moves the agents the budget of steps allows.
+            int numActive = stepBudget>0 ? (int) Math.min(numAgents, stepBudget-steps) : numAgents;
+
+            // Selects the actions with pi*(Q), or random ones in unknown states.
+            for (int agent=0; agent<numActive; agent++){
+                int selAction = qTable.getActionMaxValue(states[agent]);
+                if (selAction < 0){
+                    int mask = indexed.actionMask(indexed.stateAt(states[agent]));
+                    selAction = Utils.nthSetBit(mask, random.nextInt(Integer.bitCount(mask)));
+                }
+                actions[agent] = selAction;
+            }
+
+            // Moves all the agents (the finished ones start again in random states).
+            System.arraycopy(states, 0, previous, 0, numActive);
+            environment.step(numActive, states, actions, nextStates, rewards, done, -1, random);
+
+            // Updates Q(s,a) of each agent. The limits are checked after the whole batch.
+            for (int agent=0; agent<numActive; agent++){
+                int current = previous[agent], selAction = actions[agent];
+                double Q, oldQ = qTable.getQValue(current, selAction);
+                if (!done[agent])
+                    Q = (1-alpha) * oldQ + alpha*(rewards[agent] + problem.gamma * qTable.getMaxQValue(nextStates[agent]));
+                else
+                    Q = oldQ + alpha*problem.getReward(indexed.stateAt(nextStates[agent]));
+                qTable.setQValue(current, selAction, Q);
+                maxTDErrors[agent] = Math.max(maxTDErrors[agent], Math.abs(Q - oldQ) / alpha);
+                episodeSteps[agent]++;
+
+                // Finished and cut episodes.
+                boolean cut = !done[agent] && episodeSteps[agent]>=maxEpisodeSteps;
+                if (done[agent] || cut){
+                    if (cut)
+                        states[agent] = environment.randomStateIndex(random);
+                    episodes++;
+                    episodeFinished(episodeSteps[agent], maxTDErrors[agent]);
+                    episodeSteps[agent] = 0;
+                    maxTDErrors[agent] = 0;
+                }
+                stepDone();
+            }
+        }
+        solution = qTable.generatePolicy();
+    }
+
+    /** 
+     * Moves Q(state,action) towards the target of a transition, with the step alpha 
+     * scaled by weight (replay mode, see the description of the class). Returns the 
+     * absolute TD error. 
+     */
+    private double update(int state, int action, double reward, int nextState, boolean terminal, double weight){
+        double target = target(reward, nextState, terminal);
+        double oldQ = qTable.getQValue(state, action);
+        qTable.setQValue(state, action, oldQ + alpha*weight*(target - oldQ));
+        return Math.abs(target - oldQ);
+    }
+
+    /** 
+     * Target of a transition in replay and traces modes: the reward (which is R(s') for
+     * final transitions), plus gamma*max[a']Q(s',a') if s' is not final.
+     */
+    private double target(double reward, int nextState, boolean terminal){
+        return terminal ? reward : reward + problem.gamma * qTable.getMaxQValue(nextState);
+    }
+
+    /** Backs up a pair from the learnt model (planning). Returns the absolute TD error. */
+    private double backup(int pair){
+        double target = model.target(pair, qTable, problem.gamma);
+        int state = model.stateOf(pair), action = model.actionOf(pair);
+        double oldQ = qTable.getQValue(state, action);
+        qTable.setQValue(state, action, oldQ + alpha*(target - oldQ));
+        return Math.abs(target - oldQ);
+    }
+
+    /** 
+     * Carries out the simulated backups after a step from the state. With prioritized
+     * sweeping, the pairs leading to the state, whose values have changed, are queued first.
+     */
+    private void plan(int state, RandomSource random){
+        if (queue==null){
+            for (int step=0; step<planningSteps; step++)
+                backup(model.visitedPair(random.nextInt(model.numVisited())));
+            return;
+        }
+        queuePredecessors(state);
+        for (int step=0; step<planningSteps && !queue.isEmpty(); step++){
+            int pair = queue.poll();
+            backup(pair);
+            queuePredecessors(model.stateOf(pair));
+        }
+    }
+
+    /** Queues the pairs leading to a state whose target differs from their value more than the threshold. */
+    private void queuePredecessors(int state){
+        for (int outcome=model.firstPredecessor(state); outcome>=0; outcome=model.nextPredecessor(outcome)){
+            int pair = model.pairOf(outcome);
+            double priority = Math.abs(model.target(pair, qTable, problem.gamma) 
+                    - qTable.getQValue(model.stateOf(pair), model.actionOf(pair)));
+            if (priority>PRIORITY_THRESHOLD && (!queue.contains(pair) || queue.priority(pair)<priority))
+                queue.set(pair, priority);
+        }
+    }
+
     /** Sets the parameters of the algorithm. */
     @Override
     public void setParams(String[] args) {
@@ -113,6 +590,78 @@ public class QLearning extends LearningAlgorithm{
                     System.out.println("The value for the number of iterations is not correct. Using 1000.");
                 }		
             }
+            // Maximum number of steps of an episode.
+            if (args.length>2){
+                try{
+                    setMaxEpisodeSteps(Integer.parseInt(args[2]));
+                } 
+                catch(Exception e){
+                    System.out.println("The maximum number of steps of an episode is not correct. Episodes are not cut.");
+                }		
+            }
+            // Time budget (milliseconds).
+            if (args.length>3){
+                try{
+                    setTimeBudget(Long.parseLong(args[3]));
+                } 
+                catch(Exception e){
+                    System.out.println("The time budget is not correct. Using no budget.");
+                }		
+            }
+            // Budget of steps.
+            if (args.length>4){
+                try{
+                    stepBudget = Long.parseLong(args[4]);
+                } 
+                catch(Exception e){
+                    System.out.println("The budget of steps is not correct. Using no budget.");
+                }		
+            }
+            // Capacity of the replay buffer and size of the batches.
+            if (args.length>5){
+                try{
+                    setReplay(Integer.parseInt(args[5]), args.length>6 ? Integer.parseInt(args[6]) : batchSize);
+                } 
+                catch(Exception e){
+                    System.out.println("The parameters of the replay are not correct. Using no replay.");
+                }		
+            }
+            // Exponents of the prioritized replay.
+            if (args.length>7){
+                try{
+                    setPrioritizedReplay(Double.parseDouble(args[7]), args.length>8 ? Double.parseDouble(args[8]) : 0.0);
+                } 
+                catch(Exception e){
+                    System.out.println("The exponents of the prioritized replay are not correct. Sampling uniformly.");
+                }		
+            }
+            // Planning steps, and whether they are prioritized ("sweeping").
+            if (args.length>9){
+                try{
+                    setPlanning(Integer.parseInt(args[9]), args.length>10 && args[10].equalsIgnoreCase("sweeping"));
+                } 
+                catch(Exception e){
+                    System.out.println("The number of planning steps is not correct. Learning without planning.");
+                }		
+            }
+            // Lambda of the traces, and threshold below which they are removed.
+            if (args.length>11){
+                try{
+                    setTraces(Double.parseDouble(args[11]), args.length>12 ? Double.parseDouble(args[12]) : traceThreshold);
+                } 
+                catch(Exception e){
+                    System.out.println("The parameters of the traces are not correct. Learning without traces.");
+                }		
+            }
+            // Number of agents moved at once.
+            if (args.length>13){
+                try{
+                    setBatchAgents(Integer.parseInt(args[13]));
+                } 
+                catch(Exception e){
+                    System.out.println("The number of agents is not correct. Moving one agent.");
+                }		
+            }
         }
     }
 
@@ -120,6 +669,7 @@ public class QLearning extends LearningAlgorithm{
     public void printResults(){
         // Prints the utilities.
         System.out.println("QLearning \n");
+        System.out.println(episodes+" episodes, "+steps+" steps");
         // Prints the policy
         System.out.println("\nOptimal policy");
         System.out.println(solution);
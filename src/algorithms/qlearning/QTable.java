@@ -6,24 +6,50 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import learning.Action;
+import learning.IndexedProblem;
 import learning.LearningProblem;
 import learning.MDPLearningProblem;
 import learning.Policy;
 import learning.State;
+import utils.RandomSource;
 import utils.Utils;
 
 /** 
- * This class allows storing and managing the values for Q(s,a)
+ * This class allows storing and managing the values for Q(s,a).
+ * 
+ * If the problem implements IndexedProblem, the values are stored in a flat array
+ * indexed by state and action ordinal, Q(s,a) = values[s*numActions+a], and the 
+ * methods receiving states and actions only translate them into indices. Algorithms
+ * can also use directly the methods receiving indices, which do not allocate objects.
+ * Otherwise, the values are stored in HashMaps.
  */
 public class QTable {
 	
     /** Reference to the problem. */
     LearningProblem problem;
 
+    /** Random source used to break ties. If null, the source of the current thread is used. */
+    private RandomSource randomSource;
+
     /** Contains the main table. For each state, there is a map
      *  with the qvalues corresponding to each action. */
     private HashMap<State, HashMap<Action, Double>> table;
 
+    /** Indexing of the problem. Null if the table uses HashMaps. */
+    private IndexedProblem indexed;
+
+    /** Number of actions of the problem (dense table). */
+    private int numActions;
+
+    /** Q values of the dense table. */
+    private double[] values;
+
+    /** For each state in the dense table, one bit for each action with entry. */
+    private int[] actionMasks;
+
+    /** Whether each state of the dense table has entries (a state may have no actions). */
+    private boolean[] known;
+
     /** Constructor. Constructs an empty table.*/
     public QTable(){
         table = new HashMap<State, HashMap<Action, Double>>();
@@ -33,13 +59,27 @@ public class QTable {
     public QTable(LearningProblem problem){
         this.problem = problem;
 
+        // Indexed problems use the dense table.
+        if (problem instanceof IndexedProblem){
+            indexed = (IndexedProblem) problem;
+            numActions = indexed.numActions();
+            values = new double[indexed.numStates()*numActions];
+            actionMasks = new int[indexed.numStates()];
+            known = new boolean[indexed.numStates()];
+            // As in the HashMap, states of MDPs are initialized a priori.
+            if (problem instanceof MDPLearningProblem)
+                for (State state: ((MDPLearningProblem)problem).getSolverStates())
+                    createEntries(indexed.stateIndex(state), state);
+            return;
+        }
+
         // Creates the qtable.		
         table = new HashMap<State, HashMap<Action, Double>>();
 
         // For MDPLearningProblem problems, the states are known a priori, and can be initialized.
         if (problem instanceof MDPLearningProblem)
             // Adds an empty entry for each state.
-            for (State state: ((MDPLearningProblem)problem).getAllStates()){
+            for (State state: ((MDPLearningProblem)problem).getSolverStates()){
                 table.put(state,new HashMap<Action, Double>());
                 // Creates the entry for each action and initializes the q(s,a) to 0
                 ArrayList<Action> possibleActions = problem.getPossibleActions(state);
@@ -48,18 +88,46 @@ public class QTable {
             }
     }
 
+    /** Sets the random source used to break ties. */
+    public void setRandomSource(RandomSource randomSource){
+        this.randomSource = randomSource;
+    }
+
+    /** Returns the random source used to break ties. */
+    private RandomSource random(){
+        return randomSource!=null ? randomSource : Utils.random();
+    }
+
+    /** Whether the values are stored in the dense table (the problem is indexed). */
+    public boolean isDense(){
+        return indexed!=null;
+    }
+
     /** Test whether the table contains the entries corresponding to a given state. */
     public boolean contains(State state){
+            if (indexed!=null)
+                return known[indexed.stateIndex(state)];
             return table.containsKey(state);
     }
 
     /** Test whether the table contains an entry for a given pair state-action. */
     public boolean contains(State state, Action action){
+            if (indexed!=null)
+                return (actionMasks[indexed.stateIndex(state)] & (1 << indexed.actionIndex(action)))!=0;
             return table.containsKey(state) && table.get(state).containsKey(action);
     }
 
     /** Sets a value in an entry of the table: Q(state,action)=value. */
     public void setQValue(State state, Action action, double value){
+        if (indexed!=null){
+            int stateIdx = indexed.stateIndex(state);
+            int actionIdx = indexed.actionIndex(action);
+            if (!known[stateIdx])
+                createEntries(stateIdx, state);
+            actionMasks[stateIdx] |= 1 << actionIdx;
+            values[stateIdx*numActions+actionIdx] = value;
+            return;
+        }
         // If the table contains the state, assigns the value.
         if (table.containsKey(state))
             table.get(state).put(action, value);
@@ -77,6 +145,9 @@ public class QTable {
     /** Gets the value in an entry of the table, Q(state,action).
      *  If the entry does not exist, return 0.*/
     public double getQValue(State state, Action action){
+        // Entries that do not exist in the dense table are 0.
+        if (indexed!=null)
+            return values[indexed.stateIndex(state)*numActions+indexed.actionIndex(action)];
         if (this.contains(state,action))
             return table.get(state).get(action);
         else 
@@ -85,6 +156,10 @@ public class QTable {
 
     /** Returns the action that maximizes Q(state,action) given the state.*/
     public Action getActionMaxValue(State state){
+        if (indexed!=null){
+            int actionIdx = getActionMaxValue(indexed.stateIndex(state));
+            return actionIdx<0 ? null : indexed.actionAt(actionIdx);
+        }
         // If there is no entry for the state, returns null.
         if (!table.containsKey(state) || table.get(state).isEmpty())
             return null;
@@ -98,7 +173,7 @@ public class QTable {
                 bestValue = actionValue.getValue();
             }
             // If it is equal to the best, updates randomly.
-            else if (actionValue.getValue()==bestValue && Utils.random.nextFloat()<0.5) {
+            else if (actionValue.getValue()==bestValue && random().nextFloat()<0.5) {
                 bestAction = actionValue.getKey();
                 bestValue = actionValue.getValue();				
             }
@@ -109,6 +184,8 @@ public class QTable {
 
     /** Returns the maximum value q(state,action) for a state. */
     public double getMaxQValue(State state){
+        if (indexed!=null)
+            return getMaxQValue(indexed.stateIndex(state));
         Action bestAction = getActionMaxValue(state);
         if ((bestAction==null) || !(contains(state, bestAction)))
             return 0;
@@ -118,7 +195,13 @@ public class QTable {
 
     /** Generates policy from the values in the Qtable */
     public Policy generatePolicy(){
-        Policy policy = new Policy();
+        Policy policy = new Policy(problem);
+        if (indexed!=null){
+            for (int stateIdx=0; stateIdx<actionMasks.length; stateIdx++)
+                if (known[stateIdx])
+                    policy.setAction(stateIdx, getActionMaxValue(stateIdx));
+            return policy;
+        }
         // For each state selects the action with the maximum Q(s,a) value.
         for (State state: table.keySet()){
             Action action = getActionMaxValue(state);
@@ -130,6 +213,18 @@ public class QTable {
     /** Allows printing the table. */
     public String toString(){
         String output = "";
+        if (indexed!=null){
+            for (int stateIdx=0; stateIdx<actionMasks.length; stateIdx++){
+                if (!known[stateIdx])
+                    continue;
+                output += indexed.stateAt(stateIdx).toString()+" --> ";
+                for (int actionIdx=0; actionIdx<numActions; actionIdx++)
+                    if ((actionMasks[stateIdx] & (1 << actionIdx))!=0)
+                        output+= "\t "+indexed.actionAt(actionIdx).getId()+" ("+values[stateIdx*numActions+actionIdx]+")";
+                output += "\n";
+            }
+            return output;
+        }
         // Gets the states in the table.
         Set<State> states = table.keySet();
         // Prints each one. 
@@ -143,6 +238,65 @@ public class QTable {
         return output;
     }
 
+    // Methods of the dense table, which receive the index of the state and the ordinal of the action.
+
+    /** Creates the entries of a state of the dense table, initialized to 0. */
+    private void createEntries(int stateIdx, State state){
+        known[stateIdx] = true;
+        actionMasks[stateIdx] = indexed.actionMask(state);
+    }
+
+    /** Gets the value Q(state,action) of the dense table. Entries that do not exist are 0. */
+    public double getQValue(int stateIdx, int actionIdx){
+        return values[stateIdx*numActions+actionIdx];
+    }
+
+    /** Sets a value in the dense table: Q(state,action)=value. */
+    public void setQValue(int stateIdx, int actionIdx, double value){
+        if (!known[stateIdx])
+            createEntries(stateIdx, indexed.stateAt(stateIdx));
+        actionMasks[stateIdx] |= 1 << actionIdx;
+        values[stateIdx*numActions+actionIdx] = value;
+    }
+
+    /** 
+     * Returns the ordinal of the action that maximizes Q(state,action) in the dense table,
+     * or -1 if there are no entries for the state. Ties are broken randomly.
+     */
+    public int getActionMaxValue(int stateIdx){
+        int mask = actionMasks[stateIdx];
+        int bestAction = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        int base = stateIdx*numActions;
+        while (mask!=0){
+            int actionIdx = Integer.numberOfTrailingZeros(mask);
+            mask &= mask-1;
+            double value = values[base+actionIdx];
+            // If the action is the best, updates. If it is equal to the best, updates randomly.
+            if (value>bestValue || (value==bestValue && random().nextFloat()<0.5)){
+                bestAction = actionIdx;
+                bestValue = value;
+            }
+        }
+        return bestAction;
+    }
+
+    /** Returns the maximum value q(state,action) for a state of the dense table, or 0 if it has no entries. */
+    public double getMaxQValue(int stateIdx){
+        int mask = actionMasks[stateIdx];
+        if (mask==0)
+            return 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        int base = stateIdx*numActions;
+        while (mask!=0){
+            int actionIdx = Integer.numberOfTrailingZeros(mask);
+            mask &= mask-1;
+            if (values[base+actionIdx]>bestValue)
+                bestValue = values[base+actionIdx];
+        }
+        return bestValue;
+    }
+
     /** Main function. Allows testing the class. */	
     public static void main(String[] args) {
         QTable qtable = new QTable();
@@ -0,0 +1,107 @@
+package algorithms.qlearning;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import utils.RandomSource;
+
+/** 
+ * Fixed-capacity ring buffer of transitions (state, action, reward, next state, terminal),
+ * identified by the indices of the states and the ordinals of the actions of an indexed
+ * problem. Each field is stored in its own direct buffer (struct of arrays, outside the
+ * heap), so storing a transition does not allocate objects and the buffer does not add
+ * to the work of the garbage collector. When the buffer is full, each new transition
+ * replaces the oldest one.
+ * 
+ * Transitions are read by position, from 0 to size()-1. The buffer is not synchronized.
+ */
+public class ReplayBuffer {
+
+    /** Maximum number of transitions. */
+    private final int capacity;
+
+    /** Fields of the transitions. */
+    private final IntBuffer states, actions, nextStates;
+    private final DoubleBuffer rewards;
+    private final ByteBuffer terminals;
+
+    /** Number of transitions stored, and position where the next one is stored. */
+    private int size, next;
+
+    /** Creates an empty buffer. */
+    public ReplayBuffer(int capacity){
+        if (capacity<=0)
+            throw new IllegalArgumentException("The capacity of the buffer must be positive.");
+        this.capacity = capacity;
+        states = allocate(capacity, 4).asIntBuffer();
+        actions = allocate(capacity, 4).asIntBuffer();
+        nextStates = allocate(capacity, 4).asIntBuffer();
+        rewards = allocate(capacity, 8).asDoubleBuffer();
+        terminals = allocate(capacity, 1);
+    }
+
+    /** Allocates a direct buffer of elements of a size, in the order of the platform. */
+    private static ByteBuffer allocate(int capacity, int bytes){
+        return ByteBuffer.allocateDirect(capacity*bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /** Stores a transition, replacing the oldest one if the buffer is full. Returns its position. */
+    public int add(int state, int action, double reward, int nextState, boolean terminal){
+        int position = next;
+        states.put(next, state);
+        actions.put(next, action);
+        rewards.put(next, reward);
+        nextStates.put(next, nextState);
+        terminals.put(next, terminal ? (byte) 1 : (byte) 0);
+        next = next+1<capacity ? next+1 : 0;
+        if (size<capacity)
+            size++;
+        return position;
+    }
+
+    /** 
+     * Returns the position of a transition chosen uniformly. The buffer must not be empty.
+     * Subclasses can sample with other distributions.
+     */
+    public int sample(RandomSource random){
+        return random.nextInt(size);
+    }
+
+    /** Index of the state of the transition at a position. */
+    public int state(int position){ return states.get(position); }
+
+    /** Ordinal of the action of the transition at a position. */
+    public int action(int position){ return actions.get(position); }
+
+    /** Reward of the transition at a position. */
+    public double reward(int position){ return rewards.get(position); }
+
+    /** Index of the next state of the transition at a position. */
+    public int nextState(int position){ return nextStates.get(position); }
+
+    /** Whether the next state of the transition at a position is final. */
+    public boolean isTerminal(int position){ return terminals.get(position)!=0; }
+
+    /** 
+     * Weight of the update of the transition at a position, which corrects the bias of
+     * the sampling distribution (always 1 for uniform sampling). 
+     */
+    public double weight(int position){ return 1.0; }
+
+    /** Reports the absolute TD error of the transition at a position, once learnt (not used by uniform sampling). */
+    public void updateError(int position, double tdError){}
+
+    /** Number of transitions stored. */
+    public int size(){ return size; }
+
+    /** Maximum number of transitions. */
+    public int capacity(){ return capacity; }
+
+    /** Removes all the transitions (the memory is kept). */
+    public void clear(){
+        size = 0;
+        next = 0;
+    }
+}
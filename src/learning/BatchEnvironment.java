@@ -0,0 +1,37 @@
+package learning;
+
+import utils.RandomSource;
+
+/**
+ *  This interface can be implemented by model free problems that can simulate many
+ *  independent agents at once, working with arrays of primitives instead of State and
+ *  Action objects. States are the indices and actions the ordinals of IndexedProblem,
+ *  so problems implementing it must also be indexed.
+ *
+ *  Each call to step moves every agent once, which is equivalent to (but much cheaper
+ *  than) applying the action of each agent with applyAction and reading the rewards of
+ *  the states reached. Agents reaching a final state are reset (auto-reset), so the
+ *  arrays can be stepped again directly.
+ *
+ *  The batch is not stored in the problem: several threads can step their own arrays
+ *  at the same time, each one with its own random source.
+ */
+public interface BatchEnvironment {
+
+	/**
+	 * Applies actions[i] to the agent i, in the state states[i], for each i from 0 to
+	 * numAgents-1, and writes
+	 *
+	 *     nextStates[i]    the state reached,
+	 *     rewards[i]       R(s') + R(s,a,s'),
+	 *     done[i]          whether the state reached is final.
+	 *
+	 * states[i] is then set to the state reached or, if it is final, to resetState (or
+	 * to a random initial state, see randomStateIndex, if resetState is negative).
+	 */
+	public void step(int numAgents, int[] states, int[] actions, int[] nextStates, double[] rewards, boolean[] done,
+			int resetState, RandomSource random);
+
+	/** Returns the index of a random initial state (the same distribution as getRandomState). */
+	public int randomStateIndex(RandomSource random);
+}
@@ -0,0 +1,453 @@
+package learning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Compiled version of the transition model of an MDPLearningProblem. The model is
+ * extracted only once, and stored in compressed sparse row (CSR) format using
+ * arrays of primitive types:
+ *
+ *     stateRows[s] .. stateRows[s+1]-1    rows (pairs state-action) of the state s.
+ *     rowStart[r]  .. rowStart[r+1]-1     entries (successors) of the row r.
+ *     successors[e], probs[e]             reachable state and probability of each entry.
+ *     rowReward[r]                        expected transition reward of the row,
+ *                                         SUM[s'] T(s,a,s')R(s,a,s').
+ *
+ * Rows whose transition model is uniform over a shared set (see StateActionTransModel)
+ * have no entries. Instead, rowSet[r] is the set they reach and rowExcluded[r] the state
+ * of the set that can not be reached (-1 if none). Each set is stored only once:
+ *
+ *     setStart[g] .. setStart[g+1]-1      positions in setMembers of the states of the set g.
+ *
+ * Algorithms keep the sum of the utilities of each set (see updateSetSums), so that the
+ * backup of a uniform row costs O(1) instead of O(size of the set).
+ *
+ * States are identified by their index (0..numStates-1). If the problem implements
+ * IndexedProblem, the indices are the ones provided by the problem. Otherwise, the
+ * states are numbered following the order of getSolverStates(). If the problem is
+ * restricted to the reachable states, only they are compiled, and the indices of an
+ * indexed problem are translated to consecutive ones. Rows of each state keep
+ * the order of getPossibleActions(), so ties are broken as in the original algorithms.
+ *
+ * Algorithms can sweep over these arrays without calling the problem again, avoiding
+ * the creation of transition models and the hashing of states in each backup.
+ */
+public class CompiledMDP {
+
+	// The arrays are public for simplicity and efficiency. They must not be modified.
+
+	/* Number of states. */
+	public final int numStates;
+
+	/* State corresponding to each index. */
+	public final State[] states;
+
+	/* Whether each state is final. */
+	public final boolean[] isFinal;
+
+	/* Reward of each state, R(s). */
+	public final double[] reward;
+
+	/* First row of each state. The last element is the number of rows. */
+	public final int[] stateRows;
+
+	/* Action corresponding to each row. */
+	public final Action[] rowAction;
+
+	/* First entry of each row. The last element is the number of entries. */
+	public final int[] rowStart;
+
+	/* Expected transition reward of each row. */
+	public final double[] rowReward;
+
+	/* Reachable state of each entry. */
+	public final int[] successors;
+
+	/* Probability of each entry. */
+	public final double[] probs;
+
+	/* Set reached uniformly by each row (-1 if the row is not uniform). */
+	public final int[] rowSet;
+
+	/* State of the set that a uniform row can not reach (-1 if none). */
+	public final int[] rowExcluded;
+
+	/* First position in setMembers of each set. The last element is the number of members. */
+	public final int[] setStart;
+
+	/* States of each set. */
+	public final int[] setMembers;
+
+	/* First position in stateSets of each state. The last element is the size of stateSets. */
+	public final int[] stateSetStart;
+
+	/* Sets each state belongs to. */
+	public final int[] stateSets;
+
+	// Reverse index. Only built if required (see buildPredecessors).
+
+	/* First position in predecessors of each state. The last element is the size of predecessors. */
+	public int[] predStart;
+
+	/* States that can reach each state through a regular row (without repetitions). */
+	public int[] predecessors;
+
+	/* First position in setUsers of each set. The last element is the size of setUsers. */
+	public int[] setUserStart;
+
+	/* States with some row uniform over each set (without repetitions). */
+	public int[] setUsers;
+
+	/* Index of each state, used when the problem is not indexed. */
+	private HashMap<State, Integer> indexOfState;
+
+	/* Problem compiled, used when it is indexed. */
+	private IndexedProblem indexedProblem;
+
+	/* Index in the model of each index of the problem (indexed problems restricted to the reachable states). */
+	private int[] localIndex;
+
+	/** Compiles the transition model of the problem. */
+	public CompiledMDP(MDPLearningProblem problem){
+		// Enumerates the states.
+		if (problem instanceof IndexedProblem && !problem.isRestrictedToReachable()){
+			indexedProblem = (IndexedProblem) problem;
+			numStates = indexedProblem.numStates();
+			states = new State[numStates];
+			for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+				states[stateIdx] = indexedProblem.stateAt(stateIdx);
+		}
+		else if (problem instanceof IndexedProblem){
+			// The reachable states are numbered in the order of the problem.
+			indexedProblem = (IndexedProblem) problem;
+			localIndex = new int[indexedProblem.numStates()];
+			Arrays.fill(localIndex, -1);
+			for (State state: problem.getSolverStates())
+				localIndex[indexedProblem.stateIndex(state)] = 0;
+			int numLocal = 0;
+			for (int problemIdx=0;problemIdx<localIndex.length;problemIdx++)
+				if (localIndex[problemIdx]==0)
+					localIndex[problemIdx] = numLocal++;
+			numStates = numLocal;
+			states = new State[numStates];
+			for (int problemIdx=0;problemIdx<localIndex.length;problemIdx++)
+				if (localIndex[problemIdx]>=0)
+					states[localIndex[problemIdx]] = indexedProblem.stateAt(problemIdx);
+		}
+		else{
+			Collection<State> allStates = problem.getSolverStates();
+			numStates = allStates.size();
+			states = allStates.toArray(new State[numStates]);
+			indexOfState = new HashMap<State, Integer>();
+			for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+				indexOfState.put(states[stateIdx], stateIdx);
+		}
+
+		isFinal = new boolean[numStates];
+		reward = new double[numStates];
+		stateRows = new int[numStates+1];
+
+		// Rows and entries are not known in advance, so the arrays grow as needed.
+		ArrayList<Action> actions = new ArrayList<Action>();
+		int[] rowStartAux = new int[numStates+1];
+		double[] rowRewardAux = new double[numStates+1];
+		int[] successorsAux = new int[4*numStates+1];
+		double[] probsAux = new double[4*numStates+1];
+		int[] rowSetAux = new int[numStates+1];
+		int[] rowExcludedAux = new int[numStates+1];
+		int numRows = 0, numEntries = 0;
+
+		// Shared sets, identified by the array used in the transition models.
+		IdentityHashMap<State[], Integer> setIds = new IdentityHashMap<State[], Integer>();
+		ArrayList<int[]> sets = new ArrayList<int[]>();
+
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++){
+			State state = states[stateIdx];
+			isFinal[stateIdx] = problem.isFinal(state);
+			reward[stateIdx] = problem.getReward(state);
+			stateRows[stateIdx] = numRows;
+			for (Action action: problem.getPossibleActions(state)){
+				StateActionTransModel transModel = problem.getTransitionModel(state, action);
+				// Makes room for the row.
+				if (numRows+1>=rowStartAux.length){
+					rowStartAux = Arrays.copyOf(rowStartAux, 2*rowStartAux.length);
+					rowRewardAux = Arrays.copyOf(rowRewardAux, rowStartAux.length);
+					rowSetAux = Arrays.copyOf(rowSetAux, rowStartAux.length);
+					rowExcludedAux = Arrays.copyOf(rowExcludedAux, rowStartAux.length);
+				}
+				actions.add(action);
+				rowStartAux[numRows] = numEntries;
+
+				// Uniform models only store a reference to the set.
+				if (transModel.isUniform()){
+					State[] uniformSet = transModel.getUniformSet();
+					Integer setId = setIds.get(uniformSet);
+					if (setId==null){
+						int[] members = new int[uniformSet.length];
+						for (int setIdx=0;setIdx<uniformSet.length;setIdx++)
+							members[setIdx] = indexOf(uniformSet[setIdx]);
+						setId = sets.size();
+						setIds.put(uniformSet, setId);
+						sets.add(members);
+					}
+					int excluded = transModel.getExcluded();
+					int numReachable = uniformSet.length - (excluded>=0 ? 1 : 0);
+					// A set without other members reaches nothing: the row is left empty.
+					if (numReachable==0){
+						rowSetAux[numRows] = -1;
+						rowExcludedAux[numRows] = -1;
+						rowRewardAux[numRows++] = 0;
+						continue;
+					}
+					double prob = 1.0 / numReachable;
+					// The expected reward is calculated only once.
+					double expectedReward = 0;
+					for (int setIdx=0;setIdx<uniformSet.length;setIdx++)
+						if (setIdx!=excluded)
+							expectedReward += prob*problem.getTransitionReward(state, action, uniformSet[setIdx]);
+					rowSetAux[numRows] = setId;
+					rowExcludedAux[numRows] = excluded>=0 ? sets.get(setId)[excluded] : -1;
+					rowRewardAux[numRows++] = expectedReward;
+					continue;
+				}
+
+				State[] reachableStates = transModel.getReachableStates();
+				double[] transProbs = transModel.getProbs();
+				// Makes room for the entries.
+				if (numEntries+reachableStates.length>successorsAux.length){
+					int newLength = Math.max(2*successorsAux.length, numEntries+reachableStates.length);
+					successorsAux = Arrays.copyOf(successorsAux, newLength);
+					probsAux = Arrays.copyOf(probsAux, newLength);
+				}
+				// Stores the entries.
+				double expectedReward = 0;
+				for (int reachIdx=0;reachIdx<reachableStates.length;reachIdx++){
+					successorsAux[numEntries] = indexOf(reachableStates[reachIdx]);
+					probsAux[numEntries++] = transProbs[reachIdx];
+					expectedReward += transProbs[reachIdx]*problem.getTransitionReward(state, action, reachableStates[reachIdx]);
+				}
+				rowSetAux[numRows] = -1;
+				rowExcludedAux[numRows] = -1;
+				rowRewardAux[numRows++] = expectedReward;
+			}
+		}
+		stateRows[numStates] = numRows;
+		rowStartAux[numRows] = numEntries;
+
+		// Trims the arrays.
+		rowAction = actions.toArray(new Action[numRows]);
+		rowStart = Arrays.copyOf(rowStartAux, numRows+1);
+		rowReward = Arrays.copyOf(rowRewardAux, numRows);
+		successors = Arrays.copyOf(successorsAux, numEntries);
+		probs = Arrays.copyOf(probsAux, numEntries);
+		rowSet = Arrays.copyOf(rowSetAux, numRows);
+		rowExcluded = Arrays.copyOf(rowExcludedAux, numRows);
+
+		// Concatenates the sets.
+		setStart = new int[sets.size()+1];
+		for (int setId=0;setId<sets.size();setId++)
+			setStart[setId+1] = setStart[setId] + sets.get(setId).length;
+		setMembers = new int[setStart[sets.size()]];
+		for (int setId=0;setId<sets.size();setId++)
+			System.arraycopy(sets.get(setId), 0, setMembers, setStart[setId], sets.get(setId).length);
+
+		// Sets of each state.
+		stateSetStart = new int[numStates+1];
+		for (int member=0;member<setMembers.length;member++)
+			stateSetStart[setMembers[member]+1]++;
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+			stateSetStart[stateIdx+1] += stateSetStart[stateIdx];
+		stateSets = new int[setMembers.length];
+		int[] fill = Arrays.copyOf(stateSetStart, numStates);
+		for (int setId=0;setId<numSets();setId++)
+			for (int member=setStart[setId];member<setStart[setId+1];member++)
+				stateSets[fill[setMembers[member]]++] = setId;
+	}
+
+	/**
+	 * Builds the reverse index: for each state, the states whose backups depend on its
+	 * utility. They are the predecessors through regular rows plus the users of the sets
+	 * the state belongs to. Sets are not expanded, so the index has linear size.
+	 */
+	public synchronized void buildPredecessors(){
+		if (predStart!=null)
+			return;
+		int[] lastSeen = new int[Math.max(numStates, numSets())];
+
+		// Counts the predecessors of each state and the users of each set.
+		int[] predStartAux = new int[numStates+1];
+		int[] setUserStartAux = new int[numSets()+1];
+		Arrays.fill(lastSeen, -1);
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+			for (int row=stateRows[stateIdx];row<stateRows[stateIdx+1];row++)
+				for (int entry=rowStart[row];entry<rowStart[row+1];entry++)
+					if (lastSeen[successors[entry]]!=stateIdx){
+						lastSeen[successors[entry]] = stateIdx;
+						predStartAux[successors[entry]+1]++;
+					}
+		Arrays.fill(lastSeen, -1);
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+			for (int row=stateRows[stateIdx];row<stateRows[stateIdx+1];row++)
+				if (rowSet[row]>=0 && lastSeen[rowSet[row]]!=stateIdx){
+					lastSeen[rowSet[row]] = stateIdx;
+					setUserStartAux[rowSet[row]+1]++;
+				}
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+			predStartAux[stateIdx+1] += predStartAux[stateIdx];
+		for (int setId=0;setId<numSets();setId++)
+			setUserStartAux[setId+1] += setUserStartAux[setId];
+
+		// Fills them.
+		int[] predecessorsAux = new int[predStartAux[numStates]];
+		int[] setUsersAux = new int[setUserStartAux[numSets()]];
+		int[] fillPred = Arrays.copyOf(predStartAux, numStates);
+		int[] fillUsers = Arrays.copyOf(setUserStartAux, numSets());
+		Arrays.fill(lastSeen, -1);
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+			for (int row=stateRows[stateIdx];row<stateRows[stateIdx+1];row++)
+				for (int entry=rowStart[row];entry<rowStart[row+1];entry++)
+					if (lastSeen[successors[entry]]!=stateIdx){
+						lastSeen[successors[entry]] = stateIdx;
+						predecessorsAux[fillPred[successors[entry]]++] = stateIdx;
+					}
+		Arrays.fill(lastSeen, -1);
+		for (int stateIdx=0;stateIdx<numStates;stateIdx++)
+			for (int row=stateRows[stateIdx];row<stateRows[stateIdx+1];row++)
+				if (rowSet[row]>=0 && lastSeen[rowSet[row]]!=stateIdx){
+					lastSeen[rowSet[row]] = stateIdx;
+					setUsersAux[fillUsers[rowSet[row]]++] = stateIdx;
+				}
+		predecessors = predecessorsAux;
+		setUserStart = setUserStartAux;
+		setUsers = setUsersAux;
+		predStart = predStartAux;
+	}
+
+	/** Returns the index of a state, or -1 if it is not part of the model. */
+	public int indexOf(State state){
+		if (indexedProblem!=null){
+			int stateIdx = indexedProblem.stateIndex(state);
+			if (localIndex==null || stateIdx<0)
+				return stateIdx;
+			return localIndex[stateIdx];
+		}
+		Integer stateIdx = indexOfState.get(state);
+		return stateIdx==null ? -1 : stateIdx;
+	}
+
+	/** Returns the number of rows (pairs state-action). */
+	public int numRows(){ return rowAction.length; }
+
+	/** Returns the number of shared sets. */
+	public int numSets(){ return setStart.length-1; }
+
+	/** Stores in setSums the sum of the utilities of the states of each set. */
+	public void updateSetSums(double[] utilities, double[] setSums){
+		for (int setId=0;setId<numSets();setId++){
+			double sum = 0;
+			for (int member=setStart[setId];member<setStart[setId+1];member++)
+				sum += utilities[setMembers[member]];
+			setSums[setId] = sum;
+		}
+	}
+
+	/**
+	 * Updates the sums of the sets a state belongs to when its utility changes. Used by
+	 * the algorithms that update the utilities in place.
+	 */
+	public void updateSetSums(int state, double change, double[] setSums){
+		for (int pos=stateSetStart[state];pos<stateSetStart[state+1];pos++)
+			setSums[stateSets[pos]] += change;
+	}
+
+	/**
+	 * Calculates the expected utility of a row given the utilities of all states and
+	 * the sums of the utilities of each set (see updateSetSums):
+	 * U<s> = R<s> + gamma * SUM[s'] T<s,a,s'> * (R<s,a,s'> + U<s'>)
+	 * If row is -1 (no action can be applied), returns R<s>.
+	 */
+	public double expectedUtility(int state, int row, double[] utilities, double[] setSums, double gamma){
+		if (row<0)
+			return reward[state];
+		double expectedNext = rowReward[row];
+		int setId = rowSet[row];
+		if (setId>=0){
+			// Uniform over the set, except the excluded state.
+			int excluded = rowExcluded[row];
+			int numReachable = setStart[setId+1] - setStart[setId];
+			double sum = setSums[setId];
+			if (excluded>=0){
+				numReachable--;
+				sum -= utilities[excluded];
+			}
+			expectedNext += sum/numReachable;
+		}
+		else
+			for (int entry=rowStart[row];entry<rowStart[row+1];entry++)
+				expectedNext += probs[entry]*utilities[successors[entry]];
+		return reward[state] + gamma*expectedNext;
+	}
+
+	/**
+	 * Calculates SUM[s'] T<s,a,s'> * U<s'> for a row, without rewards. Used by the
+	 * algorithms that work with the linear system of a fixed policy.
+	 */
+	public double successorUtility(int row, double[] utilities, double[] setSums){
+		int setId = rowSet[row];
+		if (setId>=0){
+			int excluded = rowExcluded[row];
+			int numReachable = setStart[setId+1] - setStart[setId];
+			double sum = setSums[setId];
+			if (excluded>=0){
+				numReachable--;
+				sum -= utilities[excluded];
+			}
+			return sum/numReachable;
+		}
+		double sum = 0;
+		for (int entry=rowStart[row];entry<rowStart[row+1];entry++)
+			sum += probs[entry]*utilities[successors[entry]];
+		return sum;
+	}
+
+	/** Returns the probability that a row of the state leads back to the same state, T<s,a,s>. */
+	public double selfProbability(int state, int row){
+		int setId = rowSet[row];
+		if (setId>=0){
+			if (rowExcluded[row]==state)
+				return 0;
+			for (int pos=stateSetStart[state];pos<stateSetStart[state+1];pos++)
+				if (stateSets[pos]==setId){
+					int numReachable = setStart[setId+1] - setStart[setId];
+					return 1.0 / (rowExcluded[row]>=0 ? numReachable-1 : numReachable);
+				}
+			return 0;
+		}
+		double prob = 0;
+		for (int entry=rowStart[row];entry<rowStart[row+1];entry++)
+			if (successors[entry]==state)
+				prob += probs[entry];
+		return prob;
+	}
+
+	/**
+	 * Returns the row of the state with the maximum expected utility, or -1 if
+	 * no action can be applied. Ties are resolved in favor of the first row.
+	 */
+	public int bestRow(int state, double[] utilities, double[] setSums, double gamma){
+		double max = Double.NEGATIVE_INFINITY;
+		int bestRow = -1;
+		for (int row=stateRows[state];row<stateRows[state+1];row++){
+			double utility = expectedUtility(state, row, utilities, setSums, gamma);
+			if (utility>max){
+				max = utility;
+				bestRow = row;
+			}
+		}
+		return bestRow;
+	}
+}
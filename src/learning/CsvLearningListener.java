@@ -0,0 +1,167 @@
+package learning;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Listener that writes the progress of the algorithms as CSV, one row per report:
+ *
+ *     event,algorithm,number,residual,backups,backups_per_second,states_changed,
+ *     episodes,steps_per_episode,episodes_per_second,max_td_error
+ *
+ * where event is "sweep", "episodes" or "finished", and the columns that do not apply to
+ * the event are empty. The rows are queued and written by a background thread, so the
+ * algorithm never waits for the disk. If the queue is full the row is dropped (see
+ * getDropped). close() writes the pending rows and closes the output.
+ */
+public class CsvLearningListener implements LearningListener, Closeable {
+
+	/* Maximum number of rows waiting to be written. */
+	private static final int CAPACITY = 8192;
+
+	/* Row that stops the writer thread. */
+	private static final Row END = new Row();
+
+	/* Rows waiting to be written. */
+	private final BlockingQueue<Row> queue = new ArrayBlockingQueue<Row>(CAPACITY);
+
+	/* Output of the rows, only used by the writer thread. */
+	private final Writer output;
+
+	/* Thread writing the rows. */
+	private final Thread writer;
+
+	/* Number of rows dropped because the queue was full. */
+	private volatile long dropped;
+
+	/** Values of a report. */
+	private static class Row {
+		String event, algorithm;
+		int number, episodes, statesChanged;
+		long backups, steps, nanos;
+		double residual, maxTDError;
+	}
+
+	/** Writes the progress to a file (which is overwritten). */
+	public CsvLearningListener(String fileName) throws IOException {
+		this(new FileWriter(fileName));
+	}
+
+	/** Writes the progress to the writer, which is closed by close(). */
+	public CsvLearningListener(Writer output){
+		this.output = output instanceof BufferedWriter ? output : new BufferedWriter(output);
+		writer = new Thread(new Runnable(){
+			@Override
+			public void run(){ writeRows(); }
+		}, "CsvLearningListener");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void sweepFinished(LearningAlgorithm algorithm, int sweep, double residual, long backups, int statesChanged, long nanos){
+		Row row = new Row();
+		row.event = "sweep";
+		row.algorithm = algorithm.getClass().getSimpleName();
+		row.number = sweep;
+		row.residual = residual;
+		row.backups = backups;
+		row.statesChanged = statesChanged;
+		row.nanos = nanos;
+		offer(row);
+	}
+
+	@Override
+	public void episodesFinished(LearningAlgorithm algorithm, int episode, int episodes, long steps, double maxTDError, long nanos){
+		Row row = new Row();
+		row.event = "episodes";
+		row.algorithm = algorithm.getClass().getSimpleName();
+		row.number = episode;
+		row.episodes = episodes;
+		row.steps = steps;
+		row.maxTDError = maxTDError;
+		row.nanos = nanos;
+		offer(row);
+	}
+
+	@Override
+	public void learningFinished(LearningAlgorithm algorithm){
+		Row row = new Row();
+		row.event = "finished";
+		row.algorithm = algorithm.getClass().getSimpleName();
+		offer(row);
+	}
+
+	/** Number of rows dropped because the writer could not keep up. */
+	public long getDropped(){ return dropped; }
+
+	/** Writes the rows still queued and closes the output. */
+	@Override
+	public void close() throws IOException {
+		try {
+			queue.put(END);
+			writer.join();
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		output.close();
+	}
+
+	/* Queues a row, or drops it if the queue is full. */
+	private void offer(Row row){
+		if (!queue.offer(row))
+			dropped++;
+	}
+
+	/* Loop of the writer thread. The output is flushed whenever the queue is empty. */
+	private void writeRows(){
+		try {
+			output.write("event,algorithm,number,residual,backups,backups_per_second,states_changed,"
+					+ "episodes,steps_per_episode,episodes_per_second,max_td_error\n");
+			while (true){
+				Row row = queue.poll();
+				if (row==null){
+					output.flush();
+					row = queue.take();
+				}
+				if (row==END)
+					break;
+				output.write(format(row));
+			}
+			output.flush();
+		}
+		catch (IOException e){
+			System.out.println("The progress of the algorithm can not be written: "+e.getMessage());
+		}
+		catch (InterruptedException e){
+			// The thread finishes.
+		}
+	}
+
+	/* Line of the CSV corresponding to a row. */
+	private static String format(Row row){
+		StringBuilder line = new StringBuilder();
+		line.append(row.event).append(',').append(row.algorithm).append(',');
+		double seconds = row.nanos / 1e9;
+		if (row.event.equals("sweep")){
+			line.append(row.number).append(',').append(row.residual).append(',').append(row.backups).append(',');
+			line.append(seconds>0 ? Math.round(row.backups/seconds) : "").append(',');
+			line.append(row.statesChanged).append(",,,,");
+		}
+		else if (row.event.equals("episodes")){
+			line.append(row.number).append(",,,,,").append(row.episodes).append(',');
+			line.append((double) row.steps/row.episodes).append(',');
+			line.append(seconds>0 ? row.episodes/seconds : "").append(',');
+			line.append(row.maxTDError);
+		}
+		else
+			line.append(",,,,,,,,");
+		return line.append('\n').toString();
+	}
+}
@@ -0,0 +1,44 @@
+package learning;
+
+/**
+ *  This interface can be implemented by problems whose states and actions can be
+ *  enumerated densely. States are numbered from 0 to numStates()-1 and actions from
+ *  0 to numActions()-1 (their ordinals), so that algorithms can store utilities,
+ *  policies or Q values in flat arrays instead of HashMaps keyed by State objects.
+ *
+ *  The possible actions of each state are also available as a mask of ordinals (see
+ *  actionMask), so that algorithms can enumerate or sample them without building
+ *  lists. Masks are ints, so problems can have up to 32 actions.
+ *
+ *  The indexing is optional: algorithms must keep working with problems that do
+ *  not implement it.
+ */
+public interface IndexedProblem {
+
+	/** Returns the number of states. Indices go from 0 to numStates()-1. */
+	public int numStates();
+
+	/** Returns the index of a state, or -1 if the state is not indexed. */
+	public int stateIndex(State state);
+
+	/** Returns the state corresponding to an index. */
+	public State stateAt(int index);
+
+	/** Returns the number of actions. Ordinals go from 0 to numActions()-1. */
+	public int numActions();
+
+	/** Returns the ordinal of an action. */
+	public int actionIndex(Action action);
+
+	/** Returns the action corresponding to an ordinal. */
+	public Action actionAt(int index);
+
+	/**
+	 * Returns the actions that can be applied to the state (the same ones returned by
+	 * getPossibleActions) as a mask: the bit i is set if the action with ordinal i can
+	 * be applied. The bits follow the ordinals, which need not be the order of
+	 * getPossibleActions, so algorithms that break ties by that order (as the solvers of
+	 * MDPs do) must enumerate the list instead.
+	 */
+	public int actionMask(State state);
+}
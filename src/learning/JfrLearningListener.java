@@ -0,0 +1,104 @@
+package learning;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Listener that emits the progress of the algorithms as Java Flight Recorder events
+ * (learning.Sweep and learning.Episodes, in the category Learning), so that it can be
+ * analyzed together with the GC, allocation and CPU samples of the same recording, e.g.
+ *
+ *     java -XX:StartFlightRecording=filename=run.jfr ...
+ *     jfr print --events learning.Sweep run.jfr
+ *
+ * When there is no recording, or the events are disabled, the reports only check it.
+ */
+public class JfrLearningListener implements LearningListener {
+
+	/** Report of a sweep. */
+	@Name("learning.Sweep")
+	@Label("Learning Sweep")
+	@Category("Learning")
+	@StackTrace(false)
+	public static class SweepEvent extends Event {
+		@Label("Algorithm")
+		String algorithm;
+		@Label("Sweep")
+		int sweep;
+		@Label("Residual")
+		double residual;
+		@Label("Backups")
+		long backups;
+		@Label("Backups per Second")
+		double backupsPerSecond;
+		@Label("States Changed")
+		int statesChanged;
+		@Label("Time")
+		@Description("Time since the previous report")
+		@Timespan
+		long time;
+	}
+
+	/** Report of a group of episodes. */
+	@Name("learning.Episodes")
+	@Label("Learning Episodes")
+	@Category("Learning")
+	@StackTrace(false)
+	public static class EpisodesEvent extends Event {
+		@Label("Algorithm")
+		String algorithm;
+		@Label("Episode")
+		@Description("Episodes finished so far")
+		int episode;
+		@Label("Episodes")
+		int episodes;
+		@Label("Steps per Episode")
+		double stepsPerEpisode;
+		@Label("Episodes per Second")
+		double episodesPerSecond;
+		@Label("Max TD Error")
+		double maxTDError;
+		@Label("Time")
+		@Description("Time since the previous report")
+		@Timespan
+		long time;
+	}
+
+	@Override
+	public void sweepFinished(LearningAlgorithm algorithm, int sweep, double residual, long backups, int statesChanged, long nanos){
+		SweepEvent event = new SweepEvent();
+		if (!event.isEnabled())
+			return;
+		event.algorithm = algorithm.getClass().getSimpleName();
+		event.sweep = sweep;
+		event.residual = residual;
+		event.backups = backups;
+		event.backupsPerSecond = nanos>0 ? backups*1e9/nanos : 0;
+		event.statesChanged = statesChanged;
+		event.time = nanos;
+		event.commit();
+	}
+
+	@Override
+	public void episodesFinished(LearningAlgorithm algorithm, int episode, int episodes, long steps, double maxTDError, long nanos){
+		EpisodesEvent event = new EpisodesEvent();
+		if (!event.isEnabled())
+			return;
+		event.algorithm = algorithm.getClass().getSimpleName();
+		event.episode = episode;
+		event.episodes = episodes;
+		event.stepsPerEpisode = (double) steps/episodes;
+		event.episodesPerSecond = nanos>0 ? episodes*1e9/nanos : 0;
+		event.maxTDError = maxTDError;
+		event.time = nanos;
+		event.commit();
+	}
+
+	@Override
+	public void learningFinished(LearningAlgorithm algorithm){}
+}
@@ -2,6 +2,8 @@ package learning;
 
 import learning.Policy;
 import learning.LearningProblem;
+import utils.RandomSource;
+import utils.Utils;
 
 /** 
  * All learning algorithms must extend this class.
@@ -13,6 +15,24 @@ public abstract class LearningAlgorithm {
 	
 	/* Policy that will be returned as solution. */
 	protected Policy solution = new Policy();
+	
+	/* Random source of the algorithm. If null, the source of the current thread is used. */
+	protected RandomSource randomSource;
+	
+	/* Listener notified of the progress of the algorithm (null if none). */
+	protected LearningListener listener;
+	
+	/* Number of episodes reported together to the listener. */
+	private int reportInterval = 100;
+	
+	/* Sweeps and episodes reported in the current execution, and time of the last report. */
+	private int sweepsReported, episodesReported;
+	private long lastReportTime;
+	
+	/* Episodes finished since the last report, their steps and their largest TD error. */
+	private int episodesPending;
+	private long stepsPending;
+	private double maxTDErrorPending;
 		
 	// Methods related with search. 	
 	
@@ -21,12 +41,22 @@ public abstract class LearningAlgorithm {
 	 * that is specific for each algorithm. 
 	 */
 	public Policy learnPolicy(LearningProblem problem){
-		// Resets the policy (in case the algorithm is executed several times).
-		solution.reset();
+		// Resets the policy (in case the algorithm is executed several times), indexing 
+		// it as the problem.
+		solution.reset(problem);
 		// Fixes the values for both problem and gamma
 		setProblem(problem);
+		sweepsReported = episodesReported = episodesPending = 0;
+		stepsPending = 0;
+		maxTDErrorPending = 0;
+		lastReportTime = System.nanoTime();
 		// This is the main method that must be implemented.
 		learnPolicy();
+		if (listener!=null){
+			if (episodesPending>0)
+				reportEpisodes();
+			listener.learningFinished(this);
+		}
 		// Returns the solution
 		return solution;
 	}		
@@ -42,6 +72,64 @@ public abstract class LearningAlgorithm {
 	/** Sets the problem. */
 	public void setProblem(LearningProblem problem){ this.problem = problem; }
 	
+	/** 
+	 * Sets the random source used by the algorithm (null means using the source of the
+	 * current thread, see Utils.random()). A source can only be used by one thread.
+	 */
+	public void setRandomSource(RandomSource randomSource){ this.randomSource = randomSource; }
+	
+	/** 
+	 * Sets the listener notified of the progress of the algorithm (null to remove it). 
+	 * Without listener, the algorithms do not measure anything they do not need.
+	 */
+	public void setListener(LearningListener listener){ this.listener = listener; }
+	
+	/** Sets the number of episodes reported together to the listener (100 by default). */
+	public void setReportInterval(int episodes){ this.reportInterval = Math.max(1, episodes); }
+	
+	/** Whether the progress is being reported (algorithms can skip measures needed only for the reports). */
+	protected boolean isListened(){ return listener!=null; }
+	
+	/** Reports the end of a sweep to the listener (see LearningListener.sweepFinished). */
+	protected void sweepFinished(double residual, long backups, int statesChanged){
+		if (listener==null)
+			return;
+		long now = System.nanoTime();
+		listener.sweepFinished(this, ++sweepsReported, residual, backups, statesChanged, now-lastReportTime);
+		lastReportTime = now;
+	}
+	
+	/** 
+	 * Accounts for the end of an episode, with its number of steps and its largest absolute
+	 * TD error. Episodes are reported to the listener in groups of reportInterval.
+	 */
+	protected void episodeFinished(int steps, double maxTDError){
+		if (listener==null)
+			return;
+		episodesPending++;
+		stepsPending += steps;
+		if (maxTDError>maxTDErrorPending)
+			maxTDErrorPending = maxTDError;
+		if (episodesPending>=reportInterval)
+			reportEpisodes();
+	}
+	
+	/* Reports the episodes finished since the last report. */
+	private void reportEpisodes(){
+		long now = System.nanoTime();
+		episodesReported += episodesPending;
+		listener.episodesFinished(this, episodesReported, episodesPending, stepsPending, maxTDErrorPending, now-lastReportTime);
+		lastReportTime = now;
+		episodesPending = 0;
+		stepsPending = 0;
+		maxTDErrorPending = 0;
+	}
+	
+	/** Returns the random source that must be used by the algorithm. */
+	protected RandomSource random(){
+		return randomSource!=null ? randomSource : Utils.random();
+	}
+	
 	/** Fixes the parameters of the algorithm*/
 	public abstract void setParams(String[] args);
 	
@@ -0,0 +1,44 @@
+package learning;
+
+/**
+ * Receives the progress of a learning algorithm while it runs (see
+ * LearningAlgorithm.setListener). Algorithms based on sweeps (value and policy iteration)
+ * report each sweep, LRTDP reports each trial as a sweep, and algorithms based on 
+ * episodes (Q-learning) report groups of episodes, so the cost of the notifications does
+ * not depend on the number of steps. Algorithms that do not iterate (RandomAlgorithm)
+ * only call learningFinished.
+ *
+ * The methods are called from the thread running the algorithm, and should return
+ * quickly (e.g. by handing the values to another thread, as CsvLearningListener does).
+ */
+public interface LearningListener {
+
+	/**
+	 * Called at the end of each sweep.
+	 *
+	 * @param sweep          number of the sweep (from 1).
+	 * @param residual       largest change of a utility in the sweep (value iteration and
+	 *                       LRTDP) or residual of the last evaluation (policy iteration).
+	 * @param backups        backups carried out in the sweep.
+	 * @param statesChanged  states whose utility changed more than the convergence
+	 *                       threshold (value iteration), whose action changed (policy
+	 *                       iteration) or that were labeled as solved (LRTDP).
+	 * @param nanos          time since the previous report.
+	 */
+	void sweepFinished(LearningAlgorithm algorithm, int sweep, double residual, long backups, int statesChanged, long nanos);
+
+	/**
+	 * Called every few episodes (see LearningAlgorithm.setReportInterval), and after the
+	 * last one.
+	 *
+	 * @param episode     number of episodes finished so far.
+	 * @param episodes    episodes finished since the previous report.
+	 * @param steps       steps of those episodes.
+	 * @param maxTDError  largest absolute temporal difference error of those steps.
+	 * @param nanos       time since the previous report.
+	 */
+	void episodesFinished(LearningAlgorithm algorithm, int episode, int episodes, long steps, double maxTDError, long nanos);
+
+	/** Called when the algorithm has finished learning the policy. */
+	void learningFinished(LearningAlgorithm algorithm);
+}
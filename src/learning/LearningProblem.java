@@ -1,6 +1,7 @@
 package learning;
 
 import learning.State;
+import utils.RandomSource;
 import utils.Utils;
 import learning.Action;
 
@@ -18,6 +19,9 @@ public abstract class LearningProblem{
 	/* In some cases, there can be an initial state. */
 	protected State initialState;	
 	
+	/* Random source of the problem. If null, the source of the current thread is used. */
+	protected RandomSource randomSource;
+	
 	// Methods related with the problem definition
 	
 	/** Returns the initial state. */
@@ -46,10 +50,36 @@ public abstract class LearningProblem{
 	/** Sets the value for gamma. */
 	public void setGamma(double gamma){ this.gamma = gamma; }	
 	
-	/** Returns a random action. */
+	/** 
+	 * Sets the random source used by the problem (null means using the source of the 
+	 * current thread, see Utils.random()). A source can only be used by one thread.
+	 */
+	public void setRandomSource(RandomSource randomSource){ this.randomSource = randomSource; }
+	
+	/** Whether the problem has its own random source. */
+	public boolean hasRandomSource(){ return randomSource!=null; }
+	
+	/** Returns the random source that must be used by the problem. */
+	protected RandomSource random(){
+		return randomSource!=null ? randomSource : Utils.random();
+	}
+	
+	/** 
+	 * Returns a random action, or null if the state has no possible actions. Indexed 
+	 * problems sample the mask of possible actions, without building the list.
+	 */
 	public Action randomAction(State state) {
+		if (this instanceof IndexedProblem){
+			IndexedProblem indexed = (IndexedProblem) this;
+			int mask = indexed.actionMask(state);
+			if (mask==0)
+				return null;
+			return indexed.actionAt(Utils.nthSetBit(mask, random().nextInt(Integer.bitCount(mask))));
+		}
 		ArrayList<Action> pActions = getPossibleActions(state);
-		return pActions.get(Utils.random.nextInt(pActions.size()));
+		if (pActions.isEmpty())
+			return null;
+		return pActions.get(random().nextInt(pActions.size()));
 	}
 	
 	/** Generates and returns a random state */
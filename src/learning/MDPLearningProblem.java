@@ -1,14 +1,33 @@
 package learning;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 
 /** 
  * This class extends the learning problem to provide access to the underlying 
  * transition model so that it can be solved as a Markov Decision Process. 
+ * 
+ * Problems whose states can be enumerated densely should also implement
+ * IndexedProblem, so that the algorithms can use arrays instead of HashMaps.
+ * 
+ * The solvers work over getSolverStates(). By default they are all the states, but the
+ * problem can be restricted to the states reachable from the start states (see 
+ * setRestrictToReachable), so that states no one can reach are not stored or swept.
+ * In that case the policies obtained only have actions for the reachable states.
  */
 public abstract class MDPLearningProblem extends LearningProblem {
 	
+	/** Whether the solvers only work over the states reachable from the start states. */
+	protected boolean restrictToReachable = false;
+	
+	/* States reachable from the start states, and initial state used to calculate them. */
+	private ArrayList<State> reachableStates;
+	private State reachableFrom;
+	
 	// Abstract function that must be implemented in the problems. 
 	
 	/** 
@@ -22,6 +41,66 @@ public abstract class MDPLearningProblem extends LearningProblem {
 	
 	// Other methods already implemented. 
 	
+	/** 
+	 * Returns the states from which the episodes can start. By default, the initial state.
+	 * Problems whose episodes can start elsewhere should override it.
+	 */
+	public Collection<State> getStartStates(){
+		return Collections.singletonList(initialState);
+	}
+	
+	/** Sets whether the solvers only work over the states reachable from the start states. */
+	public void setRestrictToReachable(boolean restrictToReachable){
+		this.restrictToReachable = restrictToReachable;
+	}
+	
+	/** Whether the solvers only work over the states reachable from the start states. */
+	public boolean isRestrictedToReachable(){ return restrictToReachable; }
+	
+	/** Returns the states the solvers must work with (see setRestrictToReachable). */
+	public Collection<State> getSolverStates(){
+		return restrictToReachable ? getReachableStates() : getAllStates();
+	}
+	
+	/** 
+	 * Returns the states reachable from the start states, in breadth-first order. The search 
+	 * follows the transition models of all the possible actions, and does not go on from 
+	 * final states. The result is kept until the initial state changes.
+	 */
+	public Collection<State> getReachableStates(){
+		if (reachableStates!=null && reachableFrom==initialState)
+			return reachableStates;
+		ArrayList<State> reached = new ArrayList<State>();
+		HashSet<State> visited = new HashSet<State>();
+		ArrayDeque<State> queue = new ArrayDeque<State>();
+		for (State state: getStartStates())
+			if (visited.add(state))
+				queue.add(state);
+		while (!queue.isEmpty()){
+			State state = queue.poll();
+			reached.add(state);
+			if (isFinal(state))
+				continue;
+			for (Action action: getPossibleActions(state)){
+				StateActionTransModel transModel = getTransitionModel(state, action);
+				// The members of uniform sets are enqueued directly from the shared array, without building the arrays of the model.
+				if (transModel.isUniform()){
+					State[] uniformSet = transModel.getUniformSet();
+					for (int setIdx=0;setIdx<uniformSet.length;setIdx++)
+						if (setIdx!=transModel.getExcluded() && visited.add(uniformSet[setIdx]))
+							queue.add(uniformSet[setIdx]);
+				}
+				else
+					for (State next: transModel.getReachableStates())
+						if (visited.add(next))
+							queue.add(next);
+			}
+		}
+		reachableStates = reached;
+		reachableFrom = initialState;
+		return reachableStates;
+	}
+	
 	/** 
 	 * Applies an action to an state (returns a random state given the transition model
 	 * for the pair state-action). This function is common for all MDP problems, therefore, 
@@ -30,15 +109,19 @@ public abstract class MDPLearningProblem extends LearningProblem {
 	@Override
 	public State applyAction(State state, Action action) {
 		StateActionTransModel model = getTransitionModel(state, action);
-		return model.genNextState();
+		return model.genNextState(random());
 	}		
 	
 	// Utility methods
 	
-	/** 
-	 * Calculates the expected utility for an state-action given the utilities of all states in the problem.  
+	/**
+	 * Calculates the expected utility for an state-action given the utilities of all states in the problem.
+	 * A null action (states without possible actions) only collects the reward of the state, as in the
+	 * compiled model.
 	 */
 	public double getExpectedUtility(State state, Action action, HashMap<State, Double> utilities, double gamma){
+		if (action == null)
+			return getReward(state);
 		// Extracts the transition model for the state-action (reachable states and probability of reaching them).
 		StateActionTransModel transModel = getTransitionModel(state, action);
 		State[] reachableStates = transModel.getReachableStates();
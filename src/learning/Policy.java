@@ -1,65 +1,205 @@
 package learning;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.Set;
 
-/** 
+/**
  * Represents and manages a Policy (a function P(state) ---> action).
+ *
+ * Policies built for an IndexedProblem (see Policy(LearningProblem)) store the ordinal of
+ * the action of each state in an array indexed by state, so that looking up an action
+ * does not hash the state, and comparing two policies of the same problem is a
+ * comparison of arrays. States the problem does not index, and policies of problems
+ * without indexing, use a HashMap.
  */
 public class Policy {
-	
+
+	/* Values of the array for states without entry, and for entries with a null action. */
+	private static final int NO_ENTRY = -1, NULL_ACTION = -2;
+
 	/* This HashMap contains the action assigned to each state (the policy). */
 	private HashMap<State, Action> actionForState = new HashMap<State, Action>();
-	
+
+	/* Problem that indexes the states and actions (null if the policy is not indexed). */
+	private IndexedProblem indexed;
+
+	/* Ordinal of the action of each state, NO_ENTRY or NULL_ACTION (indexed policies). */
+	private int[] actionOrdinals;
+
+	/* Number of states with entry in actionOrdinals. */
+	private int numIndexed;
+
+	/** Builds a policy stored in a HashMap. */
+	public Policy(){}
+
+	/** Builds a policy for the problem, stored in an array if the problem is indexed. */
+	public Policy(LearningProblem problem){
+		reset(problem);
+	}
+
 	/** Adds (or replaces) the action corresponding to a certain state. */
-	public void setAction(State state, Action action){ actionForState.put(state, action); }
-	
+	public void setAction(State state, Action action){
+		int stateIdx = indexed!=null ? indexed.stateIndex(state) : -1;
+		if (stateIdx<0)
+			actionForState.put(state, action);
+		else
+			setAction(stateIdx, action!=null ? indexed.actionIndex(action) : NULL_ACTION);
+	}
+
+	/** 
+	 * Sets the ordinal of the action of a state given its index (indexed policies). A 
+	 * negative ordinal stores a null action.
+	 */
+	public void setAction(int stateIdx, int actionIdx){
+		if (actionOrdinals[stateIdx]==NO_ENTRY)
+			numIndexed++;
+		actionOrdinals[stateIdx] = actionIdx>=0 ? actionIdx : NULL_ACTION;
+	}
+
 	/** Gets the action corresponding to a certain state. */
-	public Action getAction(State state){ return actionForState.get(state);	}
-	
+	public Action getAction(State state){
+		int stateIdx = indexed!=null ? indexed.stateIndex(state) : -1;
+		if (stateIdx<0)
+			return actionForState.get(state);
+		int actionIdx = actionOrdinals[stateIdx];
+		return actionIdx>=0 ? indexed.actionAt(actionIdx) : null;
+	}
+
+	/** Gets the ordinal of the action of a state given its index, or a negative value if there is none (indexed policies). */
+	public int getActionIndex(int stateIdx){ return actionOrdinals[stateIdx]; }
+
+	/** Whether the policy stores the actions of the states indexed by the problem in an array. */
+	public boolean isIndexed(){ return indexed!=null; }
+
 	/** Resets the policy (deletes all the entries).*/
-	public void reset(){ actionForState = new HashMap<State, Action>(); }
-	
-	/** 
-	 *  Compares two policies. Comparison returns True only if both policies contain a 
-	 *  similar set of pair state-action. 
+	public void reset(){
+		actionForState.clear();
+		if (actionOrdinals!=null)
+			Arrays.fill(actionOrdinals, NO_ENTRY);
+		numIndexed = 0;
+	}
+
+	/** Resets the policy, using from now on the indexing of the problem (if it is indexed). */
+	public void reset(LearningProblem problem){
+		IndexedProblem newIndexed = problem instanceof IndexedProblem ? (IndexedProblem) problem : null;
+		if (newIndexed==null)
+			actionOrdinals = null;
+		else if (newIndexed!=indexed || actionOrdinals==null || actionOrdinals.length!=newIndexed.numStates())
+			actionOrdinals = new int[newIndexed.numStates()];
+		indexed = newIndexed;
+		reset();
+	}
+
+	/**
+	 *  Compares two policies. Comparison returns True only if both policies contain a
+	 *  similar set of pair state-action.
 	 */
 	public boolean equals(Object anotherPolicy){
-		// If the object passed as parameter is not a state, returns false 
+		// If the object passed as parameter is not a state, returns false
 		if (!(anotherPolicy instanceof Policy)){
 			System.out.println("Trying to compare two objects of different classes.");
 			return false;
 		}
+		Policy other = (Policy) anotherPolicy;
 		// Compares the sizes of both policies, that must be equal.
-		if (actionForState.size()!=((Policy)anotherPolicy).actionForState.size())
-			return false;		
-		// If both have the same size, compares all the elements
-		for (Entry<State,Action> entry: actionForState.entrySet()){
-			State state = entry.getKey();
-			Action action = entry.getValue();
-			// Returns false if some action in one does not exist in the other. 
-			if (((Policy)anotherPolicy).getAction(state)!=action)
-				return false;
-		}		
-		// Otherwise, the policies are similar.
-		return true;
+		if (size()!=other.size())
+			return false;
+		// Policies of the same problem compare their arrays directly.
+		if (sameIndexing(other))
+			return Arrays.equals(actionOrdinals, other.actionOrdinals) && actionForState.equals(other.actionForState);
+		return countDifferences(other)==0;
+	}
+
+	/**
+	 * Number of states whose action differs in both policies (including the states that
+	 * only have entry in one of them).
+	 */
+	public int countDifferences(Policy other){
+		// Policies of different problems are compared entry by entry.
+		if (!sameIndexing(other))
+			return countEntriesDiffering(this, other) + countEntriesMissing(other, this);
+		int differences = 0;
+		for (int stateIdx=0;stateIdx<actionOrdinals.length;stateIdx++)
+			if (actionOrdinals[stateIdx]!=other.actionOrdinals[stateIdx])
+				differences++;
+		// States not indexed by the problem.
+		differences += countEntriesDiffering(actionForState, other);
+		for (State state: other.actionForState.keySet())
+			if (!actionForState.containsKey(state))
+				differences++;
+		return differences;
+	}
+
+	/** Whether both policies store the indexed states in arrays of the same problem. */
+	private boolean sameIndexing(Policy other){
+		return indexed!=null && indexed==other.indexed;
+	}
+
+	/** Entries of the policy whose action is different (or missing) in the other one. */
+	private static int countEntriesDiffering(Policy policy, Policy other){
+		int differences = countEntriesDiffering(policy.actionForState, other);
+		if (policy.indexed!=null)
+			for (int stateIdx=0;stateIdx<policy.actionOrdinals.length;stateIdx++)
+				if (policy.actionOrdinals[stateIdx]!=NO_ENTRY){
+					State state = policy.indexed.stateAt(stateIdx);
+					if (!other.hasEntry(state) || other.getAction(state)!=policy.getAction(state))
+						differences++;
+				}
+		return differences;
+	}
+
+	/** Entries of the map whose action is different (or missing) in the other policy. */
+	private static int countEntriesDiffering(HashMap<State, Action> entries, Policy other){
+		int differences = 0;
+		for (Entry<State,Action> entry: entries.entrySet())
+			if (!other.hasEntry(entry.getKey()) || other.getAction(entry.getKey())!=entry.getValue())
+				differences++;
+		return differences;
+	}
+
+	/** Entries of the policy that do not exist in the other one. */
+	private static int countEntriesMissing(Policy policy, Policy other){
+		int missing = 0;
+		for (State state: policy.actionForState.keySet())
+			if (!other.hasEntry(state))
+				missing++;
+		if (policy.indexed!=null)
+			for (int stateIdx=0;stateIdx<policy.actionOrdinals.length;stateIdx++)
+				if (policy.actionOrdinals[stateIdx]!=NO_ENTRY && !other.hasEntry(policy.indexed.stateAt(stateIdx)))
+					missing++;
+		return missing;
 	}
-	
+
+	/** Whether the policy has an entry (maybe with a null action) for the state. */
+	private boolean hasEntry(State state){
+		int stateIdx = indexed!=null ? indexed.stateIndex(state) : -1;
+		if (stateIdx<0)
+			return actionForState.containsKey(state);
+		return actionOrdinals[stateIdx]!=NO_ENTRY;
+	}
+
 	/** Size of the policy.*/
 	public int size() {
-		return actionForState.size();
+		return actionForState.size() + numIndexed;
 	}
-	
+
 	/** Prints the policy as a list. */
 	public String toString(){
-		String output = "";
+		StringBuilder output = new StringBuilder();
+		if (indexed!=null)
+			for (int stateIdx=0;stateIdx<actionOrdinals.length;stateIdx++)
+				if (actionOrdinals[stateIdx]!=NO_ENTRY){
+					State state = indexed.stateAt(stateIdx);
+					output.append("\t").append(state).append(" -> ").append(getAction(state)).append("\n");
+				}
 		// Gets the states in the table.
 		Set<State> states = actionForState.keySet();
 		for (State state: states){
-			output += "\t" + state.toString();
-			output += " -> " + actionForState.get(state)+"\n";
+			output.append("\t").append(state.toString());
+			output.append(" -> ").append(actionForState.get(state)).append("\n");
 		}
-		return output;
-	}	
-}
\ No newline at end of file
+		return output.toString();
+	}
+}
@@ -1,5 +1,6 @@
 package learning;
 
+import utils.RandomSource;
 import utils.Utils;
 
 /** 
@@ -21,6 +22,13 @@ import utils.Utils;
  * 
  * StateActionTransModel S1_a = new StateActionTransModel(reachableStates, probs);
  * 
+ * Some transitions reach, with the same probability, all the states of a set shared
+ * by many pairs state-action except the origin (for instance, diving in a maze). In 
+ * that case, the model can be built with the shared set and the position of the state
+ * excluded, so that it does not need to enumerate the set:
+ * 
+ * StateActionTransModel S1_dive = new StateActionTransModel(holes, 3);
+ * 
  */
 public class StateActionTransModel{
 	
@@ -30,16 +38,34 @@ public class StateActionTransModel{
 	/* Probability of reaching each state. */
 	private double[] probs;
 	
+	/* Shared set of states reached uniformly (null if the model is not uniform). */
+	private State[] uniformSet;
+	
+	/* Position in uniformSet of the state that can not be reached (-1 if none). */
+	private int excluded = -1;
+	
 	// Utility methods
 	
 	/** 
 	 * Randomly generates the next state considering the entry for
 	 * the transition model, corresponding to a pair state-action, 
-	 * represented by the object. 
+	 * represented by the object. Uses the random source of the current thread.
 	 */
-	public State genNextState(){		
+	public State genNextState(){
+		return genNextState(Utils.random());
+	}
+	
+	/** Randomly generates the next state, using a given random source. */
+	public State genNextState(RandomSource random){		
+		// Uniform models select one of the states in the set, skipping the excluded one.
+		if (uniformSet!=null){
+			int selected = random.nextInt(uniformSetSize());
+			if (excluded>=0 && selected>=excluded)
+				selected++;
+			return uniformSet[selected];
+		}
 		// Generates a random position given this transition model. 
-		double randUniform = Utils.random.nextDouble();
+		double randUniform = random.nextDouble();
 		int selected = 0;
 		double cumProbabilities = probs[selected];
 		while (randUniform>cumProbabilities){
@@ -54,29 +80,84 @@ public class StateActionTransModel{
 	 */
 	public StateActionTransModel(State[] reachableStates, double[] probs){		
 		// The sizes of both vectors must be similar.
-		assert reachableStates.length != probs.length: 
+		assert reachableStates.length == probs.length: 
 			"The number of reachable states does not correspond with the vector of probabilities";		
-		// The sum of the probabilities must be one.
+		// The sum of the probabilities must be one (up to rounding errors).
 		double cumProbabilities = 0;
 		for (int pInd=0;pInd<probs.length;pInd++)
 			cumProbabilities += probs[pInd];	
-		assert cumProbabilities != 1.0: 
+		assert Math.abs(cumProbabilities - 1.0) < 1e-9: 
 			"The sum of the probability vector must be equal to 1.";		
 		// Saves the states and probabilities.
 		this.reachableStates = reachableStates;
 		this.probs = probs;		
 	}
 	
+	/** 
+	 * Creates a model that reaches uniformly all the states of a set except the one 
+	 * in the position excluded (-1 if all of them can be reached). The set is shared, 
+	 * and must not be modified. 
+	 */
+	public StateActionTransModel(State[] uniformSet, int excluded){
+		assert uniformSet.length - (excluded>=0 ? 1 : 0) > 0:
+			"The set of reachable states can not be empty.";
+		this.uniformSet = uniformSet;
+		this.excluded = excluded;
+	}
+	
 	/** Returns the probabilities. */
-	public double[] getProbs(){ return probs; }
+	public double[] getProbs(){ 
+		if (probs==null)
+			enumerateUniformSet();
+		return probs; 
+	}
 	
 	/** Returns the reachable states. */
-	public State[] getReachableStates(){ return reachableStates; }
+	public State[] getReachableStates(){ 
+		if (reachableStates==null)
+			enumerateUniformSet();
+		return reachableStates; 
+	}
+	
+	/** Whether the model reaches uniformly the states of a shared set. */
+	public boolean isUniform(){ return uniformSet!=null; }
+	
+	/** Returns the shared set of a uniform model (null if it is not uniform). */
+	public State[] getUniformSet(){ return uniformSet; }
+	
+	/** Returns the position in the shared set of the state excluded, or -1. */
+	public int getExcluded(){ return excluded; }
+	
+	/** Number of states reachable in a uniform model. */
+	private int uniformSetSize(){
+		return uniformSet.length - (excluded>=0 ? 1 : 0);
+	}
+	
+	/** 
+	 * Builds the vectors of reachable states and probabilities of a uniform model, for
+	 * the algorithms that need to enumerate them. 
+	 */
+	private void enumerateUniformSet(){
+		int numReachable = uniformSetSize();
+		State[] reachable = new State[numReachable];
+		double[] uniformProbs = new double[numReachable];
+		int reachIdx = 0;
+		for (int setIdx=0;setIdx<uniformSet.length;setIdx++){
+			if (setIdx==excluded)
+				continue;
+			reachable[reachIdx] = uniformSet[setIdx];
+			uniformProbs[reachIdx++] = 1.0 / numReachable;
+		}
+		probs = uniformProbs;
+		reachableStates = reachable;
+	}
 
 	/**
 	 * Prints the entry of the transition model represented by the object.
 	 */
 	public String toString(){
+		if (uniformSet!=null)
+			enumerateUniformSet();
 		String output = "";
 		int numStates = reachableStates.length;
 		for (int i=0;i<numStates;i++){
@@ -0,0 +1,147 @@
+package learning;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of the transition graph of a compiled model, in reverse
+ * topological order: the states of a component can only reach states of the same
+ * component or of the components that come before it. Algorithms can therefore solve
+ * the components one by one, each one only once, in the order they are stored.
+ *
+ *     componentStart[c] .. componentStart[c+1]-1    positions in componentStates of the
+ *                                                   states of the component c.
+ *
+ * The graph has an edge from each state to the successors of its regular rows. Shared
+ * sets (see CompiledMDP) are added as virtual nodes, with an edge from each state with
+ * a row uniform over the set and an edge from the set to each of its members, so the
+ * graph keeps linear size. Virtual nodes are not part of the components. Final states
+ * have no outgoing edges, as their utility does not depend on other states.
+ *
+ * The components are calculated with Tarjan's algorithm, using an explicit stack
+ * instead of recursion, as the paths of a maze can be as long as the number of cells.
+ */
+public class StateComponents {
+
+	/* Number of components. */
+	public final int numComponents;
+
+	/* First position of each component in componentStates. The last element is the number of states. */
+	public final int[] componentStart;
+
+	/* States grouped by component. */
+	public final int[] componentStates;
+
+	/* Component of each state. */
+	public final int[] componentOf;
+
+	/** Calculates the components of the model. */
+	public StateComponents(CompiledMDP model){
+		int numStates = model.numStates;
+		int numNodes = numStates + model.numSets();
+
+		// Adjacency of the graph in CSR format (repeated edges do no harm).
+		int[] edgeStart = new int[numNodes+1];
+		for (int state=0;state<numStates;state++){
+			int numEdges = 0;
+			if (!model.isFinal[state])
+				for (int row=model.stateRows[state];row<model.stateRows[state+1];row++)
+					numEdges += model.rowSet[row]>=0 ? 1 : model.rowStart[row+1]-model.rowStart[row];
+			edgeStart[state+1] = edgeStart[state] + numEdges;
+		}
+		for (int setId=0;setId<model.numSets();setId++)
+			edgeStart[numStates+setId+1] = edgeStart[numStates+setId] + model.setStart[setId+1] - model.setStart[setId];
+		int[] edges = new int[edgeStart[numNodes]];
+		int numEdges = 0;
+		for (int state=0;state<numStates;state++){
+			if (model.isFinal[state])
+				continue;
+			for (int row=model.stateRows[state];row<model.stateRows[state+1];row++){
+				if (model.rowSet[row]>=0)
+					edges[numEdges++] = numStates + model.rowSet[row];
+				else
+					for (int entry=model.rowStart[row];entry<model.rowStart[row+1];entry++)
+						edges[numEdges++] = model.successors[entry];
+			}
+		}
+		for (int member=0;member<model.setMembers.length;member++)
+			edges[numEdges++] = model.setMembers[member];
+
+		// Tarjan's algorithm.
+		int[] index = new int[numNodes];
+		int[] lowLink = new int[numNodes];
+		int[] nextEdge = new int[numNodes];
+		boolean[] onStack = new boolean[numNodes];
+		int[] stack = new int[numNodes];
+		int[] callStack = new int[numNodes];
+		int stackSize = 0, nextIndex = 0;
+		Arrays.fill(index, -1);
+
+		componentOf = new int[numStates];
+		componentStates = new int[numStates];
+		int[] componentStartAux = new int[numStates+1];
+		int components = 0, numPlaced = 0;
+
+		for (int root=0;root<numNodes;root++){
+			if (index[root]>=0)
+				continue;
+			int depth = 0;
+			callStack[depth++] = root;
+			index[root] = lowLink[root] = nextIndex++;
+			nextEdge[root] = edgeStart[root];
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			while (depth>0){
+				int node = callStack[depth-1];
+				if (nextEdge[node]<edgeStart[node+1]){
+					int next = edges[nextEdge[node]++];
+					if (index[next]<0){
+						// Visits the successor.
+						index[next] = lowLink[next] = nextIndex++;
+						nextEdge[next] = edgeStart[next];
+						stack[stackSize++] = next;
+						onStack[next] = true;
+						callStack[depth++] = next;
+					}
+					else if (onStack[next])
+						lowLink[node] = Math.min(lowLink[node], index[next]);
+					continue;
+				}
+				// All the successors have been visited.
+				depth--;
+				if (depth>0)
+					lowLink[callStack[depth-1]] = Math.min(lowLink[callStack[depth-1]], lowLink[node]);
+				if (lowLink[node]==index[node]){
+					// The node is the root of a component, which is on top of the stack.
+					int first = numPlaced;
+					int member;
+					do {
+						member = stack[--stackSize];
+						onStack[member] = false;
+						if (member<numStates){
+							componentOf[member] = components;
+							componentStates[numPlaced++] = member;
+						}
+					} while (member!=node);
+					// Components with only virtual nodes are discarded.
+					if (numPlaced>first)
+						componentStartAux[++components] = numPlaced;
+				}
+			}
+		}
+		numComponents = components;
+		componentStart = Arrays.copyOf(componentStartAux, components+1);
+	}
+
+	/** Returns the number of states of a component. */
+	public int size(int component){
+		return componentStart[component+1] - componentStart[component];
+	}
+
+	/** Returns the size of the largest component. */
+	public int maxSize(){
+		int max = 0;
+		for (int component=0;component<numComponents;component++)
+			max = Math.max(max, size(component));
+		return max;
+	}
+}
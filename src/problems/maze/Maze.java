@@ -1,6 +1,7 @@
 package problems.maze;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 import utils.*;
@@ -15,6 +16,18 @@ public class Maze{
 	public static final int WATER = 3;
 	public static final int CAT = 4;
 	public static final int CHEESE = 5;
+	
+	/* Bits of the attributes of each cell (see attributes). */
+	public static final int FINAL = 1;
+	public static final int HAS_CHEESE = 1<<1;
+	public static final int HAS_CAT = 1<<2;
+	public static final int HAS_HOLE = 1<<3;
+	public static final int HAS_WATER = 1<<4;
+	public static final int CAN_UP = 1<<5;
+	public static final int CAN_DOWN = 1<<6;
+	public static final int CAN_LEFT = 1<<7;
+	public static final int CAN_RIGHT = 1<<8;
+	public static final int CAN_DIVE = 1<<9;
 		
 	/* Size */
 	protected int size = 11;
@@ -39,6 +52,33 @@ public class Maze{
 	
 	/* List of holes */
 	protected ArrayList<Position> holeList = new ArrayList<Position>();
+	
+	/* Number of cells which are not walls (the states of the maze problems). */
+	protected int numFreeCells;
+	
+	/* Dense index of each cell (cell = x*size+y), or -1 if the cell is a wall. */
+	protected int[] cellIndex;
+	
+	/* Cell (x*size+y) corresponding to each dense index. */
+	protected int[] indexCell;
+	
+	/* States corresponding to the holes, in the order of holeList. Shared by all dive transitions. */
+	protected MazeState[] holeStates;
+	
+	/* Packed attributes of each cell (x*size+y), combining the bits FINAL, HAS_CHEESE, etc. */
+	protected int[] cellAttributes;
+	
+	/* Canonical state of each free cell, by dense index. States are shared, never copied. */
+	protected MazeState[] freeStates;
+	
+	/* Dense indices of the cells where random episodes can start (see startCell). */
+	protected int[] startCells;
+	
+	/* Position in holeList of the hole in each cell (x*size+y), or -1 if there is no hole. */
+	protected int[] holeIndex;
+	
+	/* Dense indices of the holes, in the order of holeList. */
+	protected int[] holeCells;
 
 	/** Creates a maze with seed equals 0 */
 	public Maze(int size){
@@ -52,6 +92,37 @@ public class Maze{
 		this.cells = new int[size][size];
 		generate(seed);
 	}	
+	/** 
+	 * Creates a maze from a map. Each string is a row (y) and each character a cell (x), 
+	 * using the characters of toString: ' ' empty, '*' wall, 'o' hole, '+' water, 'c' cat
+	 * and 'h' cheese. The map must be square and have a cheese.
+	 */
+	public Maze(String[] rows, int hamsterX, int hamsterY){
+		String types = " *o+ch";
+		this.size = rows.length;
+		this.cells = new int[size][size];
+		posCats = new ArrayList<Position>();
+		for(int posY=0;posY<size;posY++)
+			for(int posX=0;posX<size;posX++){
+				int type = types.indexOf(rows[posY].charAt(posX));
+				if (type<0)
+					throw new IllegalArgumentException("Unknown cell '"+rows[posY].charAt(posX)+"'.");
+				cells[posX][posY] = type;
+				if (type==HOLE)
+					holeList.add(new Position(posX, posY));
+				else if (type==CAT)
+					posCats.add(new Position(posX, posY));
+				else if (type==CHEESE)
+					posCheese = new Position(posX, posY);
+			}
+		if (posCheese==null)
+			throw new IllegalArgumentException("The maze has no cheese.");
+		numCats = posCats.size();
+		numHoles = holeList.size();
+		posHamster = new Position(hamsterX, hamsterY);
+		buildIndex();
+	}
+	
 	/** Returns the hamster position. */
 	public Position hamsterPosition(){
 		return posHamster;
@@ -155,7 +226,118 @@ public class Maze{
 			hamsterX=random.nextInt(size);
 			hamsterY=random.nextInt(size);
 		}while (cells[hamsterX][hamsterY]!=EMPTY);
-		posHamster = new Position(hamsterX, hamsterY);		
+		posHamster = new Position(hamsterX, hamsterY);
+		
+		// Indexes the cells that are not walls.
+		buildIndex();
+	}
+	
+	/** 
+	 * Numbers the cells that are not walls consecutively, in the same order used
+	 * to enumerate them (X first, then Y), and indexes the holes.
+	 */
+	private void buildIndex(){
+		cellIndex = new int[size*size];
+		numFreeCells = 0;
+		for(int posX=0;posX<size;posX++)
+			for(int posY=0;posY<size;posY++)
+				if (cells[posX][posY]!=WALL)
+					cellIndex[posX*size+posY] = numFreeCells++;
+				else
+					cellIndex[posX*size+posY] = -1;
+		indexCell = new int[numFreeCells];
+		freeStates = new MazeState[numFreeCells];
+		for (int cell=0;cell<size*size;cell++)
+			if (cellIndex[cell]>=0){
+				indexCell[cellIndex[cell]] = cell;
+				freeStates[cellIndex[cell]] = new MazeState(cell/size, cell%size);
+			}
+		
+		// Holes.
+		holeStates = new MazeState[holeList.size()];
+		holeIndex = new int[size*size];
+		holeCells = new int[holeList.size()];
+		Arrays.fill(holeIndex, -1);
+		for (int nHole=0;nHole<holeList.size();nHole++){
+			Position hole = holeList.get(nHole);
+			holeStates[nHole] = stateOf(hole.x, hole.y);
+			holeCells[nHole] = cellIndex[hole.x*size+hole.y];
+			holeIndex[hole.x*size+hole.y] = nHole;
+		}
+		
+		// Attributes. Cheese, cats and holes are taken from their lists, which are the
+		// reference used by the problems (a cell may have been overwritten in cells).
+		cellAttributes = new int[size*size];
+		for(int posX=0;posX<size;posX++)
+			for(int posY=0;posY<size;posY++){
+				int attributes = 0;
+				if (cells[posX][posY]==WATER)
+					attributes |= HAS_WATER;
+				if (posY>0 && cells[posX][posY-1]!=WALL)
+					attributes |= CAN_UP;
+				if (posY<size-1 && cells[posX][posY+1]!=WALL)
+					attributes |= CAN_DOWN;
+				if (posX>0 && cells[posX-1][posY]!=WALL)
+					attributes |= CAN_LEFT;
+				if (posX<size-1 && cells[posX+1][posY]!=WALL)
+					attributes |= CAN_RIGHT;
+				cellAttributes[posX*size+posY] = attributes;
+			}
+		cellAttributes[posCheese.x*size+posCheese.y] |= HAS_CHEESE | FINAL;
+		for (Position cat: posCats)
+			cellAttributes[cat.x*size+cat.y] |= HAS_CAT | FINAL;
+		// Diving needs another hole to reach.
+		for (Position hole: holeList)
+			cellAttributes[hole.x*size+hole.y] |= holeList.size()>1 ? HAS_HOLE | CAN_DIVE : HAS_HOLE;
+		
+		// Start cells: free cells with at least an adjacent empty cell, so that 
+		// the hamster is not enclosed.
+		int[] startCellsAux = new int[numFreeCells];
+		int numStartCells = 0;
+		for (int index=0;index<numFreeCells;index++){
+			int posX = indexCell[index]/size, posY = indexCell[index]%size;
+			if ((posX>0 && cells[posX-1][posY]==EMPTY) || (posX<size-1 && cells[posX+1][posY]==EMPTY) ||
+				(posY>0 && cells[posX][posY-1]==EMPTY) || (posY<size-1 && cells[posX][posY+1]==EMPTY))
+				startCellsAux[numStartCells++] = index;
+		}
+		startCells = Arrays.copyOf(startCellsAux, numStartCells);
+	}
+	
+	/** Returns the packed attributes of the cell (x,y) (bits FINAL, HAS_CHEESE, etc.). */
+	public int attributes(int x, int y){
+		return cellAttributes[x*size+y];
+	}
+	
+	/** Returns the reward of the cell (x,y): 100 for the cheese, -100 for cats, 0 otherwise. */
+	public double reward(int x, int y){
+		return cellReward(x*size+y);
+	}
+	
+	/** Returns the reward of a cell given as x*size+y (see reward). */
+	public double cellReward(int cell){
+		int attributes = cellAttributes[cell];
+		if ((attributes & HAS_CHEESE)!=0)
+			return 100.0;
+		if ((attributes & HAS_CAT)!=0)
+			return -100.0;
+		return 0;
+	}
+	
+	/** Returns the canonical state of the free cell (x,y). */
+	public MazeState stateOf(int x, int y){
+		return freeStates[cellIndex[x*size+y]];
+	}
+	
+	/** Returns a uniformly distributed cell (as a dense index) where an episode can start. */
+	public int startCell(RandomSource random){
+		return startCells[random.nextInt(startCells.length)];
+	}
+	
+	/** Returns the dense index of the cell (x,y), or -1 if it is a wall or is out of the maze. */
+	public int indexOf(int x, int y){
+		if (x<0 || y<0 || x>=size || y>=size)
+			return -1;
+		return cellIndex[x*size+y];
 	}
 
 	/** Transforms the maze into a string. */
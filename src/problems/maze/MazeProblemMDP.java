@@ -10,7 +10,12 @@ import utils.*;
 /**
  * Implements the maze problem as a Markov Decision Process.
  */
-public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, ProblemVisualizable {
+public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, ProblemVisualizable, IndexedProblem {
+
+    /**
+     * Actions of the problem, indexed by their ordinal.
+     */
+    private static final MazeAction[] ACTIONS = MazeAction.values();
 
     /**
      * Size of the problem. Default value is 10.
@@ -27,7 +32,7 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
      */
     public MazeProblemMDP() {
         this.maze = new Maze(size, 0);
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     public MazeProblemMDP(int size) {
@@ -38,13 +43,13 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
     public MazeProblemMDP(int size, int seed) {
         this.size = size;
         this.maze = new Maze(size, seed);
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     public MazeProblemMDP(Maze maze) {
         this.size = maze.size;
         this.maze = maze;
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     /**
@@ -53,7 +58,7 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
     private void generateInstance(int size, int seed) {
         this.size = size;
         this.maze = new Maze(size, seed);
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     /**
@@ -73,10 +78,7 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         // COMPLETAR
         // 
         MazeState mazeState = (MazeState) state;
-        boolean cheese = mazeState.position.equals(this.maze.posCheese);
-        boolean cat    = this.maze.posCats.contains(mazeState.position);
-        
-        return cheese || cat;
+        return (maze.attributes(mazeState.X(), mazeState.Y()) & Maze.FINAL) != 0;
     }
     
     /**
@@ -89,22 +91,21 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         //
         // COMPLETAR
         // 
-        int fromY = mazeState.Y();
-        int fromX = mazeState.X();
+        int attributes = maze.attributes(mazeState.X(), mazeState.Y());
         
-        if ( (maze.holeList.contains(mazeState.position)) ) {
+        if ( (attributes & Maze.CAN_DIVE) != 0 ) {
             possibleActions.add(MazeAction.DIVE);
         }
-        if ( (fromY > 0) && (maze.cells[fromX][fromY - 1] != Maze.WALL) ) {
+        if ( (attributes & Maze.CAN_UP) != 0 ) {
             possibleActions.add(MazeAction.UP);	           
         }
-        if ( (fromY < maze.size - 1) && (maze.cells[fromX][fromY + 1] != Maze.WALL) ) {
+        if ( (attributes & Maze.CAN_DOWN) != 0 ) {
             possibleActions.add(MazeAction.DOWN);       
         }
-        if ( (fromX > 0) && (maze.cells[fromX - 1][fromY] != Maze.WALL) ) {
+        if ( (attributes & Maze.CAN_LEFT) != 0 ) {
             possibleActions.add(MazeAction.LEFT);       
         }
-        if ( (fromX < maze.size - 1) && (maze.cells[fromX + 1][fromY] != Maze.WALL) ) {
+        if ( (attributes & Maze.CAN_RIGHT) != 0 ) {
             possibleActions.add(MazeAction.RIGHT);
         }
         
@@ -121,18 +122,9 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         // COMPLETAR
         // 
         
+        // 100 for the cheese, -100 for cats, 0 otherwise.
         MazeState mazeState = (MazeState) state;
-        boolean cheese = mazeState.position.equals(this.maze.posCheese);
-        boolean cat    = this.maze.posCats.contains(mazeState.position);
-        
-        if ( cheese ) {
-            return  100.0;
-        } else if ( cat ) {
-            return -100.0;
-        }
-        
-        // Otherwise returns 0
-        return 0;
+        return maze.reward(mazeState.X(), mazeState.Y());
     }
 
     /**
@@ -160,7 +152,7 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         double recompensa = -1*distancia;
 
         // Si el estado actual es agua, la recompensa se duplica
-        if (maze.cells[fromX][fromY]==Maze.WATER)
+        if ((maze.attributes(fromX, fromY) & Maze.HAS_WATER) != 0)
                 recompensa = recompensa*2;
 
         // Si es un tunel y la acción es DIVE, la recompensa es la mitad
@@ -185,7 +177,7 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         for ( int i = 0; i < maze.size; i++ ) {
             for ( int j = 0; j < maze.size; j++ ) {
                 if ( maze.cells[i][j] != Maze.WALL ) {
-                    allStates.add(new MazeState(i, j));
+                    allStates.add(maze.stateOf(i, j));
                 }
             }  
         }
@@ -216,36 +208,25 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
 
         /* First considers diving. */
         if (action == MazeAction.DIVE) {
-            // It must be a hole. Gets the outputs.
-            Position inputHolePos = new Position(fromX, fromY);
-            // It considers all holes but one
-            reachable = new State[maze.numHoles - 1];
-            probs = new double[maze.numHoles - 1];
-            int holeNum = 0;
-            for (Position holePos : maze.holeList) {
-                if (holePos.equals(inputHolePos)) {
-                    continue;
-                }
-                reachable[holeNum] = new MazeState(holePos);
-                probs[holeNum++] = 1.0 / (maze.numHoles - 1);
-            }
-            // Returns 
-            return new StateActionTransModel(reachable, probs);
+            // It must be a hole. It reaches uniformly all holes but this one,
+            // which are shared by all the dive transitions.
+            return new StateActionTransModel(maze.holeStates, maze.holeIndex[fromX * maze.size + fromY]);
         }
 
         /* Otherwise it is a simple movement.*/
+        int attributes = maze.attributes(fromX, fromY);
         // Considers first it must count all reachable positions.
         int numReachablePos = 0;
-        if ((fromY > 0) && (maze.cells[fromX][fromY - 1] != Maze.WALL)) {
+        if ((attributes & Maze.CAN_UP) != 0) {
             numReachablePos++;	           //UP
         }
-        if ((fromY < maze.size - 1) && (maze.cells[fromX][fromY + 1] != Maze.WALL)) {
+        if ((attributes & Maze.CAN_DOWN) != 0) {
             numReachablePos++;  //DOWN	
         }
-        if ((fromX > 0) && (maze.cells[fromX - 1][fromY] != Maze.WALL)) {
+        if ((attributes & Maze.CAN_LEFT) != 0) {
             numReachablePos++;            //LEFT
         }
-        if ((fromX < maze.size - 1) && (maze.cells[fromX + 1][fromY] != Maze.WALL)) {
+        if ((attributes & Maze.CAN_RIGHT) != 0) {
             numReachablePos++;  //RIGHT
         }
         // Creates the transition model.
@@ -257,8 +238,8 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         double probSuccess = 1.0 - probError * (numReachablePos - 1);
 
         int ind = 0;
-        if ((fromY > 0) && (maze.cells[fromX][fromY - 1] != Maze.WALL)) { // UP
-            reachable[ind] = new MazeState(fromX, fromY - 1);
+        if ((attributes & Maze.CAN_UP) != 0) { // UP
+            reachable[ind] = maze.stateOf(fromX, fromY - 1);
             if (action == MazeAction.UP) {
                 probs[ind] = probSuccess;
             } else {
@@ -267,8 +248,8 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
             ind++;
         }
 
-        if ((fromY < maze.size - 1) && (maze.cells[fromX][fromY + 1] != Maze.WALL)) { // DOWN
-            reachable[ind] = new MazeState(fromX, fromY + 1);
+        if ((attributes & Maze.CAN_DOWN) != 0) { // DOWN
+            reachable[ind] = maze.stateOf(fromX, fromY + 1);
             if (action == MazeAction.DOWN) {
                 probs[ind] = probSuccess;
             } else {
@@ -277,8 +258,8 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
             ind++;
         }
 
-        if ((fromX > 0) && (maze.cells[fromX - 1][fromY] != Maze.WALL)) { // LEFT
-            reachable[ind] = new MazeState(fromX - 1, fromY);
+        if ((attributes & Maze.CAN_LEFT) != 0) { // LEFT
+            reachable[ind] = maze.stateOf(fromX - 1, fromY);
             if (action == MazeAction.LEFT) {
                 probs[ind] = probSuccess;
             } else {
@@ -287,8 +268,8 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
             ind++;
         }
 
-        if ((fromX < maze.size - 1) && (maze.cells[fromX + 1][fromY] != Maze.WALL)) { // RIGHT
-            reachable[ind] = new MazeState(fromX + 1, fromY);
+        if ((attributes & Maze.CAN_RIGHT) != 0) { // RIGHT
+            reachable[ind] = maze.stateOf(fromX + 1, fromY);
             if (action == MazeAction.RIGHT) {
                 probs[ind] = probSuccess;
             } else {
@@ -301,39 +282,103 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
         return new StateActionTransModel(reachable, probs);
     }
 
+    /**
+     * Episodes start at the initial state or, when it is chosen at random, at any of the
+     * start cells of the maze (see getRandomState).
+     */
+    @Override
+    public Collection<State> getStartStates() {
+        ArrayList<State> startStates = new ArrayList<State>();
+        if (initialState != null) {
+            startStates.add(initialState);
+        }
+        for (int index : maze.startCells) {
+            startStates.add(maze.freeStates[index]);
+        }
+        return startStates;
+    }
+
+    // From IndexedProblem
+    /**
+     * Number of states (cells which are not walls).
+     */
+    @Override
+    public int numStates() {
+        return maze.numFreeCells;
+    }
+
+    /**
+     * Index of the state, following the order of getAllStates().
+     */
+    @Override
+    public int stateIndex(State state) {
+        MazeState mazeState = (MazeState) state;
+        return maze.indexOf(mazeState.X(), mazeState.Y());
+    }
+
+    /**
+     * State corresponding to an index.
+     */
+    @Override
+    public State stateAt(int index) {
+        return maze.freeStates[index];
+    }
+
+    /**
+     * Number of actions.
+     */
+    @Override
+    public int numActions() {
+        return ACTIONS.length;
+    }
+
+    /**
+     * Ordinal of the action.
+     */
+    @Override
+    public int actionIndex(Action action) {
+        return ((MazeAction) action).ordinal();
+    }
+
+    /**
+     * Action corresponding to an ordinal.
+     */
+    @Override
+    public Action actionAt(int index) {
+        return ACTIONS[index];
+    }
+
+    /**
+     * Mask of the possible actions: diving in holes (if there is another one) and moving
+     * to adjacent cells that are not walls.
+     */
+    @Override
+    public int actionMask(State state) {
+        MazeState mazeState = (MazeState) state;
+        int attributes = maze.attributes(mazeState.X(), mazeState.Y());
+        int mask = 0;
+        if ((attributes & Maze.CAN_DIVE) != 0)
+            mask |= 1 << MazeAction.DIVE.ordinal();
+        if ((attributes & Maze.CAN_UP) != 0)
+            mask |= 1 << MazeAction.UP.ordinal();
+        if ((attributes & Maze.CAN_DOWN) != 0)
+            mask |= 1 << MazeAction.DOWN.ordinal();
+        if ((attributes & Maze.CAN_LEFT) != 0)
+            mask |= 1 << MazeAction.LEFT.ordinal();
+        if ((attributes & Maze.CAN_RIGHT) != 0)
+            mask |= 1 << MazeAction.RIGHT.ordinal();
+        return mask;
+    }
+
     // Utilities
     /**
      * Returns a random state.
      */
     @Override
     public State getRandomState() {
-        // Returns only positions corresponding to empty cells.
-        int posX, posY;
-        boolean validCell = false;
-        do {
-            posX = Utils.random.nextInt(size);
-            posY = Utils.random.nextInt(size);
-            // Walls are not valid states. 
-            if (maze.cells[posX][posY] == Maze.WALL) {
-                continue;
-            }
-            // Sometimes (not very often) there are empty cells surrounded
-            // by walls or by the limit of the maze.  Test that there is at least
-            // an adjacent position to move.
-            if (posX > 0 && maze.cells[posX - 1][posY] == Maze.EMPTY) {
-                validCell = true;
-            }
-            if (posX < maze.size - 1 && maze.cells[posX + 1][posY] == Maze.EMPTY) {
-                validCell = true;
-            }
-            if (posY > 0 && maze.cells[posX][posY - 1] == Maze.EMPTY) {
-                validCell = true;
-            }
-            if (posY > maze.size - 1 && maze.cells[posX][posY + 1] == Maze.EMPTY) {
-                validCell = true;
-            }
-        } while (!validCell);
-        return new MazeState(posX, posY);
+        // Returns only positions corresponding to empty cells with at least an adjacent
+        // empty cell (precalculated by the maze), so the sampling is uniform over them.
+        return maze.freeStates[maze.startCell(random())];
     }
 
     /**
@@ -347,6 +392,10 @@ public class MazeProblemMDP extends MDPLearningProblem implements MazeProblem, P
             } else {
                 generateInstance(Integer.parseInt(params[0]), Integer.parseInt(params[1]));
             }
+            // Optionally, the solvers only work over the cells reachable from the hamster.
+            if (params.length > 2) {
+                setRestrictToReachable(params[2].equalsIgnoreCase("reachable"));
+            }
         } catch (Exception E) {
             System.out.println("There has been an error while generating the na new instance of MazeProblem.");
         }
@@ -10,7 +10,31 @@ import utils.*;
 /**
  * Implements the maze problem as a model free problem.
  */
-public class MazeProblemMF extends MFLearningProblem implements MazeProblem, ProblemVisualizable {
+public class MazeProblemMF extends MFLearningProblem implements MazeProblem, ProblemVisualizable, IndexedProblem, BatchEnvironment {
+
+    /**
+     * Actions of the problem, indexed by their ordinal.
+     */
+    private static final MazeAction[] ACTIONS = MazeAction.values();
+
+    /**
+     * Mask of the four movements, which can always be applied.
+     */
+    private static final int MOVEMENTS_MASK = (1 << MazeAction.UP.ordinal()) | (1 << MazeAction.DOWN.ordinal())
+            | (1 << MazeAction.LEFT.ordinal()) | (1 << MazeAction.RIGHT.ordinal());
+
+    /**
+     * Ordinal of DIVE.
+     */
+    private static final int DIVE_ORDINAL = MazeAction.DIVE.ordinal();
+
+    /**
+     * Attribute that allows each movement, and the change of X and Y it makes, by ordinal
+     * (RIGHT, LEFT, UP, DOWN are the ordinals 0 to 3).
+     */
+    private static final int[] CAN_MOVE = {Maze.CAN_RIGHT, Maze.CAN_LEFT, Maze.CAN_UP, Maze.CAN_DOWN};
+    private static final int[] MOVE_X = {1, -1, 0, 0};
+    private static final int[] MOVE_Y = {0, 0, -1, 1};
 
     /**
      * Size of the problem. Default value is 10.
@@ -27,7 +51,7 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
      */
     public MazeProblemMF() {
         this.maze = new Maze(size, 0);
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     public MazeProblemMF(int size) {
@@ -38,13 +62,13 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
     public MazeProblemMF(int size, int seed) {
         this.size = size;
         this.maze = new Maze(size, seed);
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     public MazeProblemMF(Maze maze) {
         this.size = maze.size;
         this.maze = maze;
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     /**
@@ -53,7 +77,7 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
     private void generateInstance(int size, int seed) {
         this.size = size;
         this.maze = new Maze(size, seed);
-        initialState = new MazeState(maze.posHamster.x, maze.posHamster.y);
+        initialState = maze.stateOf(maze.posHamster.x, maze.posHamster.y);
     }
 
     /**
@@ -73,10 +97,7 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
         // COMPLETAR
         // 
         MazeState mazeState = (MazeState) state;
-        boolean cheese = mazeState.position.equals(this.maze.posCheese);
-        boolean cat = this.maze.posCats.contains(mazeState.position);
-
-        return cheese || cat;
+        return (maze.attributes(mazeState.X(), mazeState.Y()) & Maze.FINAL) != 0;
     }
 
     /**
@@ -95,7 +116,7 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
         possibleActions.add(MazeAction.DOWN);
         possibleActions.add(MazeAction.LEFT);
         
-        if ( this.maze.holeList.contains(mazeState.position) ) {
+        if ( (maze.attributes(mazeState.X(), mazeState.Y()) & Maze.CAN_DIVE) != 0 ) {
             possibleActions.add(MazeAction.DIVE);
         }
 
@@ -108,24 +129,13 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
      */
     @Override
     public double getReward(State state) {
-        double reward = 0;
-
         //
         // COMPLETAR
         // 
         
+        // 100 for the cheese, -100 for cats, 0 otherwise.
         MazeState mazeState = (MazeState) state;
-        boolean cheese = mazeState.position.equals(this.maze.posCheese);
-        boolean cat    = this.maze.posCats.contains(mazeState.position);
-        
-        if ( cheese ) {
-            return  100.0;
-        } else if ( cat ) {
-            return -100.0;
-        }
-        
-        // Otherwise returns 0
-        return 0;
+        return maze.reward(mazeState.X(), mazeState.Y());
     }
 
     /**
@@ -157,7 +167,7 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
         double recompensa = -1*distancia;
 
         // Si el estado actual es agua, la recompensa se duplica
-        if (maze.cells[fromX][fromY]==Maze.WATER)
+        if ((maze.attributes(fromX, fromY) & Maze.HAS_WATER) != 0)
                 recompensa = recompensa*2;
 
         // Si es un tunel y la acción es DIVE, la recompensa es la mitad
@@ -169,116 +179,46 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
     }
 
     /**
-     * Generates the transition model for a certain state in this particular
-     * problem. This method is PRIVATE.
+     * Index of the state reached applying an action (ordinal) to a state (index). Diving
+     * reaches uniformly any other hole. Movements go in the direction of the action with
+     * probability 0.7, and in each one of the other three directions with probability
+     * 0.1. Moving against a wall, or diving without other holes, stays in the cell.
      */
-    private StateActionTransModel mazeTransitionModel(State state, Action action) {
-        // Structures contained by the transition model.
-        State[] reachable;
-        double[] probs;
-
-        // Coordinates of the current state
-        int fromX, fromY;
-        fromX = ((MazeState) state).X();
-        fromY = ((MazeState) state).Y();
-
-        /* First considers diving. */
-        if (action == MazeAction.DIVE) {
-            // It must be a hole. Gets the outputs.
-            Position inputHolePos = new Position(fromX, fromY);
-            // It considers all holes but one
-            reachable = new State[maze.numHoles - 1];
-            probs = new double[maze.numHoles - 1];
-            int holeNum = 0;
-            for (Position holePos : maze.holeList) {
-                if (holePos.equals(inputHolePos)) {
-                    continue;
-                }
-                reachable[holeNum] = new MazeState(holePos);
-                probs[holeNum++] = 1.0 / (maze.numHoles - 1);
-            }
-            // Returns 
-            return new StateActionTransModel(reachable, probs);
-        }
-
-        // Creates the transition model.
-        reachable = new State[4];
-        probs = new double[4];
-
-        // Probability of error 0.1 times each position.
-        double probError = 0.1;
-        double probSuccess = 1.0 - probError * (4 - 1);
-
-        int ind = 0;
-        //
-        // Cell X,Y-1
-        //
-        // Probability
-        if (action == MazeAction.UP) {
-            probs[ind] = probSuccess;
-        } else {
-            probs[ind] = probError;
-        }
-        // Reached state
-        if ((fromY > 0) && (maze.cells[fromX][fromY - 1] != Maze.WALL)) {
-            reachable[ind] = new MazeState(fromX, fromY - 1); // Can move
-        } else {
-            reachable[ind] = new MazeState(fromX, fromY); // Can't move
-        }
-
-        ind++;
-        //
-        // Cell X,Y+1
-        //
-        // Probability
-        if (action == MazeAction.DOWN) {
-            probs[ind] = probSuccess;
-        } else {
-            probs[ind] = probError;
-        }
-        // Reached state
-        if ((fromY < maze.size - 1) && (maze.cells[fromX][fromY + 1] != Maze.WALL)) {
-            reachable[ind] = new MazeState(fromX, fromY + 1); // Can move
-        } else {
-            reachable[ind] = new MazeState(fromX, fromY); // Can't move
-        }
-
-        ind++;
-        //
-        // Cell X-1,Y
-        //
-        // Probability
-        if (action == MazeAction.LEFT) {
-            probs[ind] = probSuccess;
-        } else {
-            probs[ind] = probError;
-        }
-        // Reached state
-        if ((fromX > 0) && (maze.cells[fromX - 1][fromY] != Maze.WALL)) {
-            reachable[ind] = new MazeState(fromX - 1, fromY); // Can move
-        } else {
-            reachable[ind] = new MazeState(fromX, fromY); // Can't move
-        }
-
-        ind++;
-        //
-        // Cell X,Y+1
-        //
-        // Probability
-        if (action == MazeAction.RIGHT) {
-            probs[ind] = probSuccess;
-        } else {
-            probs[ind] = probError;
-        }
-        // Reached state
-        if ((fromX < maze.size - 1) && (maze.cells[fromX + 1][fromY] != Maze.WALL)) {
-            reachable[ind] = new MazeState(fromX + 1, fromY); // Can move
-        } else {
-            reachable[ind] = new MazeState(fromX, fromY); // Can't move
+    private int nextIndex(int index, int action, RandomSource random) {
+        int cell = maze.indexCell[index];
+        if (action == DIVE_ORDINAL) {
+            if ((maze.cellAttributes[cell] & Maze.CAN_DIVE) == 0)
+                return index;
+            int hole = random.nextInt(maze.holeCells.length - 1);
+            if (hole >= maze.holeIndex[cell])
+                hole++;
+            return maze.holeCells[hole];
         }
+        // 0..6 keeps the direction of the action, 7..9 takes one of the other three.
+        int other = random.nextInt(10) - 7;
+        int movement = other < 0 ? action : (other < action ? other : other + 1);
+        if ((maze.cellAttributes[cell] & CAN_MOVE[movement]) == 0)
+            return index;
+        return maze.cellIndex[cell + MOVE_X[movement] * maze.size + MOVE_Y[movement]];
+    }
 
-        // Returns 
-        return new StateActionTransModel(reachable, probs);
+    /**
+     * Same as getTransitionReward, with the states as indices and the action as ordinal.
+     */
+    private double transitionReward(int index, int action, int next) {
+        if (next == index)
+            return 0;
+        int from = maze.indexCell[index];
+        double reward;
+        if (action == DIVE_ORDINAL) {
+            int to = maze.indexCell[next];
+            int distX = to / maze.size - from / maze.size, distY = to % maze.size - from % maze.size;
+            reward = -0.5 * Math.sqrt(distX * distX + distY * distY);
+        } else
+            reward = -1;
+        if ((maze.cellAttributes[from] & Maze.HAS_WATER) != 0)
+            reward = reward * 2;
+        return reward;
     }
 
     // From MFLearningModel
@@ -304,8 +244,101 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
         // COMPLETAR
         // 
         
-        StateActionTransModel model = mazeTransitionModel(state, action);
-        return model.genNextState();
+        MazeState mazeState = (MazeState) state;
+        int index = maze.indexOf(mazeState.X(), mazeState.Y());
+        return maze.freeStates[nextIndex(index, ((MazeAction) action).ordinal(), random())];
+    }
+
+    // From BatchEnvironment
+    /**
+     * Moves the agents directly over the cells of the maze.
+     */
+    @Override
+    public void step(int numAgents, int[] states, int[] actions, int[] nextStates, double[] rewards, boolean[] done,
+            int resetState, RandomSource random) {
+        for (int agent = 0; agent < numAgents; agent++) {
+            int index = states[agent];
+            int next = nextIndex(index, actions[agent], random);
+            int cell = maze.indexCell[next];
+            nextStates[agent] = next;
+            rewards[agent] = maze.cellReward(cell) + transitionReward(index, actions[agent], next);
+            done[agent] = (maze.cellAttributes[cell] & Maze.FINAL) != 0;
+            if (!done[agent])
+                states[agent] = next;
+            else
+                states[agent] = resetState >= 0 ? resetState : randomStateIndex(random);
+        }
+    }
+
+    /**
+     * Index of a random state (see getRandomState).
+     */
+    @Override
+    public int randomStateIndex(RandomSource random) {
+        return maze.startCell(random);
+    }
+
+    // From IndexedProblem
+    /**
+     * Number of states (cells which are not walls).
+     */
+    @Override
+    public int numStates() {
+        return maze.numFreeCells;
+    }
+
+    /**
+     * Index of the state. Cells are numbered X first, then Y.
+     */
+    @Override
+    public int stateIndex(State state) {
+        MazeState mazeState = (MazeState) state;
+        return maze.indexOf(mazeState.X(), mazeState.Y());
+    }
+
+    /**
+     * State corresponding to an index.
+     */
+    @Override
+    public State stateAt(int index) {
+        return maze.freeStates[index];
+    }
+
+    /**
+     * Number of actions.
+     */
+    @Override
+    public int numActions() {
+        return ACTIONS.length;
+    }
+
+    /**
+     * Ordinal of the action.
+     */
+    @Override
+    public int actionIndex(Action action) {
+        return ((MazeAction) action).ordinal();
+    }
+
+    /**
+     * Action corresponding to an ordinal.
+     */
+    @Override
+    public Action actionAt(int index) {
+        return ACTIONS[index];
+    }
+
+    /**
+     * Mask of the possible actions: the four movements, and diving in holes (if there is
+     * another one).
+     */
+    @Override
+    public int actionMask(State state) {
+        MazeState mazeState = (MazeState) state;
+        int mask = MOVEMENTS_MASK;
+        if ((maze.attributes(mazeState.X(), mazeState.Y()) & Maze.CAN_DIVE) != 0)
+            mask |= 1 << MazeAction.DIVE.ordinal();
+        return mask;
     }
 
     // Utilities
@@ -314,33 +347,9 @@ public class MazeProblemMF extends MFLearningProblem implements MazeProblem, Pro
      */
     @Override
     public State getRandomState() {
-        // Returns only positions corresponding to empty cells.
-        int posX, posY;
-        boolean validCell = false;
-        do {
-            posX = Utils.random.nextInt(size);
-            posY = Utils.random.nextInt(size);
-            // Walls are not valid states. 
-            if (maze.cells[posX][posY] == Maze.WALL) {
-                continue;
-            }
-            // Sometimes (not very often) there are empty cells surrounded
-            // by walls or by the limit of the maze.  Test that there is at least
-            // an adjacent position to move.
-            if (posX > 0 && maze.cells[posX - 1][posY] == Maze.EMPTY) {
-                validCell = true;
-            }
-            if (posX < maze.size - 1 && maze.cells[posX + 1][posY] == Maze.EMPTY) {
-                validCell = true;
-            }
-            if (posY > 0 && maze.cells[posX][posY - 1] == Maze.EMPTY) {
-                validCell = true;
-            }
-            if (posY > maze.size - 1 && maze.cells[posX][posY + 1] == Maze.EMPTY) {
-                validCell = true;
-            }
-        } while (!validCell);
-        return new MazeState(posX, posY);
+        // Returns only positions corresponding to empty cells with at least an adjacent
+        // empty cell (precalculated by the maze), so the sampling is uniform over them.
+        return maze.freeStates[maze.startCell(random())];
     }
 
     /**
@@ -4,17 +4,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 
-import utils.Utils;
-
 import learning.State;
 import learning.Action;
 import learning.StateActionTransModel;
 import learning.MDPLearningProblem;
+import learning.IndexedProblem;
 
 /** 
  * Implements the Markov decision process used in class (slides) for the examples. 
  */
-public class MDPExProblem extends MDPLearningProblem {
+public class MDPExProblem extends MDPLearningProblem implements IndexedProblem {
 
 	// These data structures are internal for the problem, and should never be
 	// accessed by the algorithms.
@@ -22,6 +21,9 @@ public class MDPExProblem extends MDPLearningProblem {
 	/* States */
 	private State[] states;
 	
+	/* Actions, indexed by their ordinal */
+	private static final MDPExAction[] actions = MDPExAction.values();
+	
 	/* The model is internally represented with 3-tuples storing the transition probabilities */
 	private double probs[][][]; // fromState, action, toState
 	
@@ -103,7 +105,7 @@ public class MDPExProblem extends MDPLearningProblem {
 
 	/** Returns the random state .*/
 	@Override
-	public State getRandomState() { return states[Utils.random.nextInt(4)]; }
+	public State getRandomState() { return states[random().nextInt(4)]; }
 
 	// Methods from MDPLearningProblem
 	
@@ -139,4 +141,43 @@ public class MDPExProblem extends MDPLearningProblem {
 		// Returns the transition model.
 		return new StateActionTransModel(reachable, probsReachable);
 	}
+	
+	// Methods from IndexedProblem
+	
+	/** Returns the number of states */
+	@Override
+	public int numStates() { return states.length; }
+	
+	/** The index of a state is its id */
+	@Override
+	public int stateIndex(State state) { return ((MDPExState)state).id(); }
+	
+	/** Returns the state with a given id */
+	@Override
+	public State stateAt(int index) { return states[index]; }
+	
+	/** Returns the number of actions */
+	@Override
+	public int numActions() { return actions.length; }
+	
+	/** Returns the ordinal of an action */
+	@Override
+	public int actionIndex(Action action) { return ((MDPExAction)action).ordinal(); }
+	
+	/** Returns the action corresponding to an ordinal */
+	@Override
+	public Action actionAt(int index) { return actions[index]; }
+	
+	/** Returns the mask of the possible actions (see getPossibleActions) */
+	@Override
+	public int actionMask(State state) {
+		switch (((MDPExState)state).id()){
+			case 0:
+			case 1:
+				return (1<<MDPExAction.A0.ordinal()) | (1<<MDPExAction.A1.ordinal());
+			case 2:
+				return 1<<MDPExAction.A2.ordinal();
+		}
+		return 0;
+	}
 }
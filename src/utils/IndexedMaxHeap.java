@@ -0,0 +1,130 @@
+package utils;
+
+import java.util.Arrays;
+
+/** 
+ * Priority queue of integer items (0..capacity-1) ordered by decreasing priority. Each
+ * item can be in the queue only once, and its priority can be changed in O(log n), as 
+ * the position of each item in the heap is stored. Only arrays of primitive types are
+ * used, so no objects are created after the construction.
+ */
+public class IndexedMaxHeap {
+	
+	/* Items in the heap. */
+	private int[] heap;
+	
+	/* Position of each item in the heap, or -1 if it is not in the queue. */
+	private int[] position;
+	
+	/* Priority of each item. */
+	private double[] priority;
+	
+	/* Number of items in the queue. */
+	private int size = 0;
+	
+	/** Creates an empty queue for items from 0 to capacity-1. */
+	public IndexedMaxHeap(int capacity){
+		heap = new int[capacity];
+		position = new int[capacity];
+		priority = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+	
+	/** Whether the queue is empty. */
+	public boolean isEmpty(){ return size==0; }
+	
+	/** Number of items in the queue. */
+	public int size(){ return size; }
+	
+	/** Whether the item is in the queue. */
+	public boolean contains(int item){ return position[item]>=0; }
+	
+	/** Priority of an item in the queue. */
+	public double priority(int item){ return priority[item]; }
+	
+	/** Item with the maximum priority (the queue must not be empty). */
+	public int peek(){ return heap[0]; }
+	
+	/** Adds an item to the queue, or changes its priority if it is already there. */
+	public void set(int item, double newPriority){
+		if (position[item]<0){
+			heap[size] = item;
+			position[item] = size++;
+			priority[item] = newPriority;
+			siftUp(position[item]);
+		}
+		else{
+			double oldPriority = priority[item];
+			priority[item] = newPriority;
+			if (newPriority>oldPriority)
+				siftUp(position[item]);
+			else
+				siftDown(position[item]);
+		}
+	}
+	
+	/** Removes and returns the item with the maximum priority (the queue must not be empty). */
+	public int poll(){
+		int item = heap[0];
+		remove(item);
+		return item;
+	}
+	
+	/** Removes an item from the queue, if it is there. */
+	public void remove(int item){
+		int pos = position[item];
+		if (pos<0)
+			return;
+		position[item] = -1;
+		size--;
+		if (pos==size)
+			return;
+		// The last item takes the place of the removed one.
+		int last = heap[size];
+		heap[pos] = last;
+		position[last] = pos;
+		siftUp(pos);
+		siftDown(position[last]);
+	}
+	
+	/** Removes all the items. */
+	public void clear(){
+		for (int pos=0;pos<size;pos++)
+			position[heap[pos]] = -1;
+		size = 0;
+	}
+	
+	/* Moves up the item in a position while its priority is greater than its parent's. */
+	private void siftUp(int pos){
+		int item = heap[pos];
+		while (pos>0){
+			int parent = (pos-1) >>> 1;
+			if (priority[heap[parent]]>=priority[item])
+				break;
+			heap[pos] = heap[parent];
+			position[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = item;
+		position[item] = pos;
+	}
+	
+	/* Moves down the item in a position while its priority is lower than its children's. */
+	private void siftDown(int pos){
+		int item = heap[pos];
+		while (true){
+			int child = 2*pos+1;
+			if (child>=size)
+				break;
+			if (child+1<size && priority[heap[child+1]]>priority[heap[child]])
+				child++;
+			if (priority[heap[child]]<=priority[item])
+				break;
+			heap[pos] = heap[child];
+			position[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = item;
+		position[item] = pos;
+	}
+}
@@ -0,0 +1,63 @@
+package utils;
+
+/** 
+ * Source of random numbers used by problems and algorithms. Unlike java.util.Random, 
+ * sources are not meant to be shared by several threads: each thread (or each episode,
+ * worker, etc.) should use its own source, obtained with split(). Splitting is 
+ * deterministic, so all the streams derived from a source built with a given seed
+ * are reproducible.
+ * 
+ * Subclasses only need to generate 64 random bits (nextLong) and to split. The rest of
+ * the methods are derived from them, but can be overridden.
+ */
+public abstract class RandomSource {
+	
+	/** Returns 64 random bits. */
+	public abstract long nextLong();
+	
+	/** Returns a new source whose stream is independent from this one. */
+	public abstract RandomSource split();
+	
+	/** Returns 32 random bits. */
+	public int nextInt(){
+		return (int) (nextLong() >>> 32);
+	}
+	
+	/** Returns a uniform integer between 0 (inclusive) and bound (exclusive). */
+	public int nextInt(int bound){
+		if (bound<=0)
+			throw new IllegalArgumentException("bound must be positive");
+		int bits = nextInt() >>> 1;
+		int mask = bound-1;
+		// Powers of two take the highest bits.
+		if ((bound & mask)==0)
+			return (int) ((bound * (long) bits) >> 31);
+		// Otherwise, rejects the values that would bias the result.
+		int value;
+		for (value = bits % bound; bits - value + mask < 0; value = bits % bound)
+			bits = nextInt() >>> 1;
+		return value;
+	}
+	
+	/** Returns a uniform double between 0 (inclusive) and 1 (exclusive). */
+	public double nextDouble(){
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	/** Returns a uniform float between 0 (inclusive) and 1 (exclusive). */
+	public float nextFloat(){
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+	
+	/** Returns a random boolean. */
+	public boolean nextBoolean(){
+		return nextLong() < 0;
+	}
+	
+	/** SplitMix64 finalizer. Used to turn seeds into well distributed states. */
+	protected static long mix64(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,38 @@
+package utils;
+
+import java.util.SplittableRandom;
+
+/** Random source based on java.util.SplittableRandom. It is the default source. */
+public class SplittableRandomSource extends RandomSource {
+	
+	/* Generator. */
+	private final SplittableRandom generator;
+	
+	/** Creates a source with a given seed. */
+	public SplittableRandomSource(long seed){
+		generator = new SplittableRandom(seed);
+	}
+	
+	/** Creates a source from a generator. */
+	private SplittableRandomSource(SplittableRandom generator){
+		this.generator = generator;
+	}
+	
+	@Override
+	public long nextLong(){ return generator.nextLong(); }
+	
+	@Override
+	public RandomSource split(){ return new SplittableRandomSource(generator.split()); }
+	
+	@Override
+	public int nextInt(){ return generator.nextInt(); }
+	
+	@Override
+	public int nextInt(int bound){ return generator.nextInt(bound); }
+	
+	@Override
+	public double nextDouble(){ return generator.nextDouble(); }
+	
+	@Override
+	public boolean nextBoolean(){ return generator.nextBoolean(); }
+}
@@ -0,0 +1,79 @@
+package utils;
+
+import java.util.Arrays;
+
+/** 
+ * Non-negative weights of integer items (0..capacity-1), stored in a complete binary tree
+ * whose inner nodes hold the sum (and the minimum) of the weights below them. Changing a
+ * weight and finding the item at a point of the cumulative sum of the weights (sampling
+ * proportionally to the weights) take O(log n). Only arrays of primitive types are used.
+ * 
+ *     leaves            nodes leaves .. 2*leaves-1, item i in node leaves+i
+ *     children of n     nodes 2n and 2n+1 (node 1 is the root)
+ */
+public class SumTree {
+	
+	/* Number of leaves (power of two, at least the capacity). */
+	private final int leaves;
+	
+	/* Sum of the weights below each node. */
+	private final double[] sums;
+	
+	/* Minimum positive weight below each node (infinity if there is none). */
+	private final double[] mins;
+	
+	/** Creates a tree with all the weights at 0. */
+	public SumTree(int capacity){
+		int size = 1;
+		while (size<capacity)
+			size <<= 1;
+		leaves = size;
+		sums = new double[2*leaves];
+		mins = new double[2*leaves];
+		Arrays.fill(mins, Double.POSITIVE_INFINITY);
+	}
+	
+	/** Sets the weight of an item. */
+	public void set(int item, double weight){
+		int node = leaves+item;
+		sums[node] = weight;
+		mins[node] = weight>0 ? weight : Double.POSITIVE_INFINITY;
+		for (node>>=1; node>0; node>>=1){
+			sums[node] = sums[2*node] + sums[2*node+1];
+			mins[node] = Math.min(mins[2*node], mins[2*node+1]);
+		}
+	}
+	
+	/** Weight of an item. */
+	public double get(int item){ return sums[leaves+item]; }
+	
+	/** Sum of all the weights. */
+	public double total(){ return sums[1]; }
+	
+	/** Minimum positive weight (infinity if all of them are 0). */
+	public double min(){ return mins[1]; }
+	
+	/** 
+	 * Returns the item whose interval of the cumulative sum contains the value (between 0
+	 * and total()). Items with weight 0 are never returned while the total is positive.
+	 */
+	public int find(double value){
+		int node = 1;
+		while (node<leaves){
+			int left = 2*node;
+			if (value<sums[left] || sums[left+1]==0)
+				node = left;
+			else {
+				value -= sums[left];
+				node = left+1;
+			}
+		}
+		return node-leaves;
+	}
+	
+	/** Sets all the weights to 0. */
+	public void clear(){
+		Arrays.fill(sums, 0);
+		Arrays.fill(mins, Double.POSITIVE_INFINITY);
+	}
+}
@@ -5,7 +5,85 @@ import java.util.Random;
 /** Contains some utility objects and functions. */
 public class Utils{
 	
-	/** Random generator */
-	public static Random random = new Random();
+	/* Source from which the sources of the threads are split. */
+	private static RandomSource master = new SplittableRandomSource(System.nanoTime());
 	
+	/* Random source of each thread. By default, it is split from the master source. */
+	private static final ThreadLocal<RandomSource> threadRandom = new ThreadLocal<RandomSource>(){
+		@Override
+		protected RandomSource initialValue(){ return splitMaster(); }
+	};
+	
+	/** 
+	 * Old shared generator, kept so that the code written for it still compiles. It draws 
+	 * from the source of the current thread, and setSeed fixes the master seed (see setSeed).
+	 * @deprecated Use random(), or give the problem or algorithm its own source.
+	 */
+	@Deprecated
+	public static final Random random = new ThreadRandom();
+	
+	/** 
+	 * Returns the random source of the current thread. Problems and algorithms use it 
+	 * when they have not been given their own source.
+	 */
+	public static RandomSource random(){
+		return threadRandom.get();
+	}
+	
+	/** 
+	 * Sets the random source of the current thread, so that it has an independent (and
+	 * reproducible) stream of random numbers. Passing null restores the default source.
+	 */
+	public static void setRandom(RandomSource source){
+		if (source==null)
+			threadRandom.remove();
+		else
+			threadRandom.set(source);
+	}
+	
+	/** 
+	 * Fixes the master seed. The source of the current thread is reset, and the sources
+	 * of the threads created afterwards are split, in order, from the master source.
+	 */
+	public static synchronized void setSeed(long seed){
+		master = new SplittableRandomSource(seed);
+		threadRandom.set(master.split());
+	}
+	
+	/* Splits a source from the master source. */
+	private static synchronized RandomSource splitMaster(){
+		return master.split();
+	}
+	
+	/* Random whose bits come from the source of the current thread. */
+	private static class ThreadRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		
+		/* The constructor of Random sets a seed, which must not change the master seed. */
+		private boolean constructed;
+		
+		ThreadRandom(){
+			super(0);
+			constructed = true;
+		}
+		
+		@Override
+		protected int next(int bits){
+			return random().nextInt() >>> (32-bits);
+		}
+		
+		@Override
+		public synchronized void setSeed(long seed){
+			if (constructed)
+				Utils.setSeed(seed);
+		}
+	}
+	
+	/** Returns the position of the n-th bit set of the mask (counting from 0), or -1 if there is none. */
+	public static int nthSetBit(int mask, int n){
+		for (int rest=mask; rest!=0; rest&=rest-1)
+			if (n--==0)
+				return Integer.numberOfTrailingZeros(rest);
+		return -1;
+	}
 }
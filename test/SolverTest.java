@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import algorithms.mdp.ValueIteration;
+import learning.Policy;
+import learning.State;
+import problems.maze.MazeProblemMDP;
+import problems.maze.MazeProblemMF;
+
+class SolverTest {
+
+	private int numEvaluations, batchAgents;
+
+	@BeforeEach
+	void saveSettings(){
+		numEvaluations = Solver.numEvaluations;
+		batchAgents = Solver.batchAgents;
+	}
+
+	@AfterEach
+	void restoreSettings(){
+		Solver.numEvaluations = numEvaluations;
+		Solver.batchAgents = batchAgents;
+	}
+
+	/** Optimal policy of the maze, and the problem used to compute it. */
+	static Policy optimalPolicy(MazeProblemMDP problem){
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(new String[]{"0.0001", "compiled"});
+		return algorithm.learnPolicy(problem);
+	}
+
+	@Test
+	void evaluationIsRepeatableForASeed(){
+		Solver.numEvaluations = 2000;
+		Solver.batchAgents = 0;
+		MazeProblemMDP problem = new MazeProblemMDP(10, 3);
+		problem.setGamma(0.95);
+		Policy policy = optimalPolicy(problem);
+		for (int workers=1;workers<=4;workers*=2){
+			double utility = Solver.evalPolicy(problem, policy, 0.95, workers, 42);
+			assertEquals(utility, Solver.evalPolicy(problem, policy, 0.95, workers, 42));
+			assertNotEquals(utility, Solver.evalPolicy(problem, policy, 0.95, workers, 43));
+		}
+	}
+
+	@Test
+	void workersSplitTheSameEvaluations(){
+		Solver.numEvaluations = 20000;
+		Solver.batchAgents = 0;
+		MazeProblemMDP problem = new MazeProblemMDP(10, 3);
+		problem.setGamma(0.95);
+		Policy policy = optimalPolicy(problem);
+		double single = Solver.evalPolicy(problem, policy, 0.95, 1, 7);
+		double parallel = Solver.evalPolicy(problem, policy, 0.95, 3, 7);
+		assertEquals(single, parallel, 0.02*Math.abs(single));
+	}
+
+	@Test
+	void batchedAndScalarEvaluationsAgree(){
+		Solver.numEvaluations = 20000;
+		MazeProblemMDP model = new MazeProblemMDP(10, 3);
+		model.setGamma(0.95);
+		Policy policy = optimalPolicy(model);
+		MazeProblemMF problem = new MazeProblemMF(10, 3);
+		Solver.batchAgents = 0;
+		double scalar = Solver.evalPolicy(problem, policy, 0.95, 2, 11);
+		Solver.batchAgents = 64;
+		double batched = Solver.evalPolicy(problem, policy, 0.95, 2, 11);
+		assertEquals(batched, Solver.evalPolicy(problem, policy, 0.95, 2, 11));
+		assertEquals(scalar, batched, 0.02*Math.abs(scalar));
+		// Fewer executions than agents.
+		Solver.numEvaluations = 10;
+		assertFalse(Double.isNaN(Solver.evalPolicy(problem, policy, 0.95, 2, 11)));
+	}
+
+	@Test
+	void executionsEndInStatesWithoutAction(){
+		Solver.numEvaluations = 20000;
+		MazeProblemMDP model = new MazeProblemMDP(10, 3);
+		model.setGamma(0.95);
+		Policy optimal = optimalPolicy(model);
+		MazeProblemMF problem = new MazeProblemMF(10, 3);
+		double startReward = problem.getReward(problem.initialState());
+		// Without actions, every execution ends at the initial state.
+		for (int agents : new int[]{0, 64}){
+			Solver.batchAgents = agents;
+			assertEquals(startReward, Solver.evalPolicy(problem, new Policy(problem), 0.95, 2, 5));
+		}
+		// Only the initial state and some of the rest have an action.
+		Policy partial = new Policy(problem);
+		int stateIdx = 0;
+		for (State state : model.getAllStates())
+			if (stateIdx++%4!=0 || state.equals(problem.initialState()))
+				partial.setAction(state, optimal.getAction(state));
+		Solver.batchAgents = 0;
+		double scalar = Solver.evalPolicy(problem, partial, 0.95, 2, 5);
+		Solver.batchAgents = 64;
+		double batched = Solver.evalPolicy(problem, partial, 0.95, 2, 5);
+		assertNotEquals(Solver.evalPolicy(problem, optimal, 0.95, 2, 5), batched, 0.02*Math.abs(batched));
+		assertEquals(scalar, batched, 0.02*Math.abs(scalar)+0.01);
+	}
+}
@@ -0,0 +1,68 @@
+package algorithms.mdp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import learning.*;
+import problems.maze.MazeProblemMDP;
+
+class LRTDPTest {
+
+	@Test
+	void initialStateGetsTheOptimalUtility(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(25, seed);
+			problem.setGamma(0.95);
+			ValueIteration valueIteration = new ValueIteration();
+			valueIteration.setParams(new String[]{"0.00001", "compiled"});
+			Policy optimal = valueIteration.learnPolicy(problem);
+
+			LRTDP lrtdp = new LRTDP();
+			lrtdp.setParams(new String[]{"0.0001"});
+			Policy policy = lrtdp.learnPolicy(problem);
+
+			CompiledMDP model = new CompiledMDP(problem);
+			int initial = model.indexOf(problem.initialState());
+			double optimalUtility = PolicyValues.evaluate(model, optimal, problem.gamma)[initial];
+			assertEquals(optimalUtility, lrtdp.getUtility(problem.initialState()), 1e-3);
+			// The greedy policy is defined on every state it can reach.
+			assertEquals(optimalUtility, PolicyValues.evaluate(model, policy, problem.gamma)[initial], 1e-3);
+			assertTrue(lrtdp.getNumStates()<=model.numStates);
+		}
+	}
+
+	@Test
+	void statesThatCanNotBeReachedAreNotExpanded(){
+		// The cell (19,0) of this maze has no moves, so no trial can reach it.
+		MazeProblemMDP problem = new MazeProblemMDP(20, 2);
+		problem.setGamma(0.95);
+		LRTDP lrtdp = new LRTDP();
+		Policy policy = lrtdp.learnPolicy(problem);
+		for (State state : problem.getAllStates())
+			if (!problem.isFinal(state) && problem.getPossibleActions(state).isEmpty()){
+				assertTrue(Double.isNaN(lrtdp.getUtility(state)));
+				assertNull(policy.getAction(state));
+			}
+		assertTrue(lrtdp.getNumStates()<problem.getAllStates().size());
+		assertTrue(lrtdp.getTrials()>0);
+	}
+
+	@Test
+	@Timeout(value = 60, unit = TimeUnit.SECONDS)
+	void nonPositiveMaxDepthIsRejected(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		problem.setGamma(0.95);
+		LRTDP reference = new LRTDP();
+		reference.learnPolicy(problem);
+		for (String depth : new String[]{"0", "-1"}){
+			LRTDP lrtdp = new LRTDP();
+			lrtdp.setParams(new String[]{"0.01", "100", depth});
+			lrtdp.learnPolicy(problem);
+			assertEquals(reference.getUtility(problem.initialState()), lrtdp.getUtility(problem.initialState()), 0.1, depth);
+		}
+	}
+}
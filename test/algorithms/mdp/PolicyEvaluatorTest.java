@@ -0,0 +1,117 @@
+package algorithms.mdp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import learning.CompiledMDP;
+import problems.maze.MazeProblemMDP;
+import utils.SplittableRandomSource;
+
+class PolicyEvaluatorTest {
+
+    private static final String[] NAMES = {"jacobi", "sor", "bicgstab"};
+
+    /** Random row for each state, or -1 if it has none. */
+    private static int[] randomPolicy(CompiledMDP model, long seed){
+        SplittableRandomSource random = new SplittableRandomSource(seed);
+        int[] policyRows = new int[model.numStates];
+        for (int state = 0; state < model.numStates; state++){
+            int numRows = model.stateRows[state+1] - model.stateRows[state];
+            policyRows[state] = numRows == 0 ? -1 : model.stateRows[state] + random.nextInt(numRows);
+        }
+        return policyRows;
+    }
+
+    @Test
+    void evaluatorsReachTheToleranceAndAgree(){
+        for (int seed = 1; seed <= 3; seed++){
+            MazeProblemMDP problem = new MazeProblemMDP(30, seed);
+            CompiledMDP model = new CompiledMDP(problem);
+            int[] policyRows = randomPolicy(model, seed);
+            double[] reference = null;
+            for (String name : NAMES){
+                PolicyEvaluator evaluator = PolicyEvaluator.forName(name);
+                evaluator.setTolerance(1e-8);
+                double[] utilities = new double[model.numStates];
+                double residual = evaluator.evaluate(model, policyRows, 0.95, utilities, 1000000);
+                assertTrue(residual <= 1e-8, name);
+                assertEquals(residual, evaluator.getResidual());
+                assertTrue(evaluator.residual(utilities) <= 1e-8, name);
+                if (reference == null)
+                    reference = utilities;
+                else
+                    // The error of each solution is at most its residual/(1-γ).
+                    assertArrayEquals(reference, utilities, 2*1e-8/(1-0.95), name);
+            }
+        }
+    }
+
+    @Test
+    void evaluationsStartFromTheUtilitiesReceived(){
+        MazeProblemMDP problem = new MazeProblemMDP(30, 4);
+        CompiledMDP model = new CompiledMDP(problem);
+        int[] policyRows = randomPolicy(model, 4);
+        for (String name : NAMES){
+            PolicyEvaluator evaluator = PolicyEvaluator.forName(name);
+            double[] utilities = new double[model.numStates];
+            evaluator.evaluate(model, policyRows, 0.95, utilities, 1000000);
+            int coldIterations = evaluator.getIterations();
+            evaluator.evaluate(model, policyRows, 0.95, utilities, 1000000);
+            assertTrue(evaluator.getIterations() <= 1 && coldIterations > 1, name);
+        }
+    }
+
+    @Test
+    void evaluationsStopAfterTheMaximumIterations(){
+        MazeProblemMDP problem = new MazeProblemMDP(30, 5);
+        CompiledMDP model = new CompiledMDP(problem);
+        int[] policyRows = randomPolicy(model, 5);
+        for (String name : NAMES){
+            PolicyEvaluator evaluator = PolicyEvaluator.forName(name);
+            evaluator.setTolerance(0);
+            double[] utilities = new double[model.numStates];
+            double residual = evaluator.evaluate(model, policyRows, 0.99, utilities, 3);
+            assertTrue(evaluator.getIterations() <= 3, name);
+            assertTrue(residual > 0 && !Double.isNaN(residual), name);
+        }
+        assertNull(PolicyEvaluator.forName("cholesky"));
+    }
+
+    @Test
+    void evaluatorsSolveSystemsWithoutTransitions(){
+        // Every utility is fixed to the reward, so BiCGSTAB finds the exact solution and
+        // its next step would divide by zero.
+        MazeProblemMDP problem = new MazeProblemMDP(15, 6);
+        CompiledMDP model = new CompiledMDP(problem);
+        int[] policyRows = new int[model.numStates];
+        Arrays.fill(policyRows, -1);
+        for (String name : NAMES){
+            PolicyEvaluator evaluator = PolicyEvaluator.forName(name);
+            double[] utilities = new double[model.numStates];
+            evaluator.evaluate(model, policyRows, 0.95, utilities, 1000);
+            assertArrayEquals(model.reward, utilities, 1e-9, name);
+        }
+    }
+
+    @Test
+    void backupsCountTheProductsOfEachEvaluator(){
+        MazeProblemMDP problem = new MazeProblemMDP(30, 7);
+        CompiledMDP model = new CompiledMDP(problem);
+        int[] policyRows = randomPolicy(model, 7);
+        for (String name : NAMES){
+            PolicyEvaluator evaluator = PolicyEvaluator.forName(name);
+            evaluator.setTolerance(1e-8);
+            evaluator.evaluate(model, policyRows, 0.95, new double[model.numStates], 1000000);
+            long sweeps = evaluator.getBackups()/model.numStates;
+            assertEquals(0, evaluator.getBackups()%model.numStates, name);
+            if (name.equals("bicgstab"))
+                // Two products per iteration, plus the initial and the final residuals.
+                assertTrue(sweeps >= 2*evaluator.getIterations() && sweeps <= 2*evaluator.getIterations()+2, name);
+            else
+                assertEquals(evaluator.getIterations(), sweeps, name);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package algorithms.mdp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import learning.*;
+import problems.maze.MazeProblemMDP;
+
+class PolicyIterationTest {
+
+	private static Policy solve(MDPLearningProblem problem, String... params){
+		PolicyIteration algorithm = new PolicyIteration();
+		algorithm.setParams(params);
+		return algorithm.learnPolicy(problem);
+	}
+
+	private static Policy valueIteration(MDPLearningProblem problem){
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(new String[]{"0.0001", "compiled"});
+		return algorithm.learnPolicy(problem);
+	}
+
+	@Test
+	void compiledAndHashAgreeOnTheExampleProblem(){
+		problems.mdpexample2.MDPExProblem problem = new problems.mdpexample2.MDPExProblem();
+		problem.setGamma(0.9);
+		Policy hash = solve(problem, "0.001", "hash");
+		assertEquals(hash, solve(problem, "0.001", "compiled"));
+		assertEquals(hash, valueIteration(problem));
+	}
+
+	@Test
+	void compiledAndHashAgreeOnSeededMazes(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(20, seed);
+			problem.setGamma(0.9);
+			Policy reference = valueIteration(problem);
+			Policy hash = solve(problem, "0.01", "hash");
+			Policy compiled = solve(problem, "0.01", "compiled");
+			// Final states have no action, the rest have one.
+			assertEquals(reference.size(), hash.size());
+			assertEquals(reference.size(), compiled.size());
+			assertEquals(0, PolicyValues.maxDifference(problem, reference, hash), 1e-2);
+			assertEquals(0, PolicyValues.maxDifference(problem, reference, compiled), 1e-2);
+		}
+	}
+
+	@Test
+	void modifiedPolicyIterationAgreesForAnyNumberOfSweeps(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(20, seed);
+			problem.setGamma(0.9);
+			Policy reference = valueIteration(problem);
+			for (String sweeps : new String[]{"1", "5", "50"}){
+				Policy modified = solve(problem, "0.001", "modified", sweeps);
+				assertEquals(reference.size(), modified.size());
+				assertEquals(0, PolicyValues.maxDifference(problem, reference, modified), 1e-2, sweeps);
+			}
+		}
+	}
+
+	@Test
+	@Timeout(value = 60, unit = TimeUnit.SECONDS)
+	void nonPositiveEvaluationSweepsAreRejected(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		problem.setGamma(0.9);
+		Policy reference = valueIteration(problem);
+		for (String sweeps : new String[]{"0", "-3"}){
+			Policy modified = solve(problem, "0.001", "modified", sweeps);
+			assertEquals(0, PolicyValues.maxDifference(problem, reference, modified), 1e-2, sweeps);
+		}
+	}
+
+	/** Evaluator that diverges after a few sweeps. */
+	private static class DivergingEvaluator extends JacobiEvaluator {
+		int evaluations;
+
+		@Override
+		protected double solve(double[] utilities, int maxIterations){
+			evaluations++;
+			super.solve(utilities, Math.min(maxIterations, 2));
+			utilities[0] = Double.NaN;
+			return Double.NaN;
+		}
+	}
+
+	@Test
+	void divergingEvaluationsAreRepeatedWithJacobi(){
+		MazeProblemMDP problem = new MazeProblemMDP(20, 1);
+		problem.setGamma(0.9);
+		Policy reference = valueIteration(problem);
+		for (String mode : new String[]{"compiled", "modified"}){
+			DivergingEvaluator evaluator = new DivergingEvaluator();
+			PolicyIteration algorithm = new PolicyIteration();
+			algorithm.setParams(new String[]{"0.001", mode});
+			algorithm.setEvaluator(evaluator);
+			Policy policy = algorithm.learnPolicy(problem);
+			assertEquals(1, evaluator.evaluations, mode);
+			assertFalse(Double.isNaN(algorithm.getResidual()), mode);
+			assertEquals(reference.size(), policy.size(), mode);
+			assertEquals(0, PolicyValues.maxDifference(problem, reference, policy), 1e-2, mode);
+		}
+	}
+
+	@Test
+	void finalStatesHaveNoAction(){
+		MazeProblemMDP problem = new MazeProblemMDP(20, 2);
+		problem.setGamma(0.9);
+		Policy policy = solve(problem, "0.01", "compiled");
+		for (State state: problem.getSolverStates())
+			if (problem.isFinal(state))
+				assertNull(policy.getAction(state));
+	}
+
+	@Test
+	@Timeout(value = 300, unit = TimeUnit.SECONDS)
+	void everyCompiledModeTerminatesOnLargeMazes(){
+		String[][] modes = {{"compiled", "5", "jacobi"}, {"compiled", "5", "sor"}, {"compiled", "5", "bicgstab"}, 
+				{"modified", "5", "jacobi"}, {"modified", "5", "sor"}, {"modified", "5", "bicgstab"}};
+		for (int seed=1;seed<=2;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(200, seed);
+			problem.setGamma(0.9);
+			Policy reference = null;
+			for (String[] mode: modes){
+				Policy policy = solve(problem, "0.01", mode[0], mode[1], mode[2]);
+				if (reference==null)
+					reference = valueIteration(problem);
+				assertEquals(reference.size(), policy.size(), mode[0]+" "+mode[2]);
+				assertEquals(0, PolicyValues.maxDifference(problem, reference, policy), 1e-2, mode[0]+" "+mode[2]);
+			}
+		}
+	}
+}
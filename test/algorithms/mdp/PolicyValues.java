@@ -0,0 +1,35 @@
+package algorithms.mdp;
+
+import learning.*;
+
+/** Exact utilities of policies, used to compare the policies of different algorithms. */
+class PolicyValues {
+
+	/** Utilities of the policy in each state of the model, with a residual of 1e-10. */
+	static double[] evaluate(CompiledMDP model, Policy policy, double gamma){
+		int[] policyRows = new int[model.numStates];
+		for (int state=0;state<model.numStates;state++){
+			policyRows[state] = -1;
+			Action action = model.isFinal[state] ? null : policy.getAction(model.states[state]);
+			for (int row=model.stateRows[state];row<model.stateRows[state+1];row++)
+				if (model.rowAction[row]==action)
+					policyRows[state] = row;
+		}
+		double[] utilities = new double[model.numStates];
+		SOREvaluator evaluator = new SOREvaluator();
+		evaluator.setTolerance(1e-10);
+		evaluator.evaluate(model, policyRows, gamma, utilities, 1000000);
+		return utilities;
+	}
+
+	/** Largest difference between the utilities of two policies of the problem. */
+	static double maxDifference(MDPLearningProblem problem, Policy policy, Policy other){
+		CompiledMDP model = new CompiledMDP(problem);
+		double[] utilities = evaluate(model, policy, problem.gamma);
+		double[] otherUtilities = evaluate(model, other, problem.gamma);
+		double max = 0;
+		for (int state=0;state<model.numStates;state++)
+			max = Math.max(max, Math.abs(utilities[state]-otherUtilities[state]));
+		return max;
+	}
+}
@@ -0,0 +1,90 @@
+package algorithms.mdp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import learning.*;
+import problems.maze.Maze;
+import problems.maze.MazeAction;
+import problems.maze.MazeProblemMDP;
+
+class ValueIterationTest {
+
+	static Policy solve(MDPLearningProblem problem, String... params){
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(params);
+		return algorithm.learnPolicy(problem);
+	}
+
+	@Test
+	void compiledAndHashAgreeOnTheExampleProblem(){
+		problems.mdpexample2.MDPExProblem problem = new problems.mdpexample2.MDPExProblem();
+		problem.setGamma(0.9);
+		assertEquals(solve(problem, "0.001", "hash"), solve(problem, "0.001", "compiled"));
+	}
+
+	@Test
+	void compiledAndHashAgreeOnSeededMazes(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(20, seed);
+			problem.setGamma(0.95);
+			Policy hash = solve(problem, "0.001", "hash");
+			Policy compiled = solve(problem, "0.001", "compiled");
+			assertEquals(hash.size(), compiled.size());
+			assertEquals(0, PolicyValues.maxDifference(problem, hash, compiled), 1e-3);
+		}
+	}
+
+	@Test
+	void compiledAndHashBreakTiesInTheSameWay(){
+		// The middle of the corridor is as far from both cats, so LEFT and RIGHT tie, and
+		// LEFT comes first in getPossibleActions.
+		Maze maze = new Maze(new String[]{"*****", "*****", "c   c", "*****", "****h"}, 2, 2);
+		MazeProblemMDP problem = new MazeProblemMDP(maze);
+		problem.setGamma(0.9);
+		Policy hash = solve(problem, "0.001", "hash");
+		assertSame(MazeAction.LEFT, hash.getAction(maze.stateOf(2, 2)));
+		assertEquals(hash, solve(problem, "0.001", "compiled"));
+		assertEquals(hash, solve(problem, "0.001", "parallel"));
+		PolicyIteration policyIteration = new PolicyIteration();
+		assertEquals(hash, policyIteration.learnPolicy(problem));
+	}
+
+	@Test
+	void parallelSweepsGiveTheCompiledSolution(){
+		MazeProblemMDP problem = new MazeProblemMDP(30, 6);
+		problem.setGamma(0.95);
+		ValueIteration compiled = new ValueIteration();
+		compiled.setParams(new String[]{"0.001", "compiled"});
+		Policy expected = compiled.learnPolicy(problem);
+		// Zero threads falls back to the number of processors.
+		for (String threads : new String[]{"1", "3", "8", "0"}){
+			ValueIteration parallel = new ValueIteration();
+			parallel.setParams(new String[]{"0.001", "parallel", threads});
+			assertEquals(expected, parallel.learnPolicy(problem));
+			assertEquals(compiled.getBackups(), parallel.getBackups());
+		}
+	}
+
+	@Test
+	void inPlaceModesAgreeWithTheCompiledSolution(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(25, seed);
+			problem.setGamma(0.95);
+			Policy compiled = solve(problem, "0.0001", "compiled");
+			for (String mode : new String[]{"gauss_seidel", "prioritized"})
+				assertEquals(0, PolicyValues.maxDifference(problem, compiled, solve(problem, "0.0001", mode)), 1e-3, mode);
+		}
+	}
+
+	@Test
+	void topologicalModeAgreesWithTheCompiledSolution(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(25, seed);
+			problem.setGamma(0.95);
+			Policy compiled = solve(problem, "0.0001", "compiled");
+			assertEquals(0, PolicyValues.maxDifference(problem, compiled, solve(problem, "0.0001", "topological")), 1e-3);
+		}
+	}
+}
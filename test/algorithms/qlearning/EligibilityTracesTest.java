@@ -0,0 +1,87 @@
+package algorithms.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import utils.SplittableRandomSource;
+
+class EligibilityTracesTest {
+
+    /** Checks that the active traces are exactly the positive entries of the dense traces. */
+    private static void assertSameTraces(double[] expected, EligibilityTraces traces){
+        boolean[] seen = new boolean[expected.length];
+        int active = 0;
+        for (double trace : expected)
+            if (trace > 0)
+                active++;
+        assertEquals(active, traces.size());
+        for (int position = 0; position < traces.size(); position++){
+            int pair = traces.pair(position);
+            assertFalse(seen[pair]);
+            seen[pair] = true;
+            assertEquals(expected[pair], traces.trace(position), 1e-12);
+        }
+    }
+
+    @Test
+    void decaysAndRemovesTheTracesBelowTheThreshold(){
+        EligibilityTraces traces = new EligibilityTraces(10);
+        traces.visit(3);
+        traces.decay(0.5, 0.2);
+        traces.visit(7);
+        traces.decay(0.5, 0.2);
+        traces.visit(3);
+        // 3 was visited again (replacing trace), 7 has decayed once.
+        assertSameTraces(new double[]{0, 0, 0, 1, 0, 0, 0, 0.5, 0, 0}, traces);
+        traces.decay(0.5, 0.2);
+        traces.decay(0.5, 0.2);
+        // 7 falls to 0.125 and is removed; 3 keeps 0.25.
+        assertSameTraces(new double[]{0, 0, 0, 0.25, 0, 0, 0, 0, 0, 0}, traces);
+        traces.clear();
+        assertEquals(0, traces.size());
+        traces.visit(7);
+        assertSameTraces(new double[]{0, 0, 0, 0, 0, 0, 0, 1, 0, 0}, traces);
+    }
+
+    @Test
+    void matchesDenseTracesAfterRandomOperations(){
+        SplittableRandomSource random = new SplittableRandomSource(8);
+        int numPairs = 200;
+        EligibilityTraces traces = new EligibilityTraces(numPairs);
+        double[] expected = new double[numPairs];
+        for (int step = 0; step < 20000; step++){
+            int operation = random.nextInt(20);
+            if (operation == 0){
+                traces.clear();
+                expected = new double[numPairs];
+            }
+            else if (operation < 12){
+                int pair = random.nextInt(numPairs);
+                traces.visit(pair);
+                expected[pair] = 1.0;
+            }
+            else {
+                double factor = 0.5+random.nextDouble()*0.5;
+                traces.decay(factor, 0.01);
+                for (int pair = 0; pair < numPairs; pair++){
+                    expected[pair] *= factor;
+                    if (expected[pair] < 0.01)
+                        expected[pair] = 0;
+                }
+            }
+            assertSameTraces(expected, traces);
+        }
+    }
+
+    @Test
+    void theThresholdBoundsTheActiveTraces(){
+        // With decay 0.9 and threshold 0.01, a trace lasts at most 44 decays.
+        EligibilityTraces traces = new EligibilityTraces(1000);
+        for (int step = 0; step < 1000; step++){
+            traces.visit(step);
+            traces.decay(0.9, 0.01);
+            assertTrue(traces.size() <= 44);
+        }
+    }
+}
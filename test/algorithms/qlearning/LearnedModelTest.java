@@ -0,0 +1,73 @@
+package algorithms.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+import utils.SplittableRandomSource;
+
+class LearnedModelTest {
+
+    @Test
+    void targetsAverageTheObservedOutcomes(){
+        WideProblem problem = new WideProblem(10);
+        QTable qTable = new QTable(problem);
+        for (int state = 0; state < 10; state++)
+            qTable.setQValue(state, 0, state);
+        LearnedModel model = new LearnedModel(10, WideProblem.NUM_ACTIONS);
+        // The pair (2,5) reaches 3 twice, 4 once and the final state 9 once.
+        model.add(2, 5, 1.0, 3, false);
+        model.add(2, 5, 2.0, 4, false);
+        model.add(2, 5, 1.0, 3, false);
+        model.add(2, 5, 100.0, 9, true);
+        int pair = 2*WideProblem.NUM_ACTIONS+5;
+        assertEquals(2, model.stateOf(pair));
+        assertEquals(5, model.actionOf(pair));
+        // Final states do not add their Q values.
+        double expected = (1.0+2.0+1.0+100.0)/4 + 0.9*(2*3.0+4.0)/4;
+        assertEquals(expected, model.target(pair, qTable, 0.9), 1e-12);
+    }
+
+    @Test
+    void visitedPairsAreListedOnceInOrder(){
+        LearnedModel model = new LearnedModel(10, 4);
+        int[][] transitions = {{1, 2}, {3, 0}, {1, 2}, {7, 3}, {3, 0}, {0, 0}};
+        for (int[] transition : transitions)
+            model.add(transition[0], transition[1], 0, 5, false);
+        int[] expected = {1*4+2, 3*4+0, 7*4+3, 0};
+        assertEquals(expected.length, model.numVisited());
+        for (int n = 0; n < expected.length; n++)
+            assertEquals(expected[n], model.visitedPair(n));
+        assertEquals(40, model.numPairs());
+    }
+
+    @Test
+    void predecessorsListEveryPairReachingTheState(){
+        SplittableRandomSource random = new SplittableRandomSource(6);
+        int numStates = 50, numActions = 4;
+        LearnedModel model = new LearnedModel(numStates, numActions);
+        HashSet<Integer>[] expected = newSets(numStates);
+        // More outcomes than the initial capacity of the arrays.
+        for (int transition = 0; transition < 20000; transition++){
+            int state = random.nextInt(numStates), action = random.nextInt(numActions), next = random.nextInt(numStates);
+            model.add(state, action, 0, next, false);
+            expected[next].add(state*numActions+action);
+        }
+        for (int state = 0; state < numStates; state++){
+            HashSet<Integer> found = new HashSet<Integer>();
+            for (int outcome = model.firstPredecessor(state); outcome >= 0; outcome = model.nextPredecessor(outcome))
+                assertTrue(found.add(model.pairOf(outcome)));
+            assertEquals(expected[state], found);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HashSet<Integer>[] newSets(int size){
+        HashSet<Integer>[] sets = new HashSet[size];
+        for (int set = 0; set < size; set++)
+            sets[set] = new HashSet<Integer>();
+        return sets;
+    }
+}
@@ -0,0 +1,60 @@
+package algorithms.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import utils.SplittableRandomSource;
+
+class PrioritizedReplayBufferTest {
+
+    @Test
+    void samplesProportionallyToThePriorities(){
+        PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(4, 1.0, 0.0);
+        for (int transition = 0; transition < 4; transition++)
+            buffer.add(transition, 0, 0, 0, false);
+        double[] errors = {1, 3, 0, 4};
+        for (int position = 0; position < 4; position++)
+            buffer.updateError(position, errors[position]);
+        SplittableRandomSource random = new SplittableRandomSource(3);
+        int[] counts = new int[4];
+        for (int draw = 0; draw < 400000; draw++)
+            counts[buffer.sample(random)]++;
+        // Priorities (|δ| + ε)^α: the transition without error is almost never sampled.
+        for (int position = 0; position < 4; position++)
+            assertEquals(errors[position]/8, counts[position]/400000.0, 0.005);
+    }
+
+    @Test
+    void newTransitionsTakeTheLargestPriority(){
+        PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(8, 1.0, 1.0);
+        int first = buffer.add(0, 0, 0, 0, false);
+        buffer.updateError(first, 9);
+        int second = buffer.add(1, 0, 0, 0, false);
+        // Both have priority 9 (plus ε), so neither is corrected.
+        assertEquals(1.0, buffer.weight(first), 1e-9);
+        assertEquals(1.0, buffer.weight(second), 1e-9);
+        buffer.updateError(second, 2);
+        assertEquals(2.0/9, buffer.weight(first), 1e-6);
+        assertEquals(1.0, buffer.weight(second), 1e-9);
+    }
+
+    @Test
+    void correctionWeightsFollowTheExponent(){
+        PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(4, 0.5, 0.5);
+        for (int transition = 0; transition < 3; transition++)
+            buffer.add(transition, 0, 0, 0, false);
+        buffer.updateError(0, 1);
+        buffer.updateError(1, 16);
+        buffer.updateError(2, 81);
+        // Priorities 1, 4 and 9: weights (1/p)^0.5, normalized by the largest one.
+        assertEquals(1.0, buffer.weight(0), 1e-5);
+        assertEquals(0.5, buffer.weight(1), 1e-5);
+        assertEquals(1.0/3, buffer.weight(2), 1e-5);
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        int position = buffer.add(0, 0, 0, 0, false);
+        assertEquals(1.0, buffer.weight(position), 1e-9);
+    }
+}
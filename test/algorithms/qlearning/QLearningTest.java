@@ -0,0 +1,109 @@
+package algorithms.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import learning.LearningAlgorithm;
+import learning.LearningListener;
+import problems.maze.MazeProblemMF;
+
+class QLearningTest {
+
+    /** Listener checking that no group of episodes has more steps than allowed. */
+    private static class EpisodeSteps implements LearningListener {
+        final int maxSteps;
+        int episodes;
+        EpisodeSteps(int maxSteps){ this.maxSteps = maxSteps; }
+        public void sweepFinished(LearningAlgorithm algorithm, int sweep, double residual, long backups, int statesChanged, long nanos){}
+        public void episodesFinished(LearningAlgorithm algorithm, int episode, int count, long steps, double maxTDError, long nanos){
+            assertTrue(steps <= (long) count*maxSteps);
+            episodes += count;
+        }
+        public void learningFinished(LearningAlgorithm algorithm){}
+    }
+
+    private static MazeProblemMF maze(){
+        MazeProblemMF problem = new MazeProblemMF(15, 3);
+        problem.setGamma(0.9);
+        return problem;
+    }
+
+    @Test
+    void episodesAreCutAfterTheMaximumSteps(){
+        // Scalar, replay and batch modes.
+        String[][] modes = {{"0.1", "300", "7"}, {"0.1", "300", "7", "0", "0", "1000", "8"}, 
+                {"0.1", "300", "7", "0", "0", "0", "32", "0", "0", "0", "regular", "0", "0.01", "16"}};
+        for (String[] params : modes){
+            QLearning algorithm = new QLearning();
+            algorithm.setParams(params);
+            algorithm.setReportInterval(1);
+            EpisodeSteps listener = new EpisodeSteps(7);
+            algorithm.setListener(listener);
+            algorithm.learnPolicy(maze());
+            // The last batch learns the transitions of all its agents.
+            int agents = params.length > 13 ? Integer.parseInt(params[13]) : 1;
+            assertTrue(algorithm.getEpisodes() >= 300 && algorithm.getEpisodes() < 300+agents);
+            assertEquals(algorithm.getEpisodes(), listener.episodes);
+            assertTrue(algorithm.getSteps() <= (algorithm.getEpisodes()+agents-1)*7);
+        }
+    }
+
+    @Test
+    void replayBatchesFitInTheBuffer(){
+        QLearning algorithm = new QLearning();
+        algorithm.setReplay(100, 0);
+        assertEquals(1, algorithm.getBatchSize());
+        algorithm.setReplay(100, 500);
+        assertEquals(100, algorithm.getBatchSize());
+        algorithm.setParams(new String[]{"0.1", "50", "100", "0", "0", "10", "-4"});
+        assertEquals(1, algorithm.getBatchSize());
+        algorithm.learnPolicy(maze());
+        assertEquals(50, algorithm.getEpisodes());
+    }
+
+    @Test
+    void theStepBudgetEndsTheExecution(){
+        for (String agents : new String[]{"1", "16"}){
+            QLearning algorithm = new QLearning();
+            algorithm.setParams(new String[]{"0.1", String.valueOf(Integer.MAX_VALUE), "100", "0", "5000", 
+                    "0", "32", "0", "0", "0", "regular", "0", "0.01", agents});
+            algorithm.learnPolicy(maze());
+            assertEquals(5000, algorithm.getSteps());
+            assertNotNull(algorithm.currentPolicy());
+        }
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void theTimeBudgetEndsTheExecution(){
+        QLearning algorithm = new QLearning();
+        algorithm.setParams(new String[]{"0.1", String.valueOf(Integer.MAX_VALUE), "100", "200"});
+        long start = System.nanoTime();
+        algorithm.learnPolicy(maze());
+        long millis = (System.nanoTime()-start)/1000000;
+        assertTrue(millis >= 200 && millis < 5000, millis+" ms");
+        assertTrue(algorithm.getEpisodes() > 0);
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void stopEndsTheExecutionFromTheListener(){
+        final QLearning algorithm = new QLearning();
+        algorithm.setParams(new String[]{"0.1", String.valueOf(Integer.MAX_VALUE), "100"});
+        algorithm.setReportInterval(10);
+        algorithm.setListener(new LearningListener(){
+            public void sweepFinished(LearningAlgorithm algo, int sweep, double residual, long backups, int statesChanged, long nanos){}
+            public void episodesFinished(LearningAlgorithm algo, int episode, int count, long steps, double maxTDError, long nanos){
+                if (episode >= 50)
+                    algorithm.stop();
+            }
+            public void learningFinished(LearningAlgorithm algo){}
+        });
+        algorithm.learnPolicy(maze());
+        assertEquals(50, algorithm.getEpisodes());
+    }
+}
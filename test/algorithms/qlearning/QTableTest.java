@@ -0,0 +1,83 @@
+package algorithms.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import learning.Action;
+import learning.Policy;
+import learning.State;
+import problems.maze.MazeProblemMDP;
+import utils.SplittableRandomSource;
+
+class QTableTest {
+
+    @Test
+    void denseTableUsesAllThirtyTwoActions(){
+        WideProblem problem = new WideProblem(10);
+        QTable table = new QTable(problem);
+        assertTrue(table.isDense());
+        // Model free states have no entries until they are visited.
+        assertFalse(table.contains(problem.stateAt(3)));
+        assertEquals(-1, table.getActionMaxValue(3));
+        assertEquals(0, table.getMaxQValue(3));
+
+        // As in the HashMap table, the first value creates the entries of every possible action.
+        table.setQValue(3, 31, 5.0);
+        assertTrue(table.contains(problem.stateAt(3)));
+        assertTrue(table.contains(problem.stateAt(3), problem.actionAt(0)));
+        assertEquals(0.0, table.getQValue(3, 0));
+        assertEquals(31, table.getActionMaxValue(3));
+        assertEquals(5.0, table.getMaxQValue(3));
+        for (int action=0;action<31;action++)
+            table.setQValue(3, action, -3.0-action);
+        table.setQValue(3, 31, -2.0);
+        assertEquals(31, table.getActionMaxValue(3));
+        table.setQValue(3, 31, -4.0);
+        assertEquals(0, table.getActionMaxValue(3));
+        assertEquals(-3.0, table.getMaxQValue(3));
+        // Final states have no actions.
+        table.setQValue(9, 31, 1.0);
+        assertTrue(table.contains(problem.stateAt(9), problem.actionAt(31)));
+        assertFalse(table.contains(problem.stateAt(9), problem.actionAt(30)));
+    }
+
+    @Test
+    void denseTableReturnsTheBestPossibleAction(){
+        MazeProblemMDP problem = new MazeProblemMDP(12, 5);
+        QTable table = new QTable(problem);
+        SplittableRandomSource random = new SplittableRandomSource(5);
+        for (State state : problem.getAllStates())
+            for (Action action : problem.getPossibleActions(state))
+                table.setQValue(state, action, random.nextDouble()-0.5);
+        Policy policy = table.generatePolicy();
+        for (State state : problem.getAllStates()){
+            Action best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Action action : problem.getPossibleActions(state)){
+                assertTrue(table.contains(state, action));
+                if (table.getQValue(state, action)>bestValue){
+                    best = action;
+                    bestValue = table.getQValue(state, action);
+                }
+            }
+            assertSame(best, table.getActionMaxValue(state));
+            assertSame(best, policy.getAction(state));
+            assertEquals(best==null ? 0 : bestValue, table.getMaxQValue(state));
+        }
+    }
+
+    @Test
+    void tiesAreBrokenAmongTheBestActions(){
+        WideProblem problem = new WideProblem(4);
+        QTable table = new QTable(problem);
+        table.setRandomSource(new SplittableRandomSource(9));
+        for (int action=0;action<WideProblem.NUM_ACTIONS;action++)
+            table.setQValue(1, action, action==4 || action==20 ? 1.0 : 0.0);
+        int[] counts = new int[WideProblem.NUM_ACTIONS];
+        for (int draw=0;draw<1000;draw++)
+            counts[table.getActionMaxValue(1)]++;
+        assertEquals(1000, counts[4]+counts[20]);
+        assertTrue(counts[4]>0 && counts[20]>0);
+    }
+}
@@ -0,0 +1,62 @@
+package algorithms.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import utils.SplittableRandomSource;
+
+class ReplayBufferTest {
+
+    @Test
+    void storesTheFieldsOfEachTransition(){
+        ReplayBuffer buffer = new ReplayBuffer(10);
+        int position = buffer.add(3, 2, -1.5, 7, true);
+        assertEquals(1, buffer.size());
+        assertEquals(3, buffer.state(position));
+        assertEquals(2, buffer.action(position));
+        assertEquals(-1.5, buffer.reward(position));
+        assertEquals(7, buffer.nextState(position));
+        assertTrue(buffer.isTerminal(position));
+        assertEquals(1.0, buffer.weight(position));
+        assertFalse(buffer.isTerminal(buffer.add(4, 0, 2.0, 5, false)));
+    }
+
+    @Test
+    void replacesTheOldestTransitionsWhenFull(){
+        ReplayBuffer buffer = new ReplayBuffer(8);
+        for (int transition = 0; transition < 21; transition++){
+            int position = buffer.add(transition, 0, transition, transition+1, false);
+            assertEquals(transition % 8, position);
+        }
+        assertEquals(8, buffer.size());
+        assertEquals(8, buffer.capacity());
+        // Only the last 8 transitions (13 to 20) remain.
+        boolean[] seen = new boolean[21];
+        for (int position = 0; position < 8; position++){
+            int state = buffer.state(position);
+            assertTrue(state >= 13);
+            assertEquals(state+1, buffer.nextState(position));
+            seen[state] = true;
+        }
+        for (int state = 13; state <= 20; state++)
+            assertTrue(seen[state]);
+    }
+
+    @Test
+    void samplesUniformlyTheStoredTransitions(){
+        ReplayBuffer buffer = new ReplayBuffer(100);
+        for (int transition = 0; transition < 40; transition++)
+            buffer.add(transition, 0, 0, 0, false);
+        SplittableRandomSource random = new SplittableRandomSource(4);
+        int[] counts = new int[100];
+        for (int draw = 0; draw < 200000; draw++)
+            counts[buffer.sample(random)]++;
+        for (int position = 0; position < 100; position++)
+            assertEquals(position < 40 ? 5000 : 0, counts[position], 400);
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.add(1, 1, 1, 1, false));
+    }
+}
@@ -0,0 +1,82 @@
+package algorithms.qlearning;
+
+import java.util.ArrayList;
+
+import learning.Action;
+import learning.IndexedProblem;
+import learning.MFLearningProblem;
+import learning.State;
+
+/**
+ * Small indexed problem with 32 actions, the largest mask supported. The action k moves
+ * from the state s to (s+k) % numStates, and the last state is final.
+ */
+class WideProblem extends MFLearningProblem implements IndexedProblem {
+
+    static final int NUM_ACTIONS = 32;
+
+    static class WideState extends State {
+        final int index;
+        WideState(int index){ this.index = index; }
+        @Override
+        public boolean equals(Object anotherState){
+            return anotherState instanceof WideState && ((WideState) anotherState).index==index;
+        }
+        @Override
+        public int hashCode(){ return index; }
+        @Override
+        public String toString(){ return "S"+index; }
+    }
+
+    static class WideAction implements Action {
+        final int ordinal;
+        WideAction(int ordinal){ this.ordinal = ordinal; }
+        public String getId(){ return "A"+ordinal; }
+    }
+
+    private final WideState[] states;
+    private final WideAction[] actions;
+    private final ArrayList<Action> actionList = new ArrayList<Action>();
+
+    WideProblem(int numStates){
+        states = new WideState[numStates];
+        for (int state=0;state<numStates;state++)
+            states[state] = new WideState(state);
+        actions = new WideAction[NUM_ACTIONS];
+        for (int action=0;action<NUM_ACTIONS;action++){
+            actions[action] = new WideAction(action);
+            actionList.add(actions[action]);
+        }
+        initialState = states[0];
+    }
+
+    @Override
+    public boolean isFinal(State state){ return ((WideState) state).index==states.length-1; }
+    @Override
+    public ArrayList<Action> getPossibleActions(State state){
+        return isFinal(state) ? new ArrayList<Action>() : new ArrayList<Action>(actionList);
+    }
+    @Override
+    public double getReward(State state){ return isFinal(state) ? 1 : 0; }
+    @Override
+    public double getTransitionReward(State fromState, Action action, State toState){ return -0.01; }
+    @Override
+    public State getRandomState(){ return states[random().nextInt(states.length-1)]; }
+    @Override
+    public void setParams(String[] params){}
+    @Override
+    public void updateEnvironment(State state, Action action){}
+    @Override
+    public State readNewState(State state, Action action){
+        return states[(((WideState) state).index+((WideAction) action).ordinal) % states.length];
+    }
+
+    // From IndexedProblem
+    public int numStates(){ return states.length; }
+    public int stateIndex(State state){ return ((WideState) state).index; }
+    public State stateAt(int index){ return states[index]; }
+    public int numActions(){ return NUM_ACTIONS; }
+    public int actionIndex(Action action){ return ((WideAction) action).ordinal; }
+    public Action actionAt(int index){ return actions[index]; }
+    public int actionMask(State state){ return isFinal(state) ? 0 : -1; }
+}
@@ -0,0 +1,114 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import problems.maze.MazeProblemMDP;
+import utils.SplittableRandomSource;
+
+class CompiledMDPTest {
+
+	/** Checks that the rows of each state are its actions, and give the expected utilities of the problem. */
+	private static void assertSameModel(MDPLearningProblem problem, long seed){
+		CompiledMDP model = new CompiledMDP(problem);
+		assertEquals(problem.getAllStates().size(), model.numStates);
+		SplittableRandomSource random = new SplittableRandomSource(seed);
+		double[] utilities = new double[model.numStates];
+		HashMap<State,Double> utilityMap = new HashMap<State,Double>();
+		for (int state=0;state<model.numStates;state++){
+			utilities[state] = random.nextDouble()*200-100;
+			utilityMap.put(model.states[state], utilities[state]);
+		}
+		double[] setSums = new double[model.numSets()];
+		model.updateSetSums(utilities, setSums);
+		for (int state=0;state<model.numStates;state++){
+			State s = model.states[state];
+			assertEquals(state, model.indexOf(s));
+			assertEquals(problem.isFinal(s), model.isFinal[state]);
+			assertEquals(problem.getReward(s), model.reward[state]);
+			ArrayList<Action> actions = problem.getPossibleActions(s);
+			assertEquals(actions.size(), model.stateRows[state+1]-model.stateRows[state]);
+			for (int nAction=0;nAction<actions.size();nAction++){
+				int row = model.stateRows[state]+nAction;
+				assertSame(actions.get(nAction), model.rowAction[row]);
+				assertEquals(problem.getExpectedUtility(s, actions.get(nAction), utilityMap, problem.gamma), 
+						model.expectedUtility(state, row, utilities, setSums, problem.gamma), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	void compilesTheExampleProblem(){
+		problems.mdpexample2.MDPExProblem problem = new problems.mdpexample2.MDPExProblem();
+		problem.setGamma(0.9);
+		assertSameModel(problem, 1);
+	}
+
+	@Test
+	void compilesSeededMazes(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(15, seed);
+			problem.setGamma(0.95);
+			assertSameModel(problem, seed);
+		}
+	}
+
+	@Test
+	void diveRowsShareTheHoleSet(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 2);
+		CompiledMDP model = new CompiledMDP(problem);
+		assertEquals(1, model.numSets());
+		int numDives = 0;
+		for (int row=0;row<model.numRows();row++){
+			if (model.rowAction[row]!=problems.maze.MazeAction.DIVE){
+				assertEquals(-1, model.rowSet[row]);
+				continue;
+			}
+			numDives++;
+			assertEquals(0, model.rowSet[row]);
+			assertEquals(model.rowStart[row], model.rowStart[row+1]);
+			assertTrue(model.rowExcluded[row]>=0);
+		}
+		assertEquals(model.setStart[1]-model.setStart[0], numDives);
+	}
+
+	@Test
+	void incrementalSetSumsMatchTheFullSums(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 2);
+		CompiledMDP model = new CompiledMDP(problem);
+		SplittableRandomSource random = new SplittableRandomSource(2);
+		double[] utilities = new double[model.numStates];
+		double[] setSums = new double[model.numSets()];
+		model.updateSetSums(utilities, setSums);
+		for (int update=0;update<10000;update++){
+			int state = random.nextInt(model.numStates);
+			double utility = random.nextDouble()*10-5;
+			model.updateSetSums(state, utility-utilities[state], setSums);
+			utilities[state] = utility;
+		}
+		double[] fullSums = new double[model.numSets()];
+		model.updateSetSums(utilities, fullSums);
+		assertArrayEquals(fullSums, setSums, 1e-9);
+	}
+
+	@Test
+	void bestRowMaximizesTheExpectedUtility(){
+		MazeProblemMDP problem = new MazeProblemMDP(12, 4);
+		CompiledMDP model = new CompiledMDP(problem);
+		SplittableRandomSource random = new SplittableRandomSource(4);
+		double[] utilities = new double[model.numStates];
+		for (int state=0;state<model.numStates;state++)
+			utilities[state] = random.nextDouble();
+		double[] setSums = new double[model.numSets()];
+		model.updateSetSums(utilities, setSums);
+		for (int state=0;state<model.numStates;state++){
+			int best = model.bestRow(state, utilities, setSums, 0.9);
+			for (int row=model.stateRows[state];row<model.stateRows[state+1];row++)
+				assertTrue(model.expectedUtility(state, row, utilities, setSums, 0.9) <= model.expectedUtility(state, best, utilities, setSums, 0.9));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+import problems.maze.MazeProblemMDP;
+import problems.maze.MazeProblemMF;
+import utils.SplittableRandomSource;
+
+class IndexedProblemTest {
+
+	/** Checks that the indices of the states and actions are dense and go both ways. */
+	private static void assertDenseIndexing(IndexedProblem indexed, Iterable<State> states){
+		HashSet<Integer> seen = new HashSet<Integer>();
+		for (State state : states){
+			int index = indexed.stateIndex(state);
+			assertTrue(index>=0 && index<indexed.numStates());
+			assertTrue(seen.add(index));
+			assertEquals(state, indexed.stateAt(index));
+		}
+		assertEquals(indexed.numStates(), seen.size());
+		for (int action=0;action<indexed.numActions();action++)
+			assertEquals(action, indexed.actionIndex(indexed.actionAt(action)));
+	}
+
+	@Test
+	void mazeIndicesGoBothWays(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(15, seed);
+			assertDenseIndexing(problem, problem.getAllStates());
+		}
+	}
+
+	@Test
+	void exampleProblemIndicesGoBothWays(){
+		problems.mdpexample1.MDPExProblem first = new problems.mdpexample1.MDPExProblem();
+		assertDenseIndexing(first, first.getAllStates());
+		problems.mdpexample2.MDPExProblem second = new problems.mdpexample2.MDPExProblem();
+		assertDenseIndexing(second, second.getAllStates());
+	}
+
+	@Test
+	void bothMazeProblemsShareTheIndexing(){
+		MazeProblemMDP mdp = new MazeProblemMDP(15, 4);
+		MazeProblemMF modelFree = new MazeProblemMF(15, 4);
+		assertEquals(mdp.numStates(), modelFree.numStates());
+		for (int index=0;index<mdp.numStates();index++)
+			assertEquals(mdp.stateAt(index), modelFree.stateAt(index));
+	}
+
+	/** Checks that the mask of each state has the bits of its possible actions. */
+	private static void assertMasksMatch(LearningProblem problem, Iterable<State> states){
+		IndexedProblem indexed = (IndexedProblem) problem;
+		for (State state : states){
+			HashSet<Action> possible = new HashSet<Action>(problem.getPossibleActions(state));
+			int mask = indexed.actionMask(state);
+			assertEquals(possible.size(), Integer.bitCount(mask));
+			for (int action=0;action<indexed.numActions();action++)
+				assertEquals(possible.contains(indexed.actionAt(action)), (mask & (1<<action))!=0);
+		}
+	}
+
+	@Test
+	void actionMasksMatchThePossibleActions(){
+		MazeProblemMDP mdp = new MazeProblemMDP(15, 5);
+		assertMasksMatch(mdp, mdp.getAllStates());
+		// The model free maze allows moving towards walls.
+		assertMasksMatch(new MazeProblemMF(15, 5), mdp.getAllStates());
+		problems.mdpexample2.MDPExProblem example = new problems.mdpexample2.MDPExProblem();
+		assertMasksMatch(example, example.getAllStates());
+	}
+
+	@Test
+	void randomActionsAreUniformOverTheMask(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 5);
+		problem.setRandomSource(new SplittableRandomSource(5));
+		for (State state : problem.getAllStates()){
+			int numActions = problem.getPossibleActions(state).size();
+			if (numActions<3)
+				continue;
+			int[] counts = new int[problem.numActions()];
+			for (int draw=0;draw<10000*numActions;draw++)
+				counts[problem.actionIndex(problem.randomAction(state))]++;
+			for (int action=0;action<problem.numActions();action++)
+				if ((problem.actionMask(state) & (1<<action))!=0)
+					assertEquals(10000, counts[action], 500);
+				else
+					assertEquals(0, counts[action]);
+			return;
+		}
+		fail("The maze has no cell with three actions");
+	}
+}
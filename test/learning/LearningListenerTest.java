@@ -0,0 +1,143 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import algorithms.RandomAlgorithm;
+import algorithms.mdp.LRTDP;
+import algorithms.mdp.ValueIteration;
+import algorithms.qlearning.QLearning;
+import problems.maze.MazeProblemMDP;
+import problems.maze.MazeProblemMF;
+
+class LearningListenerTest {
+
+	/** Listener that keeps every report. */
+	private static class Recorder implements LearningListener {
+		ArrayList<double[]> sweeps = new ArrayList<double[]>();
+		ArrayList<long[]> episodes = new ArrayList<long[]>();
+		int finished;
+
+		public void sweepFinished(LearningAlgorithm algorithm, int sweep, double residual, long backups, int statesChanged, long nanos){
+			assertEquals(0, finished);
+			sweeps.add(new double[]{sweep, residual, backups, statesChanged});
+		}
+
+		public void episodesFinished(LearningAlgorithm algorithm, int episode, int count, long steps, double maxTDError, long nanos){
+			assertEquals(0, finished);
+			episodes.add(new long[]{episode, count, steps});
+		}
+
+		public void learningFinished(LearningAlgorithm algorithm){ finished++; }
+	}
+
+	@Test
+	void valueIterationReportsEverySweep(){
+		for (String mode : new String[]{"hash", "compiled", "gauss_seidel"}){
+			MazeProblemMDP problem = new MazeProblemMDP(12, 1);
+			problem.setGamma(0.9);
+			ValueIteration algorithm = new ValueIteration();
+			algorithm.setParams(new String[]{"0.01", mode});
+			Recorder recorder = new Recorder();
+			algorithm.setListener(recorder);
+			algorithm.learnPolicy(problem);
+			assertEquals(1, recorder.finished);
+			assertFalse(recorder.sweeps.isEmpty());
+			long backups = 0;
+			for (int sweep=0;sweep<recorder.sweeps.size();sweep++){
+				assertEquals(sweep+1, (int) recorder.sweeps.get(sweep)[0]);
+				backups += (long) recorder.sweeps.get(sweep)[2];
+			}
+			assertEquals(algorithm.getBackups(), backups, mode);
+			// The last sweep changes no state beyond the threshold.
+			assertEquals(0, (int) recorder.sweeps.get(recorder.sweeps.size()-1)[3], mode);
+		}
+	}
+
+	@Test
+	void lrtdpReportsEveryTrial(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 2);
+		problem.setGamma(0.95);
+		LRTDP algorithm = new LRTDP();
+		Recorder recorder = new Recorder();
+		algorithm.setListener(recorder);
+		algorithm.learnPolicy(problem);
+		assertEquals(1, recorder.finished);
+		assertEquals(algorithm.getTrials(), recorder.sweeps.size());
+		long backups = 0, labeled = 0;
+		for (double[] sweep : recorder.sweeps){
+			backups += (long) sweep[2];
+			labeled += (long) sweep[3];
+		}
+		assertEquals(algorithm.getBackups(), backups);
+		// The initial state is labeled in the last trial, with the states reachable from it.
+		assertTrue(labeled>0 && labeled<=algorithm.getNumStates());
+		assertTrue(recorder.sweeps.get(recorder.sweeps.size()-1)[3]>0);
+	}
+
+	@Test
+	void randomAlgorithmOnlyReportsTheEnd(){
+		MazeProblemMF problem = new MazeProblemMF(10, 1);
+		RandomAlgorithm algorithm = new RandomAlgorithm();
+		Recorder recorder = new Recorder();
+		algorithm.setListener(recorder);
+		algorithm.learnPolicy(problem);
+		assertEquals(1, recorder.finished);
+		assertTrue(recorder.sweeps.isEmpty());
+		assertTrue(recorder.episodes.isEmpty());
+	}
+
+	@Test
+	void qLearningReportsGroupsOfEpisodes(){
+		MazeProblemMF problem = new MazeProblemMF(10, 1);
+		problem.setGamma(0.9);
+		QLearning algorithm = new QLearning();
+		algorithm.setParams(new String[]{"0.1", "230", "200"});
+		algorithm.setReportInterval(50);
+		Recorder recorder = new Recorder();
+		algorithm.setListener(recorder);
+		algorithm.learnPolicy(problem);
+		assertEquals(1, recorder.finished);
+		assertEquals(5, recorder.episodes.size());
+		long episodes = 0, steps = 0;
+		for (long[] report : recorder.episodes){
+			episodes += report[1];
+			steps += report[2];
+			assertEquals(episodes, report[0]);
+		}
+		assertEquals(230, episodes);
+		assertEquals(algorithm.getEpisodes(), episodes);
+		assertEquals(algorithm.getSteps(), steps);
+	}
+
+	@Test
+	void csvRowsFollowTheHeader() throws IOException {
+		StringWriter output = new StringWriter();
+		CsvLearningListener csv = new CsvLearningListener(output);
+		MazeProblemMDP problem = new MazeProblemMDP(12, 1);
+		problem.setGamma(0.9);
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(new String[]{"0.01", "compiled"});
+		algorithm.setListener(csv);
+		algorithm.learnPolicy(problem);
+		csv.close();
+		assertEquals(0, csv.getDropped());
+
+		String[] lines = output.toString().split("\n");
+		int columns = lines[0].split(",", -1).length;
+		assertEquals(11, columns);
+		for (int line=1;line<lines.length;line++){
+			String[] values = lines[line].split(",", -1);
+			assertEquals(columns, values.length, lines[line]);
+			assertEquals("ValueIteration", values[1]);
+			assertEquals(line<lines.length-1 ? "sweep" : "finished", values[0]);
+			if (values[0].equals("sweep"))
+				assertEquals(line, Integer.parseInt(values[2]));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+import algorithms.mdp.ValueIteration;
+import problems.maze.MazeProblemMDP;
+
+class MDPLearningProblemTest {
+
+	@Test
+	void reachableStatesAreClosedUnderTransitions(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(20, seed);
+			HashSet<State> reachable = new HashSet<State>(problem.getReachableStates());
+			assertEquals(problem.getReachableStates().size(), reachable.size());
+			assertTrue(reachable.contains(problem.initialState()));
+			assertTrue(problem.getAllStates().containsAll(reachable));
+			for (State state : reachable){
+				if (problem.isFinal(state))
+					continue;
+				for (Action action : problem.getPossibleActions(state))
+					for (State next : problem.getTransitionModel(state, action).getReachableStates())
+						assertTrue(reachable.contains(next));
+			}
+		}
+	}
+
+	@Test
+	void isolatedCellsAreNotReachable(){
+		// The cell (19,0) of this maze has no moves, and is not final.
+		MazeProblemMDP problem = new MazeProblemMDP(20, 2);
+		State isolated = null;
+		for (State state : problem.getAllStates())
+			if (!problem.isFinal(state) && problem.getPossibleActions(state).isEmpty())
+				isolated = state;
+		assertNotNull(isolated);
+		assertFalse(problem.getReachableStates().contains(isolated));
+	}
+
+	@Test
+	void restrictedSolversOnlyWorkOverReachableStates(){
+		MazeProblemMDP problem = new MazeProblemMDP(20, 2);
+		problem.setGamma(0.95);
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(new String[]{"0.0001", "compiled"});
+		Policy full = algorithm.learnPolicy(problem);
+
+		problem.setRestrictToReachable(true);
+		Collection<State> reachable = problem.getSolverStates();
+		assertSame(problem.getReachableStates(), reachable);
+		assertEquals(reachable.size(), new CompiledMDP(problem).numStates);
+		Policy restricted = algorithm.learnPolicy(problem);
+		for (State state : problem.getAllStates()){
+			if (reachable.contains(state))
+				assertSame(full.getAction(state), restricted.getAction(state));
+			else
+				assertNull(restricted.getAction(state));
+		}
+	}
+
+	@Test
+	void reachableStatesFollowTheInitialState(){
+		MazeProblemMDP problem = new MazeProblemMDP(20, 3);
+		Collection<State> first = problem.getReachableStates();
+		assertSame(first, problem.getReachableStates());
+		for (State state : problem.getAllStates())
+			if (state!=problem.initialState() && !problem.isFinal(state)){
+				problem.setInitialState(state);
+				Collection<State> second = problem.getReachableStates();
+				assertNotSame(first, second);
+				assertTrue(second.contains(state));
+				return;
+			}
+		fail("The maze has a single cell");
+	}
+
+	@Test
+	void randomStatesAreSolverStatesWhenRestricted(){
+		for (int seed=1;seed<=3;seed++){
+			MazeProblemMDP problem = new MazeProblemMDP(20, seed);
+			problem.setRestrictToReachable(true);
+			HashSet<State> solverStates = new HashSet<State>(problem.getSolverStates());
+			assertTrue(solverStates.contains(problem.initialState()));
+			for (int sample=0;sample<1000;sample++)
+				assertTrue(solverStates.contains(problem.getRandomState()));
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import problems.maze.MazeProblemMDP;
+
+class PolicyTest {
+
+	/** Policy taking the first possible action of each state (null for final states). */
+	private static Policy firstActions(Policy policy, MDPLearningProblem problem){
+		for (State state : problem.getAllStates()){
+			ArrayList<Action> actions = problem.getPossibleActions(state);
+			policy.setAction(state, problem.isFinal(state) || actions.isEmpty() ? null : actions.get(0));
+		}
+		return policy;
+	}
+
+	@Test
+	void indexedAndHashPoliciesAreEqual(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		Policy indexed = firstActions(new Policy(problem), problem);
+		Policy hash = firstActions(new Policy(), problem);
+		assertTrue(indexed.isIndexed());
+		assertFalse(hash.isIndexed());
+		assertEquals(problem.getAllStates().size(), indexed.size());
+		assertEquals(hash.size(), indexed.size());
+		assertEquals(indexed, hash);
+		assertEquals(hash, indexed);
+		assertEquals(0, indexed.countDifferences(hash));
+		for (State state : problem.getAllStates())
+			assertSame(hash.getAction(state), indexed.getAction(state));
+	}
+
+	@Test
+	void differencesAreCountedInBothRepresentations(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		Policy indexed = firstActions(new Policy(problem), problem);
+		Policy otherIndexed = firstActions(new Policy(problem), problem);
+		Policy hash = firstActions(new Policy(), problem);
+		int changed = 0;
+		for (State state : problem.getAllStates()){
+			ArrayList<Action> actions = problem.getPossibleActions(state);
+			if (actions.size()>1 && changed<5){
+				otherIndexed.setAction(state, actions.get(1));
+				hash.setAction(state, actions.get(1));
+				changed++;
+			}
+		}
+		assertEquals(5, changed);
+		assertEquals(5, indexed.countDifferences(otherIndexed));
+		assertEquals(5, indexed.countDifferences(hash));
+		assertEquals(5, hash.countDifferences(indexed));
+		assertNotEquals(indexed, otherIndexed);
+		assertEquals(otherIndexed, hash);
+	}
+
+	@Test
+	void missingEntriesAreDifferences(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		Policy full = firstActions(new Policy(problem), problem);
+		Policy partial = new Policy(problem);
+		Policy partialHash = new Policy();
+		State first = problem.getAllStates().iterator().next();
+		partial.setAction(first, full.getAction(first));
+		partialHash.setAction(first, full.getAction(first));
+		assertEquals(1, partial.size());
+		assertEquals(full.size()-1, full.countDifferences(partial));
+		assertEquals(full.size()-1, partial.countDifferences(full));
+		assertEquals(full.size()-1, partialHash.countDifferences(full));
+		assertEquals(partial, partialHash);
+
+		partial.reset(problem);
+		assertEquals(0, partial.size());
+		assertNull(partial.getAction(first));
+	}
+
+	@Test
+	void policiesOfDifferentInstancesCompareTheirEntries(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		MazeProblemMDP sameMaze = new MazeProblemMDP(15, 1);
+		Policy policy = firstActions(new Policy(problem), problem);
+		Policy other = firstActions(new Policy(sameMaze), sameMaze);
+		assertEquals(policy, other);
+		assertEquals(0, other.countDifferences(policy));
+	}
+}
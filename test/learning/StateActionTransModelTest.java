@@ -0,0 +1,84 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import problems.maze.MazeAction;
+import problems.maze.MazeProblemMDP;
+import utils.SplittableRandomSource;
+
+class StateActionTransModelTest {
+
+	/** Returns the model of diving from the first hole of the maze. */
+	private static StateActionTransModel firstDive(MazeProblemMDP problem){
+		for (State state : problem.getAllStates())
+			if (problem.getPossibleActions(state).contains(MazeAction.DIVE))
+				return problem.getTransitionModel(state, MazeAction.DIVE);
+		fail("The maze has no holes");
+		return null;
+	}
+
+	@Test
+	void uniformModelsEnumerateTheSetWithoutTheExcludedState(){
+		StateActionTransModel dive = firstDive(new MazeProblemMDP(15, 3));
+		assertTrue(dive.isUniform());
+		State[] set = dive.getUniformSet();
+		int excluded = dive.getExcluded();
+		State[] reachable = dive.getReachableStates();
+		double[] probs = dive.getProbs();
+		assertEquals(set.length-1, reachable.length);
+		for (int nState=0;nState<reachable.length;nState++){
+			assertSame(set[nState<excluded ? nState : nState+1], reachable[nState]);
+			assertEquals(1.0/reachable.length, probs[nState], 1e-12);
+		}
+	}
+
+	@Test
+	void uniformModelsSampleEachStateEqually(){
+		StateActionTransModel dive = firstDive(new MazeProblemMDP(15, 3));
+		State excluded = dive.getUniformSet()[dive.getExcluded()];
+		int numReachable = dive.getUniformSet().length-1;
+		int samples = 20000*numReachable;
+		HashMap<State,Integer> counts = new HashMap<State,Integer>();
+		SplittableRandomSource random = new SplittableRandomSource(7);
+		for (int sample=0;sample<samples;sample++){
+			State next = dive.genNextState(random);
+			assertNotSame(excluded, next);
+			Integer count = counts.get(next);
+			counts.put(next, count==null ? 1 : count+1);
+		}
+		assertEquals(numReachable, counts.size());
+		for (int count : counts.values())
+			assertEquals(1.0/numReachable, (double) count/samples, 0.01);
+	}
+
+	@Test
+	void explicitModelsFollowTheirProbabilities(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 3);
+		SplittableRandomSource random = new SplittableRandomSource(11);
+		for (State state : problem.getAllStates()){
+			if (problem.isFinal(state) || problem.getPossibleActions(state).size()<3)
+				continue;
+			Action action = problem.getPossibleActions(state).get(1);
+			StateActionTransModel model = problem.getTransitionModel(state, action);
+			if (model.isUniform())
+				continue;
+			State[] reachable = model.getReachableStates();
+			double[] probs = model.getProbs();
+			int samples = 100000;
+			HashMap<State,Integer> counts = new HashMap<State,Integer>();
+			for (int sample=0;sample<samples;sample++){
+				State next = model.genNextState(random);
+				Integer count = counts.get(next);
+				counts.put(next, count==null ? 1 : count+1);
+			}
+			for (int nState=0;nState<reachable.length;nState++)
+				assertEquals(probs[nState], (double) counts.get(reachable[nState])/samples, 0.01);
+			return;
+		}
+		fail("The maze has no cell with three moves");
+	}
+}
@@ -0,0 +1,92 @@
+package learning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import problems.maze.MazeProblemMDP;
+
+class StateComponentsTest {
+
+	/** Successors of a state in the transition graph (none for final states). */
+	private static ArrayList<Integer> successors(CompiledMDP model, int state){
+		ArrayList<Integer> successors = new ArrayList<Integer>();
+		if (model.isFinal[state])
+			return successors;
+		for (int row=model.stateRows[state];row<model.stateRows[state+1];row++){
+			int setId = model.rowSet[row];
+			if (setId>=0){
+				for (int member=model.setStart[setId];member<model.setStart[setId+1];member++)
+					if (model.setMembers[member]!=model.rowExcluded[row])
+						successors.add(model.setMembers[member]);
+			}
+			else
+				for (int entry=model.rowStart[row];entry<model.rowStart[row+1];entry++)
+					successors.add(model.successors[entry]);
+		}
+		return successors;
+	}
+
+	/** States reachable from each state (including itself), by depth first search. */
+	private static boolean[][] reachability(CompiledMDP model){
+		boolean[][] reached = new boolean[model.numStates][model.numStates];
+		for (int origin=0;origin<model.numStates;origin++){
+			ArrayList<Integer> open = new ArrayList<Integer>();
+			open.add(origin);
+			reached[origin][origin] = true;
+			while (!open.isEmpty())
+				for (int next : successors(model, open.remove(open.size()-1)))
+					if (!reached[origin][next]){
+						reached[origin][next] = true;
+						open.add(next);
+					}
+		}
+		return reached;
+	}
+
+	@Test
+	void componentsPartitionTheStates(){
+		CompiledMDP model = new CompiledMDP(new MazeProblemMDP(20, 1));
+		StateComponents components = new StateComponents(model);
+		assertEquals(model.numStates, components.componentStart[components.numComponents]);
+		boolean[] seen = new boolean[model.numStates];
+		int maxSize = 0;
+		for (int component=0;component<components.numComponents;component++){
+			assertTrue(components.size(component)>0);
+			maxSize = Math.max(maxSize, components.size(component));
+			for (int pos=components.componentStart[component];pos<components.componentStart[component+1];pos++){
+				int state = components.componentStates[pos];
+				assertFalse(seen[state]);
+				seen[state] = true;
+				assertEquals(component, components.componentOf[state]);
+			}
+		}
+		assertEquals(maxSize, components.maxSize());
+	}
+
+	@Test
+	void componentsAreInReverseTopologicalOrder(){
+		for (int seed=1;seed<=4;seed++){
+			CompiledMDP model = new CompiledMDP(new MazeProblemMDP(20, seed));
+			StateComponents components = new StateComponents(model);
+			for (int state=0;state<model.numStates;state++)
+				for (int next : successors(model, state))
+					assertTrue(components.componentOf[next]<=components.componentOf[state]);
+		}
+	}
+
+	@Test
+	void componentsAreTheStronglyConnectedSets(){
+		for (int seed=1;seed<=3;seed++){
+			CompiledMDP model = new CompiledMDP(new MazeProblemMDP(12, seed));
+			StateComponents components = new StateComponents(model);
+			boolean[][] reached = reachability(model);
+			for (int state=0;state<model.numStates;state++)
+				for (int other=0;other<model.numStates;other++)
+					assertEquals(reached[state][other] && reached[other][state], 
+							components.componentOf[state]==components.componentOf[other]);
+		}
+	}
+}
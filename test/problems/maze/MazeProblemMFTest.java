@@ -0,0 +1,138 @@
+package problems.maze;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import learning.State;
+import utils.SplittableRandomSource;
+
+class MazeProblemMFTest {
+
+    /** Directions of the original transition model: the action, with 0.7, or any other one, with 0.1 each. */
+    private static final MazeAction[] MOVES = {MazeAction.UP, MazeAction.DOWN, MazeAction.LEFT, MazeAction.RIGHT};
+    private static final int[] CAN_MOVE = {Maze.CAN_UP, Maze.CAN_DOWN, Maze.CAN_LEFT, Maze.CAN_RIGHT};
+    private static final int[] MOVE_X = {0, 0, -1, 1}, MOVE_Y = {-1, 1, 0, 0};
+
+    /** Probability of reaching each state from a cell with a movement, following the original model. */
+    private static double[] originalModel(MazeProblemMF problem, int index, MazeAction action){
+        Maze maze = problem.maze;
+        MazeState from = (MazeState) problem.stateAt(index);
+        double[] probs = new double[problem.numStates()];
+        for (int move = 0; move < MOVES.length; move++){
+            double prob = MOVES[move] == action ? 0.7 : 0.1;
+            // A blocked movement stays in the cell.
+            if ((maze.attributes(from.X(), from.Y()) & CAN_MOVE[move]) != 0)
+                probs[maze.indexOf(from.X()+MOVE_X[move], from.Y()+MOVE_Y[move])] += prob;
+            else
+                probs[index] += prob;
+        }
+        return probs;
+    }
+
+    @Test
+    void stepsFollowTheOriginalModel(){
+        MazeProblemMF problem = new MazeProblemMF(12, 3);
+        SplittableRandomSource random = new SplittableRandomSource(3);
+        int samples = 40000;
+        int[] states = new int[samples], actions = new int[samples], nextStates = new int[samples];
+        double[] rewards = new double[samples];
+        boolean[] done = new boolean[samples];
+        for (int index = 0; index < problem.numStates(); index += 7){
+            State state = problem.stateAt(index);
+            if (problem.isFinal(state))
+                continue;
+            for (MazeAction action : MOVES){
+                Arrays.fill(states, index);
+                Arrays.fill(actions, action.ordinal());
+                problem.step(samples, states, actions, nextStates, rewards, done, index, random);
+                int[] counts = new int[problem.numStates()];
+                for (int sample = 0; sample < samples; sample++){
+                    counts[nextStates[sample]]++;
+                    State next = problem.stateAt(nextStates[sample]);
+                    assertEquals(problem.getReward(next) + problem.getTransitionReward(state, action, next), rewards[sample], 1e-12);
+                    assertEquals(problem.isFinal(next), done[sample]);
+                }
+                double[] expected = originalModel(problem, index, action);
+                for (int next = 0; next < problem.numStates(); next++)
+                    assertEquals(expected[next], (double) counts[next]/samples, 0.01);
+            }
+        }
+    }
+
+    @Test
+    void divesReachTheOtherHolesUniformly(){
+        MazeProblemMF problem = new MazeProblemMF(15, 2);
+        Maze maze = problem.maze;
+        assertTrue(maze.holeCells.length > 1);
+        int hole = maze.holeCells[0];
+        int samples = 20000*(maze.holeCells.length-1);
+        int[] states = new int[samples], actions = new int[samples], nextStates = new int[samples];
+        Arrays.fill(states, hole);
+        Arrays.fill(actions, MazeAction.DIVE.ordinal());
+        problem.step(samples, states, actions, nextStates, new double[samples], new boolean[samples], hole, new SplittableRandomSource(2));
+        int[] counts = new int[problem.numStates()];
+        for (int next : nextStates)
+            counts[next]++;
+        assertEquals(0, counts[hole]);
+        for (int other = 1; other < maze.holeCells.length; other++)
+            assertEquals(20000, counts[maze.holeCells[other]], 800);
+    }
+
+    private static boolean isStartCell(Maze maze, int index){
+        for (int cell : maze.startCells)
+            if (cell == index)
+                return true;
+        return false;
+    }
+
+    @Test
+    void finishedAgentsAreReset(){
+        MazeProblemMF problem = new MazeProblemMF(15, 4);
+        SplittableRandomSource random = new SplittableRandomSource(4);
+        int numAgents = 64;
+        int[] states = new int[numAgents], actions = new int[numAgents], nextStates = new int[numAgents];
+        double[] rewards = new double[numAgents];
+        boolean[] done = new boolean[numAgents];
+        for (int agent = 0; agent < numAgents; agent++)
+            states[agent] = problem.randomStateIndex(random);
+        int resets = 0;
+        for (int step = 0; step < 2000; step++){
+            for (int agent = 0; agent < numAgents; agent++)
+                actions[agent] = random.nextInt(4);
+            // Half of the steps reset to a fixed state, the other half to random start cells.
+            int resetState = step % 2 == 0 ? 0 : -1;
+            problem.step(numAgents, states, actions, nextStates, rewards, done, resetState, random);
+            for (int agent = 0; agent < numAgents; agent++){
+                if (!done[agent]){
+                    assertEquals(nextStates[agent], states[agent]);
+                    continue;
+                }
+                resets++;
+                assertTrue(problem.isFinal(problem.stateAt(nextStates[agent])));
+                if (resetState >= 0)
+                    assertEquals(resetState, states[agent]);
+                else
+                    assertTrue(isStartCell(problem.maze, states[agent]));
+            }
+        }
+        assertTrue(resets > 0);
+    }
+
+    @Test
+    void aSingleHoleCanNotBeDived(){
+        Maze maze = new Maze(new String[]{"     ", " o   ", "     ", "  c  ", "    h"}, 0, 0);
+        MazeProblemMF problem = new MazeProblemMF(maze);
+        State hole = maze.stateOf(1, 1);
+        assertFalse(problem.getPossibleActions(hole).contains(MazeAction.DIVE));
+        assertEquals(0, problem.actionMask(hole) & (1 << MazeAction.DIVE.ordinal()));
+        // Diving anyway stays in the cell, as moving against a wall.
+        int[] states = {problem.stateIndex(hole)}, actions = {MazeAction.DIVE.ordinal()}, nextStates = new int[1];
+        double[] rewards = new double[1];
+        problem.step(1, states, actions, nextStates, rewards, new boolean[1], -1, new SplittableRandomSource(1));
+        assertEquals(problem.stateIndex(hole), nextStates[0]);
+        assertEquals(0, rewards[0]);
+    }
+}
@@ -0,0 +1,114 @@
+package problems.maze;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import algorithms.mdp.ValueIteration;
+import learning.Action;
+import learning.CompiledMDP;
+import learning.Policy;
+import learning.State;
+import utils.Position;
+import utils.SplittableRandomSource;
+
+class MazeTest {
+
+	@Test
+	void statesAreCanonical(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 1);
+		Maze maze = problem.maze;
+		for (State state : problem.getAllStates()){
+			MazeState mazeState = (MazeState) state;
+			assertSame(state, maze.stateOf(mazeState.X(), mazeState.Y()));
+			assertSame(state, problem.stateAt(problem.stateIndex(state)));
+			// Transitions reach the same objects.
+			for (Action action : problem.getPossibleActions(state))
+				for (State next : problem.getTransitionModel(state, action).getReachableStates())
+					assertSame(maze.stateOf(((MazeState) next).X(), ((MazeState) next).Y()), next);
+		}
+		assertSame(problem.initialState(), maze.stateOf(maze.posHamster.x, maze.posHamster.y));
+	}
+
+	@Test
+	void randomStatesAreUniformOverTheStartCells(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 2);
+		Maze maze = problem.maze;
+		problem.setRandomSource(new SplittableRandomSource(2));
+		HashMap<State,Integer> counts = new HashMap<State,Integer>();
+		int samples = 2000*maze.startCells.length;
+		for (int sample=0;sample<samples;sample++){
+			State state = problem.getRandomState();
+			Integer count = counts.get(state);
+			counts.put(state, count==null ? 1 : count+1);
+		}
+		assertEquals(maze.startCells.length, counts.size());
+		for (State state : counts.keySet()){
+			MazeState cell = (MazeState) state;
+			int x = cell.X(), y = cell.Y();
+			// The cell is not enclosed: it has an adjacent empty cell.
+			assertTrue((x>0 && maze.cells[x-1][y]==Maze.EMPTY) || (x<maze.size-1 && maze.cells[x+1][y]==Maze.EMPTY) ||
+					(y>0 && maze.cells[x][y-1]==Maze.EMPTY) || (y<maze.size-1 && maze.cells[x][y+1]==Maze.EMPTY));
+			assertEquals(2000, counts.get(state), 250);
+		}
+	}
+
+	@Test
+	void attributesDescribeTheCells(){
+		for (int seed=1;seed<=3;seed++){
+			Maze maze = new Maze(15, seed);
+			for (int x=0;x<maze.size;x++)
+				for (int y=0;y<maze.size;y++){
+					int attributes = maze.attributes(x, y);
+					assertEquals(y>0 && maze.cells[x][y-1]!=Maze.WALL, (attributes & Maze.CAN_UP)!=0);
+					assertEquals(y<maze.size-1 && maze.cells[x][y+1]!=Maze.WALL, (attributes & Maze.CAN_DOWN)!=0);
+					assertEquals(x>0 && maze.cells[x-1][y]!=Maze.WALL, (attributes & Maze.CAN_LEFT)!=0);
+					assertEquals(x<maze.size-1 && maze.cells[x+1][y]!=Maze.WALL, (attributes & Maze.CAN_RIGHT)!=0);
+					assertEquals(maze.cells[x][y]==Maze.WATER, (attributes & Maze.HAS_WATER)!=0);
+
+					boolean cheese = maze.posCheese.x==x && maze.posCheese.y==y;
+					boolean cat = false, hole = false;
+					for (Position position : maze.posCats)
+						cat |= position.x==x && position.y==y;
+					for (Position position : maze.holeList)
+						hole |= position.x==x && position.y==y;
+					assertEquals(cheese, (attributes & Maze.HAS_CHEESE)!=0);
+					assertEquals(cat, (attributes & Maze.HAS_CAT)!=0);
+					assertEquals(hole, (attributes & Maze.HAS_HOLE)!=0);
+					assertEquals(cheese || cat, (attributes & Maze.FINAL)!=0);
+					assertEquals(cheese ? 100.0 : cat ? -100.0 : 0.0, maze.reward(x, y));
+				}
+		}
+	}
+
+	@Test
+	void problemsAnswerFromTheAttributes(){
+		MazeProblemMDP problem = new MazeProblemMDP(15, 3);
+		for (State state : problem.getAllStates()){
+			MazeState cell = (MazeState) state;
+			int attributes = problem.maze.attributes(cell.X(), cell.Y());
+			assertEquals((attributes & Maze.FINAL)!=0, problem.isFinal(state));
+			assertEquals(problem.maze.reward(cell.X(), cell.Y()), problem.getReward(state));
+			assertEquals((attributes & Maze.HAS_HOLE)!=0, problem.getPossibleActions(state).contains(MazeAction.DIVE));
+		}
+	}
+
+	@Test
+	void aSingleHoleCanNotBeDived(){
+		Maze maze = new Maze(new String[]{"     ", " o   ", "     ", "  c  ", "    h"}, 0, 0);
+		MazeProblemMDP problem = new MazeProblemMDP(maze);
+		problem.setGamma(0.9);
+		State hole = maze.stateOf(1, 1);
+		assertNotEquals(0, maze.attributes(1, 1) & Maze.HAS_HOLE);
+		assertFalse(problem.getPossibleActions(hole).contains(MazeAction.DIVE));
+		assertEquals(0, problem.actionMask(hole) & (1 << MazeAction.DIVE.ordinal()));
+		assertEquals(0, new CompiledMDP(problem).numSets());
+		ValueIteration algorithm = new ValueIteration();
+		algorithm.setParams(new String[]{"0.01", "compiled"});
+		Policy policy = algorithm.learnPolicy(problem);
+		assertNotNull(policy.getAction(hole));
+		assertNotSame(MazeAction.DIVE, policy.getAction(hole));
+	}
+}
@@ -0,0 +1,80 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class IndexedMaxHeapTest {
+
+	/** Polls every item and checks that they come out by decreasing priority, matching expected. */
+	private static void assertPollOrder(IndexedMaxHeap heap, double[] expected, boolean[] present){
+		double last = Double.POSITIVE_INFINITY;
+		int remaining = 0;
+		for (boolean item : present)
+			if (item) remaining++;
+		assertEquals(remaining, heap.size());
+		while (!heap.isEmpty()){
+			int item = heap.peek();
+			assertTrue(present[item]);
+			assertEquals(expected[item], heap.priority(item));
+			assertTrue(expected[item]<=last);
+			last = expected[item];
+			assertEquals(item, heap.poll());
+			assertFalse(heap.contains(item));
+			present[item] = false;
+			remaining--;
+		}
+		assertEquals(0, remaining);
+	}
+
+	@Test
+	void pollsByDecreasingPriority(){
+		SplittableRandomSource random = new SplittableRandomSource(1);
+		IndexedMaxHeap heap = new IndexedMaxHeap(500);
+		double[] priorities = new double[500];
+		boolean[] present = new boolean[500];
+		for (int item=0;item<500;item++){
+			priorities[item] = random.nextDouble();
+			present[item] = true;
+			heap.set(item, priorities[item]);
+		}
+		assertPollOrder(heap, priorities, present);
+	}
+
+	@Test
+	void keepsTheOrderAfterSetAndRemove(){
+		SplittableRandomSource random = new SplittableRandomSource(2);
+		IndexedMaxHeap heap = new IndexedMaxHeap(300);
+		double[] priorities = new double[300];
+		boolean[] present = new boolean[300];
+		for (int operation=0;operation<20000;operation++){
+			int item = random.nextInt(300);
+			if (random.nextInt(4)==0){
+				heap.remove(item);
+				present[item] = false;
+			}
+			else{
+				// Raises or lowers the priority of items already in the queue.
+				priorities[item] = random.nextDouble()*100-50;
+				present[item] = true;
+				heap.set(item, priorities[item]);
+			}
+			assertEquals(present[item], heap.contains(item));
+		}
+		assertPollOrder(heap, priorities, present);
+	}
+
+	@Test
+	void clearEmptiesTheQueue(){
+		IndexedMaxHeap heap = new IndexedMaxHeap(10);
+		for (int item=0;item<10;item++)
+			heap.set(item, item);
+		heap.remove(2);
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		for (int item=0;item<10;item++)
+			assertFalse(heap.contains(item));
+		heap.set(3, 1.0);
+		assertEquals(3, heap.poll());
+	}
+}
@@ -0,0 +1,103 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RandomSourceTest {
+
+	/** Sources of every implementation built with the same seed. */
+	private static RandomSource[] sources(long seed){
+		return new RandomSource[]{ new SplittableRandomSource(seed), new XoroshiroRandomSource(seed) };
+	}
+
+	@Test
+	void sourcesWithTheSameSeedRepeatTheStream(){
+		RandomSource[] first = sources(17), second = sources(17), other = sources(18);
+		for (int source=0;source<first.length;source++){
+			boolean differs = false;
+			for (int draw=0;draw<1000;draw++){
+				long value = first[source].nextLong();
+				assertEquals(value, second[source].nextLong());
+				differs |= value!=other[source].nextLong();
+			}
+			assertTrue(differs);
+		}
+	}
+
+	@Test
+	void splitStreamsAreRepeatableAndDistinct(){
+		RandomSource[] first = sources(5), second = sources(5);
+		for (int source=0;source<first.length;source++){
+			RandomSource childA = first[source].split(), childB = first[source].split();
+			RandomSource sameA = second[source].split(), sameB = second[source].split();
+			int equalSiblings = 0, equalParent = 0;
+			for (int draw=0;draw<1000;draw++){
+				long a = childA.nextLong(), b = childB.nextLong();
+				assertEquals(a, sameA.nextLong());
+				assertEquals(b, sameB.nextLong());
+				if (a==b) equalSiblings++;
+				if (a==first[source].nextLong()) equalParent++;
+				second[source].nextLong();
+			}
+			assertEquals(0, equalSiblings);
+			assertEquals(0, equalParent);
+		}
+	}
+
+	@Test
+	void boundedIntegersAreUniform(){
+		for (RandomSource random : sources(3)){
+			for (int bound : new int[]{1, 7, 16, 100}){
+				int[] counts = new int[bound];
+				int samples = 5000*bound;
+				for (int draw=0;draw<samples;draw++)
+					counts[random.nextInt(bound)]++;
+				for (int count : counts)
+					assertEquals(5000, count, 400);
+			}
+			assertThrows(IllegalArgumentException.class, () -> random.nextInt(0));
+		}
+	}
+
+	@Test
+	void doublesAndFloatsAreInTheUnitInterval(){
+		for (RandomSource random : sources(9)){
+			double sum = 0;
+			for (int draw=0;draw<100000;draw++){
+				double value = random.nextDouble();
+				float single = random.nextFloat();
+				assertTrue(value>=0 && value<1);
+				assertTrue(single>=0 && single<1);
+				sum += value;
+			}
+			assertEquals(0.5, sum/100000, 0.01);
+		}
+	}
+
+	@Test
+	void theMasterSeedMakesThreadSourcesRepeatable(){
+		Utils.setSeed(123);
+		long first = Utils.random().nextLong();
+		Utils.setSeed(123);
+		assertEquals(first, Utils.random().nextLong());
+		RandomSource own = new XoroshiroRandomSource(1);
+		Utils.setRandom(own);
+		assertSame(own, Utils.random());
+		Utils.setRandom(null);
+		assertNotSame(own, Utils.random());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void theOldGeneratorDrawsFromTheThreadSource(){
+		Utils.random.setSeed(7);
+		int first = Utils.random.nextInt(1000);
+		Utils.setSeed(7);
+		assertEquals(first, Utils.random.nextInt(1000));
+		Utils.setRandom(new XoroshiroRandomSource(3));
+		long expected = new XoroshiroRandomSource(3).nextInt();
+		assertEquals(expected, Utils.random.nextInt());
+		Utils.setRandom(null);
+	}
+}
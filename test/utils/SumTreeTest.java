@@ -0,0 +1,64 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class SumTreeTest {
+
+	@Test
+	void keepsTheTotalAndMinimumAfterUpdates(){
+		SplittableRandomSource random = new SplittableRandomSource(1);
+		int capacity = 37;
+		SumTree tree = new SumTree(capacity);
+		double[] weights = new double[capacity];
+		assertEquals(0, tree.total());
+		assertEquals(Double.POSITIVE_INFINITY, tree.min());
+		for (int update=0;update<5000;update++){
+			int item = random.nextInt(capacity);
+			// Some weights go back to 0, which is not a minimum.
+			weights[item] = random.nextInt(5)==0 ? 0 : random.nextDouble()*10;
+			tree.set(item, weights[item]);
+			double total = 0, min = Double.POSITIVE_INFINITY;
+			for (double weight : weights){
+				total += weight;
+				if (weight>0)
+					min = Math.min(min, weight);
+			}
+			assertEquals(total, tree.total(), 1e-9);
+			assertEquals(min, tree.min());
+			assertEquals(weights[item], tree.get(item));
+		}
+	}
+
+	@Test
+	void samplesProportionallyToTheWeights(){
+		double[] weights = {1, 0, 3, 0.5, 0, 2, 0, 0, 1.5, 2};
+		SumTree tree = new SumTree(weights.length);
+		double total = 0;
+		for (int item=0;item<weights.length;item++){
+			tree.set(item, weights[item]);
+			total += weights[item];
+		}
+		SplittableRandomSource random = new SplittableRandomSource(2);
+		int samples = 500000;
+		int[] counts = new int[weights.length];
+		for (int sample=0;sample<samples;sample++)
+			counts[tree.find(random.nextDouble()*tree.total())]++;
+		for (int item=0;item<weights.length;item++)
+			assertEquals(weights[item]/total, (double) counts[item]/samples, 0.005);
+	}
+
+	@Test
+	void neverFindsItemsWithoutWeight(){
+		SumTree tree = new SumTree(8);
+		tree.set(2, 1.0);
+		// The end of the interval, and values rounded over the total, stay in the last item with weight.
+		assertEquals(2, tree.find(0));
+		assertEquals(2, tree.find(tree.total()));
+		assertEquals(2, tree.find(tree.total()*1.0000001));
+		tree.clear();
+		assertEquals(0, tree.total());
+		assertEquals(Double.POSITIVE_INFINITY, tree.min());
+	}
+}
@@ -0,0 +1,24 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class UtilsTest {
+
+	@Test
+	void nthSetBitFindsEachBitInOrder(){
+		SplittableRandomSource random = new SplittableRandomSource(1);
+		for (int test=0;test<1000;test++){
+			int mask = random.nextInt();
+			int n = 0;
+			for (int bit=0;bit<32;bit++)
+				if ((mask & (1<<bit))!=0)
+					assertEquals(bit, Utils.nthSetBit(mask, n++));
+			assertEquals(Integer.bitCount(mask), n);
+			assertEquals(-1, Utils.nthSetBit(mask, n));
+		}
+		assertEquals(31, Utils.nthSetBit(1<<31, 0));
+		assertEquals(-1, Utils.nthSetBit(0, 0));
+	}
+}